@@ -0,0 +1,75 @@
+package com.cipherlab;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Drops a barcode if the same data was accepted less than windowMs earlier, so a label held
+ * under a continuously scanning reader is reported once. The window restarts at every accepted
+ * scan, not at the suppressed ones, so a label that stays in view is reported again every
+ * windowMs. A window of 0 accepts everything.
+ */
+final class BarcodeFilter {
+
+    private static final int PRUNE_SIZE = 1024;
+
+    private final Map<String, Long> lastAccepted = new HashMap<>();
+
+    private long windowNanos;
+    private long scans;
+    private long suppressed;
+
+    synchronized void setWindow(int windowMs) {
+        windowNanos = Math.max(0, windowMs) * 1000000L;
+        lastAccepted.clear();
+    }
+
+    synchronized boolean accept(BarcodeRead read) {
+        scans++;
+
+        if (windowNanos == 0 || read.data == null) {
+            return true;
+        }
+
+        Long last = lastAccepted.get(read.data);
+
+        if (last != null && read.receivedAt - last < windowNanos) {
+            suppressed++;
+
+            return false;
+        }
+
+        if (lastAccepted.size() >= PRUNE_SIZE) {
+            prune(read.receivedAt);
+        }
+
+        lastAccepted.put(read.data, read.receivedAt);
+
+        return true;
+    }
+
+    synchronized long scans() {
+        return scans;
+    }
+
+    synchronized long suppressed() {
+        return suppressed;
+    }
+
+    synchronized void reset() {
+        lastAccepted.clear();
+        scans = 0;
+        suppressed = 0;
+    }
+
+    private void prune(long now) {
+        Iterator<Long> it = lastAccepted.values().iterator();
+
+        while (it.hasNext()) {
+            if (now - it.next() >= windowNanos) {
+                it.remove();
+            }
+        }
+    }
+}
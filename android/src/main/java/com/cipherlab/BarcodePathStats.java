@@ -0,0 +1,110 @@
+package com.cipherlab;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compares the broadcast and ReaderCallback delivery of the same scans.
+ *
+ * With both paths enabled every scan arrives twice. The first arrival of a barcode is held
+ * until the other path delivers the same data; the pair then records which path was first
+ * and by how much. Arrivals that find no partner within PAIR_WINDOW_MS count as unpaired.
+ */
+final class BarcodePathStats {
+
+    private static final long PAIR_WINDOW_NANOS = 1000000000L;
+
+    private final Map<String, BarcodeRead> waiting = new HashMap<>();
+
+    private long pairs;
+    private long callbackFirst;
+    private long leadSumNanos;
+    private long maxLeadNanos;
+    private long maxLagNanos;
+    private long unpaired;
+
+    synchronized void onRead(BarcodeRead read) {
+        if (read.data == null) {
+            return;
+        }
+
+        expire(read.receivedAt);
+
+        BarcodeRead first = waiting.get(read.data);
+
+        if (first == null || first.source == read.source) {
+            if (first != null) {
+                unpaired++;
+            }
+
+            waiting.put(read.data, read);
+            return;
+        }
+
+        waiting.remove(read.data);
+
+        BarcodeRead callback = read.source == BarcodeRead.SOURCE_CALLBACK ? read : first;
+        BarcodeRead broadcast = read.source == BarcodeRead.SOURCE_CALLBACK ? first : read;
+        long lead = broadcast.receivedAt - callback.receivedAt;
+
+        pairs++;
+        leadSumNanos += lead;
+
+        if (lead > 0) {
+            callbackFirst++;
+            maxLeadNanos = Math.max(maxLeadNanos, lead);
+        } else {
+            maxLagNanos = Math.max(maxLagNanos, -lead);
+        }
+    }
+
+    synchronized long pairs() {
+        return pairs;
+    }
+
+    synchronized long callbackFirst() {
+        return callbackFirst;
+    }
+
+    /**
+     * @return mean microseconds by which the callback arrived before the broadcast; negative if it
+     * arrived later.
+     */
+    synchronized double meanCallbackLeadMicros() {
+        return pairs == 0 ? 0 : leadSumNanos / 1000.0 / pairs;
+    }
+
+    synchronized double maxCallbackLeadMicros() {
+        return maxLeadNanos / 1000.0;
+    }
+
+    synchronized double maxCallbackLagMicros() {
+        return maxLagNanos / 1000.0;
+    }
+
+    synchronized long unpaired() {
+        return unpaired;
+    }
+
+    synchronized void reset() {
+        waiting.clear();
+        pairs = 0;
+        callbackFirst = 0;
+        leadSumNanos = 0;
+        maxLeadNanos = 0;
+        maxLagNanos = 0;
+        unpaired = 0;
+    }
+
+    private void expire(long now) {
+        Iterator<BarcodeRead> it = waiting.values().iterator();
+
+        while (it.hasNext()) {
+            if (now - it.next().receivedAt >= PAIR_WINDOW_NANOS) {
+                it.remove();
+                unpaired++;
+            }
+        }
+    }
+}
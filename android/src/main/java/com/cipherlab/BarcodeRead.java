@@ -0,0 +1,32 @@
+package com.cipherlab;
+
+/**
+ * One decoded barcode, from either the Intent_PASS_TO_APP/Intent_SOFTTRIGGER_DATA broadcast
+ * or the ReaderCallback of the barcode ReaderManager.
+ */
+final class BarcodeRead {
+
+    static final int SOURCE_BROADCAST = 0;
+    static final int SOURCE_CALLBACK = 1;
+
+    final String data;
+    /**
+     * Symbology name, or null where the source does not report it (the callback path).
+     */
+    final String codeType;
+    final int source;
+    final long receivedAt;
+    final long decodedAt;
+
+    /**
+     * @param receivedAt System.nanoTime() on arrival
+     * @param decodedAt  wall-clock time on arrival, in epoch ms
+     */
+    BarcodeRead(String data, String codeType, int source, long receivedAt, long decodedAt) {
+        this.data = data;
+        this.codeType = codeType;
+        this.source = source;
+        this.receivedAt = receivedAt;
+        this.decodedAt = decodedAt;
+    }
+}
@@ -0,0 +1,98 @@
+package com.cipherlab;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects items and hands them over in one batch, either when maxSize items are pending or
+ * intervalMs after the first pending item arrived, whichever comes first. Batches are delivered
+ * in the order they were taken, even when a size flush on the adding thread races the interval
+ * flush on the scheduler.
+ */
+final class Batcher<T> {
+
+    interface Listener<T> {
+        void onBatch(List<T> items);
+    }
+
+    /**
+     * Runs the interval flush, e.g. on a Handler.
+     */
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    static final int DEFAULT_INTERVAL_MS = 50;
+    static final int DEFAULT_MAX_SIZE = 200;
+
+    private final Scheduler scheduler;
+    private final Listener<T> listener;
+    private final ArrayList<T> pending = new ArrayList<>();
+
+    /**
+     * Held while a batch is taken and delivered; adds only need the monitor.
+     */
+    private final Object deliveryLock = new Object();
+
+    private int intervalMs = DEFAULT_INTERVAL_MS;
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    Batcher(Scheduler scheduler, Listener<T> listener) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    synchronized int pending() {
+        return pending.size();
+    }
+
+    synchronized void configure(int intervalMs, int maxSize) {
+        this.intervalMs = intervalMs > 0 ? intervalMs : DEFAULT_INTERVAL_MS;
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+    }
+
+    void add(T item) {
+        boolean full;
+
+        synchronized (this) {
+            pending.add(item);
+            full = pending.size() >= maxSize;
+
+            if (!full && pending.size() == 1) {
+                scheduler.postDelayed(flushRunnable, intervalMs);
+            }
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    void flush() {
+        synchronized (deliveryLock) {
+            List<T> batch;
+
+            synchronized (this) {
+                scheduler.removeCallbacks(flushRunnable);
+
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            listener.onBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package com.cipherlab;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * De-dup set for EPCs whose heap use stays under a fixed ceiling, however many tags are seen.
+ *
+ * New EPCs go into an in-memory open-addressing table, packed like {@link EpcSet} does it.
+ * When the table holds memoryTags EPCs they are sorted, written to a new sorted run file and
+ * added to a Bloom filter, and the table starts over. A lookup that misses the table asks the
+ * Bloom filter: a negative answer means the EPC is new; a positive one is confirmed by binary
+ * searches of the memory-mapped runs, so the set stays exact and the Bloom filter only decides
+ * how often the runs are touched.
+ *
+ * A spill writes only the table, so its cost does not grow with the EPCs spilled before. Runs
+ * are merged on a background thread, MERGE_FAN_IN runs of one level into one run of the next,
+ * so there are only a few runs to search and every EPC is rewritten about log4(spilled /
+ * memoryTags) times in all. The ingest side never waits for a merge: merged runs replace
+ * their inputs once they are complete.
+ *
+ * maxMemoryBytes is split a quarter to the table and the rest to the Bloom filter. The Bloom
+ * filter uses the number of hash functions that is optimal for expectedTags; its false
+ * positive rate, the share of new EPCs that needlessly hit the runs, is about
+ * (1 - e^(-k * n / m))^k for n spilled EPCs, m bits and k hashes. Both the estimate and the
+ * measured rate are reported. With the defaults (8 MiB, 1M tags) the estimate at 1M spilled
+ * EPCs is below 0.1 %. A spill briefly holds a sorted copy of the table, half its size.
+ *
+ * EPCs that are not hex or are longer than 128 bits are keyed by two 64-bit hashes instead of
+ * their packed value.
+ *
+ * Not thread-safe, apart from the internal merge thread.
+ */
+final class BoundedEpcSet {
+
+    static final class Config {
+        long maxMemoryBytes = 8L << 20;
+        int expectedTags = 1000000;
+    }
+
+    static final int MERGE_FAN_IN = 4;
+
+    private static final int MAX_PACKED_DIGITS = 32;
+    private static final int RECORD_BYTES = 17;
+    private static final byte HASHED = (byte) 0xFF;
+    private static final int MIN_SLOTS = 64;
+    /**
+     * Records per mapping, so a run can exceed the 2 GB a single MappedByteBuffer can address.
+     */
+    private static final long RECORDS_PER_CHUNK = 1L << 26;
+
+    /**
+     * One sorted run file of 17-byte records: i64 hi, i64 lo, u8 digits.
+     */
+    private static final class Run {
+        final File file;
+        final long records;
+        final int level;
+        final MappedByteBuffer[] chunks;
+
+        Run(File file, long records, int level) throws IOException {
+            this.file = file;
+            this.records = records;
+            this.level = level;
+            this.chunks = new MappedByteBuffer[(int) ((records + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK)];
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+            try {
+                FileChannel channel = raf.getChannel();
+
+                for (int i = 0; i < chunks.length; i++) {
+                    long first = i * RECORDS_PER_CHUNK;
+                    long count = Math.min(RECORDS_PER_CHUNK, records - first);
+
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * RECORD_BYTES, count * RECORD_BYTES);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+
+        boolean contains(long h, long l, byte n) {
+            long low = 0;
+            long high = records - 1;
+
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                MappedByteBuffer chunk = chunks[(int) (mid / RECORDS_PER_CHUNK)];
+                int pos = (int) (mid % RECORDS_PER_CHUNK) * RECORD_BYTES;
+                int c = compare(chunk.getLong(pos), chunk.getLong(pos + 8), chunk.get(pos + 16), h, l, n);
+
+                if (c == 0) {
+                    return true;
+                } else if (c < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static final Run[] NO_RUNS = new Run[0];
+
+    private final Config config;
+    private final File file;
+    private final int memoryTags;
+    private final long[] hi;
+    private final long[] lo;
+    private final byte[] digits;
+    private final int mask;
+    private final long[] bloom;
+    private final long bloomBits;
+    private final int hashes;
+
+    private int size;
+    private long spilled;
+    private int spills;
+
+    private long bloomQueries;
+    private long bloomPositives;
+    private long falsePositives;
+
+    /**
+     * Guards runs, nextRun, generation, merging and the merge counters.
+     */
+    private final Object runsLock = new Object();
+    private volatile Run[] runs = NO_RUNS;
+    private int nextRun;
+    private int generation;
+    private boolean merging;
+    private int merges;
+    private int mergeFailures;
+
+    /**
+     * @param file base path of the run files, which are named after it with a numeric suffix;
+     *             leftovers of an earlier process are deleted.
+     */
+    BoundedEpcSet(Config config, File file) {
+        this.config = config;
+        this.file = file;
+
+        int slots = MIN_SLOTS;
+
+        while ((long) slots * 2 * RECORD_BYTES <= config.maxMemoryBytes / 4) {
+            slots <<= 1;
+        }
+
+        this.hi = new long[slots];
+        this.lo = new long[slots];
+        this.digits = new byte[slots];
+        this.mask = slots - 1;
+        this.memoryTags = slots / 2;
+
+        long bytes = Math.max(8, config.maxMemoryBytes - (long) slots * RECORD_BYTES);
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, bytes / 8);
+
+        this.bloom = new long[words];
+        this.bloomBits = (long) words * 64;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round(Math.log(2) * bloomBits / Math.max(1, config.expectedTags))));
+
+        deleteRunFiles();
+    }
+
+    /**
+     * @return true if the EPC had not been seen since the last {@link #clear()}.
+     * @throws IOException if a full table could not be spilled; the EPC is then not added.
+     */
+    boolean add(String epc) throws IOException {
+        if (size >= memoryTags) {
+            spill();
+        }
+
+        long h = 0;
+        long l = 0;
+        byte n = (byte) epc.length();
+        int length = epc.length();
+
+        if (length == 0 || length > MAX_PACKED_DIGITS) {
+            n = HASHED;
+        } else {
+            for (int i = 0; i < length; i++) {
+                int d = EpcCodec.nibble(epc.charAt(i));
+
+                if (d < 0) {
+                    n = HASHED;
+                    break;
+                }
+
+                h = (h << 4) | (l >>> 60);
+                l = (l << 4) | d;
+            }
+        }
+
+        if (n == HASHED) {
+            h = hash(epc, 0x9E3779B97F4A7C15L);
+            l = hash(epc, 0xC2B2AE3D27D4EB4FL);
+        }
+
+        int slot = (int) mix(h, l, n) & mask;
+
+        while (digits[slot] != 0) {
+            if (lo[slot] == l && hi[slot] == h && digits[slot] == n) {
+                return false;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (spilled > 0 && inSpill(h, l, n)) {
+            return false;
+        }
+
+        hi[slot] = h;
+        lo[slot] = l;
+        digits[slot] = n;
+        size++;
+
+        return true;
+    }
+
+    /**
+     * @return EPCs seen since the last clear().
+     */
+    long size() {
+        return spilled + size;
+    }
+
+    int inMemory() {
+        return size;
+    }
+
+    long spilled() {
+        return spilled;
+    }
+
+    int spills() {
+        return spills;
+    }
+
+    int memoryTags() {
+        return memoryTags;
+    }
+
+    /**
+     * @return heap held by the table and the Bloom filter; fixed at construction.
+     */
+    long memoryBytes() {
+        return (long) hi.length * RECORD_BYTES + (long) bloom.length * 8;
+    }
+
+    long spillBytes() {
+        return spilled * RECORD_BYTES;
+    }
+
+    /**
+     * @return run files a lookup may have to search.
+     */
+    int runs() {
+        return runs.length;
+    }
+
+    int merges() {
+        synchronized (runsLock) {
+            return merges;
+        }
+    }
+
+    /**
+     * @return merges that failed; their runs stay in place and are still searched.
+     */
+    int mergeFailures() {
+        synchronized (runsLock) {
+            return mergeFailures;
+        }
+    }
+
+    /**
+     * @return true while the merge thread is running, including one discarded by clear().
+     */
+    boolean isMerging() {
+        synchronized (runsLock) {
+            return merging;
+        }
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    long bloomQueries() {
+        return bloomQueries;
+    }
+
+    long bloomPositives() {
+        return bloomPositives;
+    }
+
+    /**
+     * @return Bloom positives that the runs did not confirm.
+     */
+    long falsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * @return the share of queries for EPCs not in the runs that the Bloom filter nevertheless
+     * passed on to them.
+     */
+    double measuredFalsePositiveRate() {
+        long negatives = bloomQueries - (bloomPositives - falsePositives);
+
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashes * (double) spilled / bloomBits), hashes);
+    }
+
+    Config config() {
+        return config;
+    }
+
+    /**
+     * Empties the set and deletes the run files. A merge in progress is discarded once it ends.
+     */
+    void clear() {
+        Arrays.fill(digits, (byte) 0);
+        Arrays.fill(bloom, 0);
+        size = 0;
+        spilled = 0;
+        spills = 0;
+        bloomQueries = 0;
+        bloomPositives = 0;
+        falsePositives = 0;
+
+        Run[] dropped;
+
+        synchronized (runsLock) {
+            dropped = runs;
+            runs = NO_RUNS;
+            generation++;
+        }
+
+        for (Run run : dropped) {
+            delete(run.file);
+        }
+    }
+
+    private boolean inSpill(long h, long l, byte n) {
+        bloomQueries++;
+
+        long base = mix(h, l, n);
+        long step = mix(l, h, n) | 1;
+
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((base + i * step) >>> 1) % bloomBits;
+
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        bloomPositives++;
+
+        // Newest first: runs are disjoint, and recent tags are the likeliest to be read again.
+        Run[] current = runs;
+
+        for (int i = current.length - 1; i >= 0; i--) {
+            if (current[i].contains(h, l, n)) {
+                return true;
+            }
+        }
+
+        falsePositives++;
+
+        return false;
+    }
+
+    /**
+     * Writes the table as a new level 0 run and empties it.
+     */
+    private void spill() throws IOException {
+        long[] h = new long[size];
+        long[] l = new long[size];
+        byte[] n = new byte[size];
+        int count = 0;
+
+        for (int i = 0; i < digits.length; i++) {
+            if (digits[i] != 0) {
+                h[count] = hi[i];
+                l[count] = lo[i];
+                n[count] = digits[i];
+                count++;
+            }
+        }
+
+        sort(h, l, n, 0, count - 1);
+
+        File target = nextRunFile();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+        Run run;
+
+        try {
+            try {
+                for (int i = 0; i < count; i++) {
+                    write(out, h[i], l[i], n[i]);
+                }
+            } finally {
+                out.close();
+            }
+
+            run = new Run(target, count, 0);
+        } catch (IOException err) {
+            delete(target);
+            throw err;
+        }
+
+        synchronized (runsLock) {
+            Run[] next = Arrays.copyOf(runs, runs.length + 1);
+            next[runs.length] = run;
+            runs = next;
+        }
+
+        for (int i = 0; i < count; i++) {
+            addToBloom(h[i], l[i], n[i]);
+        }
+
+        spilled += count;
+        spills++;
+
+        Arrays.fill(digits, (byte) 0);
+        size = 0;
+
+        startMerging();
+    }
+
+    private void startMerging() {
+        final int started;
+
+        synchronized (runsLock) {
+            if (merging || mergeable(runs) == null) {
+                return;
+            }
+
+            merging = true;
+            started = generation;
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mergeRuns(started);
+            }
+        }, "CipherlabSpillMerge");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Merges on the calling thread while some level has MERGE_FAN_IN runs, until the set is
+     * cleared. The output of a merge that the clear overtook is deleted.
+     */
+    private void mergeRuns(int started) {
+        while (true) {
+            Run[] group;
+            File target;
+
+            synchronized (runsLock) {
+                group = started == generation ? mergeable(runs) : null;
+
+                if (group == null) {
+                    merging = false;
+                    return;
+                }
+
+                target = new File(file.getPath() + "." + nextRun++);
+            }
+
+            Run merged;
+
+            try {
+                merged = merge(group, target);
+            } catch (IOException err) {
+                delete(target);
+
+                synchronized (runsLock) {
+                    mergeFailures++;
+                    merging = false;
+                }
+
+                return;
+            }
+
+            boolean installed;
+
+            synchronized (runsLock) {
+                installed = started == generation;
+
+                if (installed) {
+                    runs = replace(runs, group, merged);
+                    merges++;
+                }
+            }
+
+            // A lookup still holding the old runs keeps reading their mappings after delete.
+            if (installed) {
+                for (Run run : group) {
+                    delete(run.file);
+                }
+            } else {
+                delete(target);
+            }
+        }
+    }
+
+    /**
+     * @return the oldest MERGE_FAN_IN runs of the lowest level that has that many, or null.
+     */
+    private static Run[] mergeable(Run[] runs) {
+        for (int level = 0; ; level++) {
+            List<Run> group = new ArrayList<>(MERGE_FAN_IN);
+            boolean higher = false;
+
+            for (Run run : runs) {
+                if (run.level == level && group.size() < MERGE_FAN_IN) {
+                    group.add(run);
+                } else if (run.level > level) {
+                    higher = true;
+                }
+            }
+
+            if (group.size() == MERGE_FAN_IN) {
+                return group.toArray(new Run[MERGE_FAN_IN]);
+            }
+
+            if (!higher) {
+                return null;
+            }
+        }
+    }
+
+    private static Run[] replace(Run[] runs, Run[] group, Run merged) {
+        List<Run> list = new ArrayList<>(runs.length);
+        boolean placed = false;
+
+        for (Run run : runs) {
+            if (!Arrays.asList(group).contains(run)) {
+                list.add(run);
+            } else if (!placed) {
+                list.add(merged);
+                placed = true;
+            }
+        }
+
+        return list.toArray(new Run[list.size()]);
+    }
+
+    private static Run merge(Run[] group, File target) throws IOException {
+        DataInputStream[] ins = new DataInputStream[group.length];
+        long[] remaining = new long[group.length];
+        long[] h = new long[group.length];
+        long[] l = new long[group.length];
+        byte[] n = new byte[group.length];
+        boolean[] pending = new boolean[group.length];
+        long records = 0;
+        int level = 0;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+
+        try {
+            for (int i = 0; i < group.length; i++) {
+                ins[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(group[i].file), 1 << 16));
+                remaining[i] = group[i].records;
+                records += group[i].records;
+                level = Math.max(level, group[i].level + 1);
+            }
+
+            for (long written = 0; written < records; written++) {
+                int min = -1;
+
+                for (int i = 0; i < group.length; i++) {
+                    if (!pending[i] && remaining[i] > 0) {
+                        h[i] = ins[i].readLong();
+                        l[i] = ins[i].readLong();
+                        n[i] = ins[i].readByte();
+                        pending[i] = true;
+                        remaining[i]--;
+                    }
+
+                    if (pending[i] && (min < 0 || compare(h[i], l[i], n[i], h[min], l[min], n[min]) < 0)) {
+                        min = i;
+                    }
+                }
+
+                write(out, h[min], l[min], n[min]);
+                pending[min] = false;
+            }
+        } catch (EOFException err) {
+            throw new IOException("Run file is truncated");
+        } finally {
+            out.close();
+
+            for (DataInputStream in : ins) {
+                if (in != null) {
+                    in.close();
+                }
+            }
+        }
+
+        return new Run(target, records, level);
+    }
+
+    private File nextRunFile() {
+        synchronized (runsLock) {
+            return new File(file.getPath() + "." + nextRun++);
+        }
+    }
+
+    private void deleteRunFiles() {
+        File dir = file.getAbsoluteFile().getParentFile();
+        String[] names = dir != null ? dir.list() : null;
+        String prefix = file.getName() + ".";
+
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix)) {
+                    delete(new File(dir, name));
+                }
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private void addToBloom(long h, long l, byte n) {
+        long base = mix(h, l, n);
+        long step = mix(l, h, n) | 1;
+
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((base + i * step) >>> 1) % bloomBits;
+
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static void write(DataOutputStream out, long h, long l, byte n) throws IOException {
+        out.writeLong(h);
+        out.writeLong(l);
+        out.writeByte(n);
+    }
+
+    private static int compare(long h1, long l1, byte n1, long h2, long l2, byte n2) {
+        if (h1 != h2) {
+            return h1 < h2 ? -1 : 1;
+        }
+
+        if (l1 != l2) {
+            return l1 < l2 ? -1 : 1;
+        }
+
+        return n1 - n2;
+    }
+
+    private static void sort(long[] h, long[] l, byte[] n, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            long ph = h[mid];
+            long pl = l[mid];
+            byte pn = n[mid];
+            int i = from;
+            int j = to;
+
+            while (i <= j) {
+                while (compare(h[i], l[i], n[i], ph, pl, pn) < 0) {
+                    i++;
+                }
+
+                while (compare(h[j], l[j], n[j], ph, pl, pn) > 0) {
+                    j--;
+                }
+
+                if (i <= j) {
+                    swap(h, l, n, i++, j--);
+                }
+            }
+
+            // Recurse into the smaller half, loop on the larger.
+            if (j - from < to - i) {
+                sort(h, l, n, from, j);
+                from = i;
+            } else {
+                sort(h, l, n, i, to);
+                to = j;
+            }
+        }
+    }
+
+    private static void swap(long[] h, long[] l, byte[] n, int i, int j) {
+        long th = h[i];
+        long tl = l[i];
+        byte tn = n[i];
+
+        h[i] = h[j];
+        l[i] = l[j];
+        n[i] = n[j];
+        h[j] = th;
+        l[j] = tl;
+        n[j] = tn;
+    }
+
+    private static long hash(String value, long seed) {
+        long x = seed;
+
+        for (int i = 0; i < value.length(); i++) {
+            x = (x ^ value.charAt(i)) * 0x100000001B3L;
+        }
+
+        return mix(x, seed, value.length());
+    }
+
+    private static long mix(long h, long l, int n) {
+        long x = h * 0x9E3779B97F4A7C15L ^ l ^ n;
+
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        x ^= x >>> 33;
+
+        return x;
+    }
+}
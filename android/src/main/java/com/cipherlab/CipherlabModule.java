@@ -1,64 +1,226 @@
 package com.cipherlab;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.os.IBinder;
-import android.os.RemoteException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
 import android.util.Log;
 import android.view.KeyEvent;
 
 import androidx.annotation.Nullable;
 
-import com.cipherlab.barcode.ReaderManager;
-import com.cipherlab.barcode.decoder.KeyboardEmulationType;
-import com.cipherlab.barcode.decoder.OutputEnterChar;
-import com.cipherlab.barcode.decoder.OutputEnterWay;
-import com.cipherlab.barcode.decoderparams.ReaderOutputConfiguration;
-import com.cipherlab.barcodebase.ReaderCallback;
-import com.cipherlab.rfid.BeepType;
-import com.cipherlab.rfid.ClResult;
-import com.cipherlab.rfid.DeviceEvent;
-import com.cipherlab.rfid.DeviceInfo;
-import com.cipherlab.rfid.DeviceResponse;
-import com.cipherlab.rfid.DeviceVoltageInfo;
-import com.cipherlab.rfid.Enable_State;
-import com.cipherlab.rfid.Gen2Settings;
-import com.cipherlab.rfid.GeneralString;
-import com.cipherlab.rfid.InventoryStatusSettings;
-import com.cipherlab.rfid.NotificationParams;
-import com.cipherlab.rfid.PowerMode;
-import com.cipherlab.rfid.RFIDMemoryBank;
-import com.cipherlab.rfid.RFIDMode;
-import com.cipherlab.rfid.RFLink;
-import com.cipherlab.rfid.SLFlagSettings;
-import com.cipherlab.rfid.SessionSettings;
-import com.cipherlab.rfid.WorkMode;
-import com.cipherlab.rfidapi.RfidManager;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class CipherlabModule extends ReactContextBaseJavaModule implements LifecycleEventListener {
 
     private final ReactApplicationContext reactContext;
-    private static RfidManager mRfidManager;
-    private static ReaderManager mReaderManager;
-    private static ReaderCallback mReaderCallback;
+    private static volatile ReaderDevice device;
 
-    private static final ArrayList<String> cacheTags = new ArrayList<>();
-    private static boolean isSingleRead = false;
-    private static boolean isReadBarcode = false;
+    private static final TagInventory cacheTags = new TagInventory();
+    private static final InventoryRegistry inventories = new InventoryRegistry();
+    private static volatile InventoryProfile profile = InventoryProfile.DEFAULT;
+    private static volatile boolean isReadBarcode = false;
+    private static volatile boolean isBatchBarcodes = false;
+    private static volatile int barcodeSource = BarcodeRead.SOURCE_BROADCAST;
 
-    private static CipherlabModule instance = null;
+    private static volatile CipherlabModule instance = null;
+
+    private final TagPipeline tagPipeline = new TagPipeline(TagPipeline.DEFAULT_CAPACITY, new TagPipeline.Consumer() {
+        @Override
+        public void onTagRead(TagRead read) {
+            if (TagLog.isDebug()) {
+                Log.d(LOG, "TAG: " + read.epc);
+                Log.d(LOG, "RSSI: " + read.rssi);
+            }
+
+            try {
+                ingest.onRead(read);
+            } catch (Exception err) {
+                Log.e(LOG, "handleTagRead: " + err.getMessage());
+            }
+        }
+    });
+
+    private final TagWriter tagWriter = new TagWriter(new TagWriter.Device() {
+        @Override
+        public int write(byte[] oldEpc, byte[] newEpc) {
+            return device.writeTagByEpc(oldEpc, newEpc);
+        }
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final IngestMetrics metrics = new IngestMetrics();
+
+    private final Batcher.Scheduler mainScheduler = new Batcher.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            mainHandler.postDelayed(task, delayMs);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            mainHandler.removeCallbacks(task);
+        }
+    };
+
+    private final TagIngest ingest = new TagIngest(cacheTags, inventories, metrics, mainScheduler, new TagIngest.Sink() {
+        @Override
+        public void onTag(TagRead read) {
+            sendEvent(TAG, read.epc);
+        }
+
+        @Override
+        public void onTagBatch(List<TagRead> tags) {
+            WritableArray array = Arguments.createArray();
+
+            for (TagRead tag : tags) {
+                array.pushString(tag.epc);
+            }
+
+            sendEvent(TAG_BATCH, array);
+        }
+
+        @Override
+        public void onPackedTagBatch(byte[] packed) {
+            sendEvent(TAG_BATCH, Base64.encodeToString(packed, Base64.NO_WRAP));
+        }
+
+        @Override
+        public void onSingleRead() {
+            device.softScanTrigger(false);
+        }
+
+        @Override
+        public void onSpillError(IOException err) {
+            Log.e(LOG, "Spill: " + err.getMessage());
+        }
+    });
+
+    /**
+     * Opens the device and configures its services off the UI and receiver threads; two
+     * threads so RFID and barcode are configured in parallel.
+     */
+    private ExecutorService connectExecutor;
+    private final Object connectLock = new Object();
+    private final Object openLock = new Object();
+    private volatile ConnectState connectState;
+    /**
+     * connect() calls waiting for the current attempt. Guarded by itself.
+     */
+    private final List<Promise> connectPromises = new ArrayList<>();
+    private int connectTimeoutMs = 10000;
+
+    private ScheduledExecutorService locateTicker;
+
+    private ScheduledExecutorService presenceTicker;
+
+    private final DeviceStateChannel stateChannel = new DeviceStateChannel(new DeviceStateChannel.Sink() {
+        @Override
+        public void onReaderStatus(DeviceStateChannel.ReaderState state) {
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("status", state.status);
+            map.putString("error", state.error);
+            sendEvent(READER_STATUS, map);
+        }
+
+        @Override
+        public void onTrigger(boolean pressed) {
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("status", pressed);
+            sendEvent(TRIGGER_STATUS, map);
+        }
+
+        @Override
+        public void onBattery(DeviceStateChannel.BatteryState state) {
+            WritableMap map = Arguments.createMap();
+            map.putInt("level", state.level);
+            map.putBoolean("acPower", state.acPower);
+            map.putBoolean("lowBattery", state.lowBattery);
+            map.putBoolean("overTemperature", state.overTemperature);
+            map.putString("cause", state.cause);
+            sendEvent(BATTERY_STATUS, map);
+        }
+    }, new DeviceStateChannel.Scheduler() {
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            mainHandler.postDelayed(task, delayMs);
+        }
+    });
+    private ScheduledExecutorService batteryPoller;
+    private int batteryPollMs = DeviceStateChannel.DEFAULT_BATTERY_POLL_MS;
+
+    /**
+     * Length of one inventory plus pause period when the power controller sets a duty cycle.
+     */
+    private static final int DUTY_PERIOD_MS = 1000;
+    private volatile PowerController powerController;
+    private ScheduledExecutorService powerTicker;
+    private int powerRestoreTxPower = -1;
+    private int[] powerRestoreDutyCycle;
+
+    private volatile ReadCapture readCapture;
+    private Thread replayThread;
+
+    private int metricsIntervalMs = 0;
+
+    private final Runnable metricsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (metricsIntervalMs > 0) {
+                sendEvent(METRICS, buildMetrics());
+                mainHandler.postDelayed(this, metricsIntervalMs);
+            }
+        }
+    };
+
+    private final BarcodeFilter barcodeFilter = new BarcodeFilter();
+    private final BarcodePathStats barcodePaths = new BarcodePathStats();
+    private final IngestMetrics barcodeMetrics = new IngestMetrics();
+
+    private final Batcher<BarcodeRead> barcodeBatcher = new Batcher<>(mainScheduler, new Batcher.Listener<BarcodeRead>() {
+        @Override
+        public void onBatch(List<BarcodeRead> barcodes) {
+            WritableArray array = Arguments.createArray();
+
+            for (BarcodeRead barcode : barcodes) {
+                WritableMap map = Arguments.createMap();
+                map.putString("data", barcode.data);
+                map.putString("codeType", barcode.codeType);
+                map.putDouble("timestamp", barcode.decodedAt);
+                array.pushMap(map);
+            }
+
+            sendEvent(BARCODE_BATCH, array);
+
+            long now = System.nanoTime();
+
+            for (BarcodeRead barcode : barcodes) {
+                barcodeMetrics.onLatency(barcode.receivedAt, now);
+            }
+        }
+    });
 
     private final String LOG = "[CipherLab]";
     private final String READER_STATUS = "READER_STATUS";
@@ -66,14 +228,24 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     private final String WRITE_TAG_STATUS = "WRITE_TAG_STATUS";
     private final String BATTERY_STATUS = "BATTERY_STATUS";
     private final String TAG = "TAG";
+    private final String TAG_BATCH = "TAG_BATCH";
     private final String LOCATE_TAG = "LOCATE_TAG";
+    private final String TAG_ARRIVED = "TAG_ARRIVED";
+    private final String TAG_DEPARTED = "TAG_DEPARTED";
     private final String BARCODE = "BARCODE";
+    private final String BARCODE_BATCH = "BARCODE_BATCH";
+    private final String METRICS = "METRICS";
 
     public CipherlabModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
         this.reactContext.addLifecycleEventListener(this);
 
+        if (device != null) {
+            device.shutdown();
+        }
+
+        device = new CipherlabReaderDevice(reactContext);
         instance = this;
     }
 
@@ -82,12 +254,24 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     }
 
     private void sendEvent(String eventName, @Nullable WritableMap params) {
+        metrics.onEmit();
+
+        this.reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+    }
+
+    private void sendEvent(String eventName, WritableArray params) {
+        metrics.onEmit();
+
         this.reactContext
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                 .emit(eventName, params);
     }
 
     private void sendEvent(String eventName, String msg) {
+        metrics.onEmit();
+
         this.reactContext
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                 .emit(eventName, msg);
@@ -102,9 +286,7 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
 //                    mReaderManager.SoftScanTrigger();
                 }
 
-                WritableMap map = Arguments.createMap();
-                map.putBoolean("status", false);
-                sendEvent(TRIGGER_STATUS, map);
+                stateChannel.onTrigger(false);
             }
         }
     }
@@ -118,9 +300,7 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
 //                    mReaderManager.SoftScanTrigger();
                 }
 
-                WritableMap map = Arguments.createMap();
-                map.putBoolean("status", true);
-                sendEvent(TRIGGER_STATUS, map);
+                stateChannel.onTrigger(true);
             }
         }
     }
@@ -143,19 +323,71 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     @Override
     public void onHostDestroy() {
         doDisconnect();
+        closeJournal();
+        stopLocateTicker();
+        stopPresenceTicker();
+        stopPowerControl();
+        stopReplay();
+        closeCapture();
+
+        tagWriter.shutdown();
+        tagPipeline.stop();
+        device.shutdown();
+
+        synchronized (connectLock) {
+            if (connectExecutor != null) {
+                connectExecutor.shutdown();
+                connectExecutor = null;
+            }
+        }
     }
 
+    /**
+     * Resolves with the phase timings once both the RFID and the barcode service are
+     * configured, or rejects after the connect timeout.
+     */
     @ReactMethod
-    public void connect(Promise promise) {
+    public void connect(final Promise promise) {
         try {
-            doConnect();
+            synchronized (connectPromises) {
+                connectPromises.add(promise);
+            }
 
-            promise.resolve(true);
+            final int timeoutMs = connectTimeoutMs;
+
+            mainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    boolean pending;
+
+                    synchronized (connectPromises) {
+                        pending = connectPromises.remove(promise);
+                    }
+
+                    if (pending) {
+                        ConnectState state = connectState;
+                        String waiting = state != null ? state.pending() : "RFID and barcode";
+
+                        promise.reject(LOG, "Timed out after " + timeoutMs + " ms waiting for the " + waiting + " service");
+                    }
+                }
+            }, timeoutMs);
+
+            doConnect();
         } catch (Exception err) {
+            synchronized (connectPromises) {
+                connectPromises.remove(promise);
+            }
+
             promise.reject(err);
         }
     }
 
+    @ReactMethod
+    public void setConnectTimeout(int timeoutMs) {
+        connectTimeoutMs = timeoutMs;
+    }
+
     @ReactMethod
     public void reconnect() {
         try {
@@ -179,13 +411,7 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     @ReactMethod
     public void isConnected(Promise promise) {
         try {
-            boolean status = false;
-
-            if (mRfidManager != null) {
-                status = mRfidManager.GetConnectionStatus();
-            }
-
-            promise.resolve(status);
+            promise.resolve(device.isConnected());
         } catch (Exception err) {
             promise.reject(err);
         }
@@ -195,20 +421,18 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     public void getDeviceDetails(Promise promise) {
         Log.d(LOG, "getDeviceDetails");
 
-        if (mRfidManager != null && mRfidManager.GetConnectionStatus()) {
-            DeviceVoltageInfo volt = new DeviceVoltageInfo();
-            int powerResult = mRfidManager.GetBatteryLifePercent(volt);
-            int power = -1;
+        if (device.isConnected()) {
+            int power = stateChannel.batteryLevel();
 
-            if (powerResult == ClResult.S_OK.ordinal()) {
-                power = volt.Percentage;
+            if (power < 0) {
+                power = device.getBatteryLevel();
+                stateChannel.onBatteryLevel(power);
             }
 
-            DeviceInfo info = mRfidManager.GetDeviceInfo();
-            int antennaLevel = mRfidManager.GetTxPower();
+            int antennaLevel = device.getTxPower();
             WritableMap map = Arguments.createMap();
             map.putString("name", "Cipher Lab");
-            map.putString("mac", info.SerialNumber);
+            map.putString("mac", device.getSerialNumber());
             map.putInt("antennaLevel", antennaLevel);
             map.putInt("power", power);
 
@@ -222,472 +446,1853 @@ public class CipherlabModule extends ReactContextBaseJavaModule implements Lifec
     public void setAntennaLevel(int antennaLevel, Promise promise) {
         Log.d(LOG, "setAntennaLevel");
 
-        String error = null;
-
-        if (mRfidManager != null && mRfidManager.GetConnectionStatus()) {
+        if (device.isConnected()) {
             Log.d(LOG, "setAntennaLevel: " + antennaLevel);
-            int level = mRfidManager.SetTxPower(antennaLevel);
 
-            if (level != ClResult.S_OK.ordinal()) {
-                Log.d(LOG, mRfidManager.GetLastError());
-                error = mRfidManager.GetLastError();
-                promise.reject(LOG, error);
-            } else {
+            try {
+                device.setTxPower(antennaLevel);
                 promise.resolve(true);
+            } catch (Exception err) {
+                Log.d(LOG, err.getMessage());
+                promise.reject(LOG, err.getMessage());
             }
+        } else {
+            promise.reject(LOG, "Failed to change antenna power");
         }
-
-        promise.reject(LOG, "Failed to change antenna power");
     }
 
+    /**
+     * Switches to a named inventory profile, changing only the settings that differ from the
+     * current one. The profile is re-applied after every reconnect.
+     */
     @ReactMethod
-    public void clear() {
-        Log.d(LOG, "clear");
+    public void applyProfile(String name, Promise promise) {
+        InventoryProfile next = InventoryProfile.byName(name);
 
-        cacheTags.clear();
-    }
+        if (next == null) {
+            promise.reject(LOG, "Unknown profile: " + name);
+            return;
+        }
 
-    @ReactMethod
-    public void setSingleRead(boolean enable) {
-        Log.d(LOG, "setSingleRead");
+        if (!device.isConnected()) {
+            promise.reject(LOG, "Reader is not connected");
+            return;
+        }
 
-        isSingleRead = enable;
-    }
+        try {
+            long start = System.nanoTime();
+            List<String> changed = device.applyProfile(next);
+            long elapsed = System.nanoTime() - start;
 
-    @ReactMethod
-    public void setEnabled(boolean enable, Promise promise) {
-        if (mRfidManager != null && mRfidManager.GetConnectionStatus()) {
-            isReadBarcode = !enable;
-            Log.d(LOG, "setEnabled: " + enable);
+            profile = next;
 
-            String error = null;
-            int re = mRfidManager.EnableDeviceTrigger(enable);
+            WritableArray array = Arguments.createArray();
 
-            if (re != ClResult.S_OK.ordinal()) {
-                Log.d(LOG, mRfidManager.GetLastError());
-                error = mRfidManager.GetLastError();
+            for (String setting : changed) {
+                array.pushString(setting);
             }
 
-            if (error != null) {
-                promise.reject(LOG, error);
-            } else {
-                promise.resolve(true);
-            }
-        }
-    }
+            WritableMap map = Arguments.createMap();
+            map.putString("profile", next.name);
+            map.putArray("changed", array);
+            map.putDouble("elapsedMs", elapsed / 1e6);
 
-    @ReactMethod
-    public void programTag(String oldTag, String newTag, Promise promise) {
-        try {
-            if (mRfidManager != null && mRfidManager.GetConnectionStatus()) {
-                byte[] oldData = StringToBytes(oldTag);
-                byte[] newData = StringToBytes(newTag);
-                byte[] password = StringToBytes("00000000");
-                DeviceResponse re = mRfidManager.RFIDDirectWriteTagByEPC(null, oldData, RFIDMemoryBank.EPC, 4, 3, newData);
+            Log.d(LOG, "applyProfile " + next.name + ": " + changed + " in " + elapsed / 1000000 + " ms");
 
-                if (re != DeviceResponse.OperationSuccess) {
-                    WritableMap map = Arguments.createMap();
-                    map.putBoolean("status", false);
-                    map.putString("error", re.toString());
-                    sendEvent(WRITE_TAG_STATUS, map);
-                }
-            }
+            promise.resolve(map);
         } catch (Exception err) {
-            promise.reject(err);
+            promise.reject(LOG, err.getMessage());
         }
     }
 
+    /**
+     * Runs inventory for durationMs under each named profile in turn, against whatever tags
+     * are in the field, and reports the read rate of each. The current profile is restored
+     * afterwards. Reads are ingested as usual while measuring.
+     */
     @ReactMethod
-    public void softReadCancel(boolean enable, Promise promise) {
-        try {
-            if (mRfidManager != null) {
-                mRfidManager.SoftScanTrigger(enable);
+    public void measureReadRate(ReadableArray names, final int durationMs, final Promise promise) {
+        final List<InventoryProfile> profiles = new ArrayList<>();
 
-                promise.resolve(true);
-            } else {
-                throw new Exception("Reader is not connected");
+        for (int i = 0; i < names.size(); i++) {
+            InventoryProfile next = InventoryProfile.byName(names.getString(i));
+
+            if (next == null) {
+                promise.reject(LOG, "Unknown profile: " + names.getString(i));
+                return;
             }
-        } catch (Exception err) {
-            promise.reject(err);
-        }
-    }
 
-    private byte[] StringToBytes(String s) {
-        int var1 = s.length();
-        byte[] var2 = new byte[var1 / 2];
+            profiles.add(next);
+        }
 
-        for (int var3 = 0; var3 < var1; var3 += 2) {
-            var2[var3 / 2] = (byte) ((Character.digit(s.charAt(var3), 16) << 4) + Character.digit(s.charAt(var3 + 1), 16));
+        if (!device.isConnected()) {
+            promise.reject(LOG, "Reader is not connected");
+            return;
         }
 
-        return var2;
-    }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                InventoryProfile restore = profile;
+                WritableArray array = Arguments.createArray();
 
-    private void RFIDConfigureReader() throws Exception {
-        if (mRfidManager != null && mRfidManager.GetConnectionStatus()) {
-            SetDefault();
+                try {
+                    for (InventoryProfile next : profiles) {
+                        device.applyProfile(next);
 
-            SetNotification();
+                        long reads = metrics.reads();
+                        long start = System.nanoTime();
 
-            SetGen2();
+                        device.softScanTrigger(true);
+                        Thread.sleep(durationMs);
+                        device.softScanTrigger(false);
 
-            SetWorkMode(WorkMode.ComprehensiveMode);
+                        long elapsed = System.nanoTime() - start;
+                        reads = metrics.reads() - reads;
 
-            SetRFIDMode(RFIDMode.Inventory_EPC_TID);
+                        WritableMap map = Arguments.createMap();
+                        map.putString("profile", next.name);
+                        map.putDouble("reads", reads);
+                        map.putDouble("readsPerSecond", reads * 1e9 / elapsed);
 
-            SetPowerMode(PowerMode.Normal);
+                        Log.d(LOG, "measureReadRate " + next.name + ": " + reads + " reads in " + elapsed / 1000000 + " ms");
 
-            SetRFLink(RFLink.PR_ASK_Miller4_300KHz);
-        }
-    }
+                        array.pushMap(map);
+                    }
 
-    private void BarcodeConfigureReader() throws Exception {
-        if (mReaderManager != null) {
-            String error = null;
-            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.ResetReaderToDefault()) {
-                error = mReaderManager.GetLastError();
+                    promise.resolve(array);
+                } catch (Exception err) {
+                    device.softScanTrigger(false);
+                    promise.reject(err);
+                } finally {
+                    try {
+                        device.applyProfile(restore);
+                    } catch (Exception err) {
+                        Log.e(LOG, err.getMessage());
+                    }
+                }
             }
+        }, "CipherlabReadRate").start();
+    }
+
+    @ReactMethod
+    public void clear() {
+        Log.d(LOG, "clear");
 
-            ReaderOutputConfiguration settings = new ReaderOutputConfiguration();
-            mReaderManager.Get_ReaderOutputConfiguration(settings);
-            settings.enableKeyboardEmulation = KeyboardEmulationType.None;
-            settings.autoEnterWay = OutputEnterWay.Disable;
-            settings.autoEnterChar = OutputEnterChar.None;
-            settings.showCodeLen = com.cipherlab.barcode.decoder.Enable_State.FALSE;
-            settings.showCodeType = com.cipherlab.barcode.decoder.Enable_State.FALSE;
-            settings.szPrefixCode = "";
-            settings.szSuffixCode = "";
-            settings.useDelim = ':';
+        ingest.clear();
+    }
 
-            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.Set_ReaderOutputConfiguration(settings)) {
-                error = mReaderManager.GetLastError();
-            }
+    /**
+     * Bounded inventory mode for very large tag populations: new EPCs are still sent as TAG
+     * events, but de-dup uses a {@link BoundedEpcSet} that keeps at most maxMemoryBytes on the
+     * heap and spills older EPCs to sorted run files in the cache directory. No per-tag aggregates are
+     * kept while it is on, so snapshots and journaled sessions stay empty; named inventories
+     * are not affected. Switching the mode clears the inventory.
+     */
+    @ReactMethod
+    public void setBoundedInventory(ReadableMap options) {
+        Log.d(LOG, "setBoundedInventory");
 
-            com.cipherlab.barcode.decoderparams.NotificationParams settings2 = new com.cipherlab.barcode.decoderparams.NotificationParams();
-            mReaderManager.Get_NotificationParams(settings2);
-            settings2.ReaderBeep = com.cipherlab.barcode.decoder.BeepType.Mute;
-            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.Set_NotificationParams(settings2)) {
-                error = mReaderManager.GetLastError();
-            }
+        boolean enabled = !options.hasKey("enabled") || options.getBoolean("enabled");
+        BoundedEpcSet.Config config = new BoundedEpcSet.Config();
 
-            if (error != null) {
-                throw new Exception(error);
-            } else {
-                mReaderManager.SetActive(true);
-            }
+        if (options.hasKey("maxMemoryBytes")) {
+            config.maxMemoryBytes = (long) options.getDouble("maxMemoryBytes");
         }
-    }
 
-    private void doConnect() {
-        if (mRfidManager != null || mReaderManager != null) {
-            doDisconnect();
+        if (options.hasKey("expectedTags")) {
+            config.expectedTags = options.getInt("expectedTags");
         }
 
-        Log.d(LOG, "doConnect");
-
-        mRfidManager = RfidManager.InitInstance(this.reactContext);
-        mReaderManager = ReaderManager.InitInstance(this.reactContext);
-        mReaderCallback = new barcodeCallback();
+        synchronized (cacheTags) {
+            BoundedEpcSet boundedTags = ingest.boundedTags();
 
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(GeneralString.Intent_RFIDSERVICE_CONNECTED);
-        filter.addAction(GeneralString.Intent_RFIDSERVICE_TAG_DATA);
-        filter.addAction(GeneralString.Intent_RFIDSERVICE_EVENT);
-        filter.addAction(GeneralString.Intent_FWUpdate_ErrorMessage);
-        filter.addAction(GeneralString.Intent_FWUpdate_Percent);
-        filter.addAction(GeneralString.Intent_FWUpdate_Finish);
-        filter.addAction(GeneralString.Intent_GUN_Attached);
-        filter.addAction(GeneralString.Intent_GUN_Unattached);
-        filter.addAction(GeneralString.Intent_GUN_Power);
+            if (boundedTags != null) {
+                boundedTags.clear();
+            }
 
-        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_SOFTTRIGGER_DATA);
-        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_PASS_TO_APP);
-        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_READERSERVICE_CONNECTED);
+            ingest.setBoundedTags(enabled ? new BoundedEpcSet(config, new File(reactContext.getCacheDir(), "cipherlab-spill.bin")) : null);
+        }
 
-        this.reactContext.registerReceiver(myDataReceiver, filter);
+        clear();
     }
 
-    private void doDisconnect() {
-        Log.d(LOG, "doDisconnect");
-        if (mRfidManager != null || mReaderManager != null) {
-            try {
-                this.reactContext.unregisterReceiver(myDataReceiver);
-            } catch (Exception err) {
-                Log.e(LOG, err.getMessage());
+    @ReactMethod
+    public void getBoundedInventoryStats(Promise promise) {
+        synchronized (cacheTags) {
+            BoundedEpcSet boundedTags = ingest.boundedTags();
+
+            if (boundedTags == null) {
+                promise.reject(LOG, "Bounded inventory mode is not enabled");
+                return;
             }
 
-            if (mRfidManager != null) {
-                mRfidManager.Release();
+            WritableMap map = Arguments.createMap();
+            map.putDouble("tags", boundedTags.size());
+            map.putInt("inMemory", boundedTags.inMemory());
+            map.putInt("memoryCapacity", boundedTags.memoryTags());
+            map.putDouble("spilled", boundedTags.spilled());
+            map.putInt("spills", boundedTags.spills());
+            map.putInt("runs", boundedTags.runs());
+            map.putInt("merges", boundedTags.merges());
+            map.putInt("mergeFailures", boundedTags.mergeFailures());
+            map.putDouble("memoryBytes", boundedTags.memoryBytes());
+            map.putDouble("spillBytes", boundedTags.spillBytes());
+            map.putInt("bloomHashes", boundedTags.hashes());
+            map.putDouble("bloomQueries", boundedTags.bloomQueries());
+            map.putDouble("bloomPositives", boundedTags.bloomPositives());
+            map.putDouble("falsePositives", boundedTags.falsePositives());
+            map.putDouble("falsePositiveRate", boundedTags.measuredFalsePositiveRate());
+            map.putDouble("expectedFalsePositiveRate", boundedTags.expectedFalsePositiveRate());
+
+            promise.resolve(map);
+        }
+    }
 
-//                mRfidManager = null;
-            }
+    /**
+     * Starts a journaled session: the inventory is cleared and every read is written to disk,
+     * so the session survives a process kill and is resumed on the next connect.
+     */
+    @ReactMethod
+    public void startSession(Promise promise) {
+        closeJournal();
 
-            if (mReaderManager != null) {
-                mReaderManager.Release();
+        try {
+            String id;
 
-//                mReaderManager = null;
+            synchronized (cacheTags) {
+                InventoryJournal journal = InventoryJournal.create(journalDir(), cacheTags);
+                journal.setErrorListener(journalErrorListener);
+                ingest.setJournal(journal);
+                id = journal.id();
             }
 
-            WritableMap map = Arguments.createMap();
-            map.putBoolean("status", false);
-            map.putString("error", null);
-            sendEvent(READER_STATUS, map);
+            promise.resolve(id);
+        } catch (IOException err) {
+            promise.reject(err);
         }
     }
 
-    private void SetRFIDMode(RFIDMode mode) throws Exception {
-        String error = null;
+    @ReactMethod
+    public void listSessions(Promise promise) {
+        String active;
 
-        int re = mRfidManager.SetRFIDMode(mode);
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+        synchronized (cacheTags) {
+            InventoryJournal journal = ingest.journal();
+            active = journal != null ? journal.id() : null;
         }
 
-        if (error != null) {
-            throw new Exception(error);
+        WritableArray array = Arguments.createArray();
+
+        for (InventoryJournal.Session session : InventoryJournal.list(journalDir())) {
+            WritableMap map = Arguments.createMap();
+            map.putString("id", session.id);
+            map.putDouble("createdAt", session.createdAt);
+            map.putDouble("updatedAt", session.updatedAt);
+            map.putDouble("bytes", session.bytes);
+            map.putBoolean("active", session.id.equals(active));
+            array.pushMap(map);
         }
+
+        promise.resolve(array);
     }
 
-    private void SetPowerMode(PowerMode mode) throws Exception {
-        String error = null;
+    @ReactMethod
+    public void resumeSession(String id, Promise promise) {
+        closeJournal();
 
-        int re = mRfidManager.SetPowerMode(mode);
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
-        }
+        try {
+            long start = System.nanoTime();
+
+            int tags = resumeJournal(id);
+
+            WritableMap map = Arguments.createMap();
+            map.putString("id", id);
+            map.putInt("tags", tags);
+            map.putDouble("elapsedMs", (System.nanoTime() - start) / 1e6);
 
-        if (error != null) {
-            throw new Exception(error);
+            promise.resolve(map);
+        } catch (IOException err) {
+            promise.reject(err);
         }
     }
 
-    private void SetDefault() throws Exception {
-        String error = null;
+    @ReactMethod
+    public void discardSession(String id, Promise promise) {
+        boolean active;
 
-        int re = mRfidManager.ResetToDefault();
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+        synchronized (cacheTags) {
+            InventoryJournal journal = ingest.journal();
+            active = journal != null && journal.id().equals(id);
         }
 
-        if (error != null) {
-            throw new Exception(error);
+        if (active) {
+            closeJournal();
         }
+
+        promise.resolve(InventoryJournal.discard(journalDir(), id));
     }
 
-    private void SetNotification() throws Exception {
-        String error = null;
+    private File journalDir() {
+        return new File(reactContext.getFilesDir(), "cipherlab-journal");
+    }
 
-        NotificationParams settings = new NotificationParams();
-        mRfidManager.GetNotification(settings);
+    /**
+     * Captures every raw TAG_DATA read to a binary log until stopCapture, for replayCapture
+     * here or IngestBenchmark --replay on a JVM.
+     *
+     * @return the path of the capture file.
+     */
+    @ReactMethod
+    public synchronized void startCapture(Promise promise) {
+        if (readCapture != null) {
+            promise.reject(LOG, "A capture is already running");
+            return;
+        }
 
-        settings.ReaderBeep = BeepType.Mute;
-        settings.BatteryLED = Enable_State.TRUE;
-        settings.BatteryBeep = Enable_State.TRUE;
-        settings.ModuleTemperature = Enable_State.TRUE;
+        File dir = new File(reactContext.getFilesDir(), "cipherlab-captures");
 
-        int re = mRfidManager.SetNotification(settings);
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            promise.reject(LOG, "Could not create " + dir);
+            return;
         }
 
-        if (error != null) {
-            throw new Exception(error);
+        try {
+            File file = new File(dir, "capture-" + System.currentTimeMillis() + ReadCapture.SUFFIX);
+            readCapture = new ReadCapture(file);
+            promise.resolve(file.getAbsolutePath());
+        } catch (IOException err) {
+            promise.reject(err);
         }
     }
 
-    private void SetGen2() throws Exception {
-        String error = null;
-        Gen2Settings settings = new Gen2Settings();
+    @ReactMethod
+    public synchronized void stopCapture(Promise promise) {
+        ReadCapture capture = readCapture;
+
+        if (capture == null) {
+            promise.reject(LOG, "No capture is running");
+            return;
+        }
+
+        readCapture = null;
+
+        try {
+            capture.close();
 
-        settings.Session = SessionSettings.S1;
-        settings.InventoryStatus_Action = InventoryStatusSettings.STATE_A;
-        settings.SL_Flag = SLFlagSettings.All;
+            WritableMap map = Arguments.createMap();
+            map.putString("path", capture.file().getAbsolutePath());
+            map.putDouble("reads", capture.reads());
+            map.putDouble("bytes", capture.bytes());
 
-        int re = mRfidManager.SetGen2(settings);
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+            promise.resolve(map);
+        } catch (IOException err) {
+            promise.reject(err);
         }
+    }
+
+    private synchronized void closeCapture() {
+        if (readCapture != null) {
+            try {
+                readCapture.close();
+            } catch (IOException err) {
+                Log.e(LOG, "Capture: " + err.getMessage());
+            }
 
-        if (error != null) {
-            throw new Exception(error);
+            readCapture = null;
         }
     }
 
-    private void SetWorkMode(WorkMode mode) throws Exception {
-        String error = null;
-        int re = mRfidManager.SetWorkMode(mode);
+    /**
+     * Pushes a capture through the module's ingest code with the current settings, see
+     * {@link ReplayHarness}, at the captured pace divided by speed, or as fast as possible with
+     * speed 0. It has its own pipeline, inventory, journal and metrics and its payloads go
+     * nowhere, so the live inventory, metrics, events and the power controller never see
+     * replayed reads.
+     */
+    @ReactMethod
+    public synchronized void replayCapture(final String path, ReadableMap options, final Promise promise) {
+        if (replayThread != null) {
+            promise.reject(LOG, "A replay is already running");
+            return;
+        }
+
+        final double speed = options.hasKey("speed") ? options.getDouble("speed") : 1;
+        final ReplayHarness harness = new ReplayHarness(new IngestMetrics(), new File(reactContext.getCacheDir(), "cipherlab-replay"), null);
 
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+        try {
+            harness.mirror(ingest);
+        } catch (IOException err) {
+            harness.close();
+            promise.reject(err);
+            return;
         }
 
-        if (error != null) {
-            throw new Exception(error);
+        replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ReadReplay.Result result = harness.run(new File(path), speed);
+                    IngestMetrics replayMetrics = harness.metrics();
+
+                    WritableMap metrics = Arguments.createMap();
+                    metrics.putDouble("reads", replayMetrics.reads());
+                    metrics.putDouble("uniqueTags", replayMetrics.uniques());
+                    metrics.putDouble("duplicateRatio", replayMetrics.duplicateRatio());
+                    metrics.putDouble("filtered", harness.filtered());
+                    metrics.putMap("latency", buildLatency(replayMetrics));
+                    metrics.putMap("queue", buildPipelineStats(harness.pipeline()));
+
+                    WritableMap map = Arguments.createMap();
+                    map.putDouble("reads", result.reads);
+                    map.putDouble("elapsedMs", result.nanos / 1e6);
+                    map.putDouble("readsPerSecond", result.readsPerSecond());
+                    map.putDouble("maxLagMs", result.maxLagNanos / 1e6);
+                    map.putMap("metrics", metrics);
+
+                    promise.resolve(map);
+                } catch (IOException err) {
+                    promise.reject(err);
+                } catch (InterruptedException err) {
+                    promise.reject(LOG, "Replay stopped");
+                } finally {
+                    synchronized (CipherlabModule.this) {
+                        replayThread = null;
+                    }
+                }
+            }
+        }, "CipherlabReplay");
+        replayThread.start();
+    }
+
+    /**
+     * Stops a running replay; it resolves with the reads pushed so far.
+     */
+    @ReactMethod
+    public synchronized void stopReplay() {
+        if (replayThread != null) {
+            replayThread.interrupt();
         }
     }
 
-    private void SetRFLink(RFLink link) throws Exception {
-        String error = null;
-        int re = mRfidManager.SetRFLink(link);
+    private int resumeJournal(String id) throws IOException {
+        synchronized (cacheTags) {
+            InventoryJournal journal = InventoryJournal.resume(journalDir(), id, cacheTags);
+            journal.setErrorListener(journalErrorListener);
+            ingest.setJournal(journal);
 
-        if (re != ClResult.S_OK.ordinal()) {
-            error = mRfidManager.GetLastError();
+            return cacheTags.size();
         }
+    }
 
-        if (error != null) {
-            throw new Exception(error);
+    /**
+     * Detaches the journal before closing it: close() waits for the flusher, which needs the
+     * cacheTags lock.
+     */
+    private void closeJournal() {
+        InventoryJournal closing;
+
+        synchronized (cacheTags) {
+            closing = ingest.journal();
+            ingest.setJournal(null);
         }
-    }
 
-    private boolean addTagToList(String strEPC) {
-        if (strEPC != null) {
-            if (!cacheTags.contains(strEPC)) {
-                cacheTags.add(strEPC);
-                return true;
+        if (closing != null) {
+            try {
+                closing.close();
+            } catch (IOException err) {
+                Log.e(LOG, err.getMessage());
             }
         }
-        return false;
     }
 
-    private class barcodeCallback implements ReaderCallback {
+    private final InventoryJournal.ErrorListener journalErrorListener = new InventoryJournal.ErrorListener() {
         @Override
-        public void onDecodeComplete(String s) throws RemoteException {
-            //
+        public void onError(IOException err) {
+            Log.e(LOG, "Journal: " + err.getMessage());
         }
+    };
 
-        @Override
-        public IBinder asBinder() {
-            return null;
+    @ReactMethod
+    public void getInventorySnapshot(Promise promise) {
+        TagInventory snapshot;
+
+        synchronized (cacheTags) {
+            snapshot = cacheTags.copy();
         }
-        //
+
+        promise.resolve(buildSnapshot(snapshot));
     }
 
-    private final BroadcastReceiver myDataReceiver = new BroadcastReceiver() {
+    /**
+     * Same content as getInventorySnapshot, packed by {@link TagPacker} and base64 encoded.
+     */
+    @ReactMethod
+    public void getInventorySnapshotPacked(Promise promise) {
+        TagInventory snapshot;
 
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Log.d(LOG, intent.getAction());
+        synchronized (cacheTags) {
+            snapshot = cacheTags.copy();
+        }
 
-            switch (intent.getAction()) {
-                case GeneralString.Intent_RFIDSERVICE_CONNECTED: {
-                    try {
-                        RFIDConfigureReader();
+        promise.resolve(Base64.encodeToString(TagPacker.pack(snapshot), Base64.NO_WRAP));
+    }
 
+    /**
+     * Sends TAG_BATCH events as packed base64 records instead of an array of EPCs.
+     */
+    @ReactMethod
+    public void setPackedTransfer(boolean enable) {
+        ingest.setPackedTransfer(enable);
+    }
+
+    /**
+     * Creates a named inventory that collects the same reads as the default one, with its own
+     * de-dup set and aggregates, until it is deactivated or deleted.
+     */
+    @ReactMethod
+    public void createInventory(String name, Promise promise) {
+        if (inventories.create(name) == null) {
+            promise.reject(LOG, "Inventory already exists: " + name);
+        } else {
+            promise.resolve(name);
+        }
+    }
+
+    @ReactMethod
+    public void setInventoryActive(String name, boolean active, Promise promise) {
+        if (inventories.setActive(name, active)) {
+            promise.resolve(active);
+        } else {
+            promise.reject(LOG, "Unknown inventory: " + name);
+        }
+    }
+
+    @ReactMethod
+    public void deleteInventory(String name, Promise promise) {
+        if (inventories.remove(name)) {
+            promise.resolve(true);
+        } else {
+            promise.reject(LOG, "Unknown inventory: " + name);
+        }
+    }
+
+    @ReactMethod
+    public void clearInventory(String name, Promise promise) {
+        InventoryRegistry.Entry entry = inventories.get(name);
+
+        if (entry == null) {
+            promise.reject(LOG, "Unknown inventory: " + name);
+            return;
+        }
+
+        synchronized (entry.inventory) {
+            entry.inventory.clear();
+        }
+
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    public void listInventories(Promise promise) {
+        WritableArray array = Arguments.createArray();
+
+        for (InventoryRegistry.Entry entry : inventories.list()) {
+            WritableMap map = Arguments.createMap();
+            map.putString("name", entry.name);
+            map.putBoolean("active", entry.isActive());
+
+            synchronized (entry.inventory) {
+                map.putInt("tags", entry.inventory.size());
+            }
+
+            array.pushMap(map);
+        }
+
+        promise.resolve(array);
+    }
+
+    @ReactMethod
+    public void getInventory(String name, Promise promise) {
+        InventoryRegistry.Entry entry = inventories.get(name);
+
+        if (entry == null) {
+            promise.reject(LOG, "Unknown inventory: " + name);
+            return;
+        }
+
+        TagInventory snapshot;
+
+        synchronized (entry.inventory) {
+            snapshot = entry.inventory.copy();
+        }
+
+        promise.resolve(buildSnapshot(snapshot));
+    }
+
+    @ReactMethod
+    public void getInventoryPacked(String name, Promise promise) {
+        InventoryRegistry.Entry entry = inventories.get(name);
+
+        if (entry == null) {
+            promise.reject(LOG, "Unknown inventory: " + name);
+            return;
+        }
+
+        TagInventory snapshot;
+
+        synchronized (entry.inventory) {
+            snapshot = entry.inventory.copy();
+        }
+
+        promise.resolve(Base64.encodeToString(TagPacker.pack(snapshot), Base64.NO_WRAP));
+    }
+
+    private static WritableArray buildSnapshot(TagInventory inventory) {
+        WritableArray array = Arguments.createArray();
+
+        for (int i = 0; i < inventory.size(); i++) {
+            WritableMap map = Arguments.createMap();
+            map.putString("epc", inventory.epc(i));
+            map.putString("tid", inventory.tid(i));
+            map.putInt("count", inventory.count(i));
+            map.putDouble("rssiMin", inventory.rssiMin(i));
+            map.putDouble("rssiMax", inventory.rssiMax(i));
+            map.putDouble("rssiAvg", inventory.rssiAvg(i));
+            map.putDouble("firstSeen", inventory.firstSeen(i));
+            map.putDouble("lastSeen", inventory.lastSeen(i));
+            array.pushMap(map);
+        }
+
+        return array;
+    }
+
+    @ReactMethod
+    public void getPipelineStats(Promise promise) {
+        promise.resolve(buildPipelineStats(tagPipeline));
+    }
+
+    private static WritableMap buildPipelineStats(TagPipeline pipeline) {
+        WritableMap map = Arguments.createMap();
+        map.putInt("depth", pipeline.depth());
+        map.putInt("capacity", pipeline.capacity());
+        map.putInt("highWaterMark", pipeline.highWaterMark());
+        map.putDouble("drops", pipeline.drops());
+
+        return map;
+    }
+
+    private static WritableMap buildLatency(IngestMetrics metrics) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", metrics.latencyCount());
+        map.putDouble("p50Us", metrics.latencyPercentileMicros(50));
+        map.putDouble("p90Us", metrics.latencyPercentileMicros(90));
+        map.putDouble("p99Us", metrics.latencyPercentileMicros(99));
+        map.putDouble("maxUs", metrics.latencyMaxMicros());
+
+        return map;
+    }
+
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        promise.resolve(buildMetrics());
+    }
+
+    @ReactMethod
+    public void resetMetrics() {
+        metrics.reset();
+        tagPipeline.resetStats();
+    }
+
+    /**
+     * Emits a METRICS event every intervalMs; 0 turns it off.
+     */
+    @ReactMethod
+    public void setMetricsInterval(final int intervalMs) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                metricsIntervalMs = intervalMs;
+                mainHandler.removeCallbacks(metricsRunnable);
+
+                if (intervalMs > 0) {
+                    mainHandler.postDelayed(metricsRunnable, intervalMs);
+                }
+            }
+        });
+    }
+
+    /**
+     * 0 = none, 1 = info, 2 = debug (logs every read).
+     */
+    @ReactMethod
+    public void setLogLevel(int level) {
+        TagLog.level = level;
+    }
+
+    private WritableMap buildMetrics() {
+        metrics.sample(System.nanoTime());
+
+        WritableMap queue = buildPipelineStats(tagPipeline);
+        queue.putInt("batchPending", ingest.batchPending());
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("reads", metrics.reads());
+        map.putDouble("uniqueTags", metrics.uniques());
+        map.putDouble("emits", metrics.emits());
+        map.putDouble("readsPerSecond", metrics.readsPerSecond());
+        map.putDouble("uniqueTagsPerSecond", metrics.uniquesPerSecond());
+        map.putDouble("emitsPerSecond", metrics.emitsPerSecond());
+        map.putDouble("duplicateRatio", metrics.duplicateRatio());
+
+        map.putDouble("filtered", ingest.filtered());
+        map.putDouble("stateUpdates", stateChannel.updates());
+        map.putDouble("stateEvents", stateChannel.events());
+
+        PowerController controller = powerController;
+
+        if (controller != null) {
+            map.putMap("powerControl", buildPowerControl(controller));
+        }
+        map.putMap("latency", buildLatency(metrics));
+        map.putMap("queue", queue);
+
+        return map;
+    }
+
+    @ReactMethod
+    public void setSingleRead(boolean enable) {
+        Log.d(LOG, "setSingleRead");
+
+        ingest.setSingleRead(enable);
+    }
+
+    /**
+     * Replaces the RSSI filter used by single-read mode (and by inventory mode if
+     * filterInventory is set).
+     */
+    @ReactMethod
+    public void setReadFilter(ReadableMap options) {
+        RssiFilter.Config config = new RssiFilter.Config();
+
+        if (options.hasKey("threshold")) {
+            config.threshold = options.getDouble("threshold");
+        }
+
+        if (options.hasKey("smoothing")) {
+            String smoothing = options.getString("smoothing");
+
+            if ("ewma".equals(smoothing)) {
+                config.smoothing = RssiFilter.SMOOTHING_EWMA;
+            } else if ("window".equals(smoothing)) {
+                config.smoothing = RssiFilter.SMOOTHING_WINDOW;
+            }
+        }
+
+        if (options.hasKey("alpha")) {
+            config.alpha = options.getDouble("alpha");
+        }
+
+        if (options.hasKey("windowReads")) {
+            config.windowReads = options.getInt("windowReads");
+        }
+
+        if (options.hasKey("select") && "strongest".equals(options.getString("select"))) {
+            config.select = RssiFilter.SELECT_STRONGEST;
+        }
+
+        if (options.hasKey("selectWindowMs")) {
+            config.selectWindowMs = options.getInt("selectWindowMs");
+        }
+
+        if (options.hasKey("minReads")) {
+            config.minReads = options.getInt("minReads");
+        }
+
+        if (options.hasKey("filterInventory")) {
+            config.filterInventory = options.getBoolean("filterInventory");
+        }
+
+        ingest.setRssiFilter(new RssiFilter(config));
+    }
+
+    @ReactMethod
+    public void setTagBatching(boolean enable, int intervalMs, int maxSize) {
+        Log.d(LOG, "setTagBatching: " + enable);
+
+        ingest.setBatching(enable, intervalMs, maxSize);
+    }
+
+    /**
+     * Barcode ingest: dedupWindowMs drops repeats of the same data within the window; batch
+     * delivers BARCODE_BATCH events with code type and timestamp instead of BARCODE strings;
+     * source picks the broadcast or the ReaderCallback path; compareSources enables both so
+     * getBarcodeStats can report which delivers first.
+     */
+    @ReactMethod
+    public void setBarcodeOptions(ReadableMap options) {
+        Log.d(LOG, "setBarcodeOptions");
+
+        if (options.hasKey("dedupWindowMs")) {
+            barcodeFilter.setWindow(options.getInt("dedupWindowMs"));
+        }
+
+        if (options.hasKey("batch")) {
+            int intervalMs = options.hasKey("batchIntervalMs") ? options.getInt("batchIntervalMs") : Batcher.DEFAULT_INTERVAL_MS;
+            int maxSize = options.hasKey("batchMaxSize") ? options.getInt("batchMaxSize") : Batcher.DEFAULT_MAX_SIZE;
+
+            barcodeBatcher.configure(intervalMs, maxSize);
+            isBatchBarcodes = options.getBoolean("batch");
+
+            if (!isBatchBarcodes) {
+                barcodeBatcher.flush();
+            }
+        }
+
+        if (options.hasKey("source")) {
+            barcodeSource = "callback".equals(options.getString("source")) ? BarcodeRead.SOURCE_CALLBACK : BarcodeRead.SOURCE_BROADCAST;
+        }
+
+        boolean compare = options.hasKey("compareSources") && options.getBoolean("compareSources");
+
+        device.setBarcodeCallback(barcodeSource == BarcodeRead.SOURCE_CALLBACK || compare);
+    }
+
+    @ReactMethod
+    public void getBarcodeStats(Promise promise) {
+        WritableMap latency = Arguments.createMap();
+        latency.putDouble("count", barcodeMetrics.latencyCount());
+        latency.putDouble("p50Us", barcodeMetrics.latencyPercentileMicros(50));
+        latency.putDouble("p99Us", barcodeMetrics.latencyPercentileMicros(99));
+        latency.putDouble("maxUs", barcodeMetrics.latencyMaxMicros());
+
+        WritableMap paths = Arguments.createMap();
+        paths.putDouble("pairs", barcodePaths.pairs());
+        paths.putDouble("callbackFirst", barcodePaths.callbackFirst());
+        paths.putDouble("meanCallbackLeadUs", barcodePaths.meanCallbackLeadMicros());
+        paths.putDouble("maxCallbackLeadUs", barcodePaths.maxCallbackLeadMicros());
+        paths.putDouble("maxCallbackLagUs", barcodePaths.maxCallbackLagMicros());
+        paths.putDouble("unpaired", barcodePaths.unpaired());
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("scans", barcodeFilter.scans());
+        map.putDouble("suppressed", barcodeFilter.suppressed());
+        map.putDouble("emitted", barcodeMetrics.uniques());
+        map.putMap("latency", latency);
+        map.putMap("paths", paths);
+
+        promise.resolve(map);
+    }
+
+    @ReactMethod
+    public void resetBarcodeStats() {
+        barcodeFilter.reset();
+        barcodePaths.reset();
+        barcodeMetrics.reset();
+    }
+
+    @ReactMethod
+    public void setEnabled(boolean enable, Promise promise) {
+        ConnectState state = connectState;
+
+        if (!device.isConnected() || state == null || !state.isRfidReady()) {
+            promise.reject(LOG, "Reader is not ready");
+        } else {
+            isReadBarcode = !enable;
+            Log.d(LOG, "setEnabled: " + enable);
+
+            try {
+                device.setTriggerEnabled(enable);
+                promise.resolve(true);
+            } catch (Exception err) {
+                Log.d(LOG, err.getMessage());
+                promise.reject(LOG, err.getMessage());
+            }
+        }
+    }
+
+    @ReactMethod
+    public void programTag(String oldTag, String newTag, final Promise promise) {
+        try {
+            if (!device.isConnected()) {
+                throw new Exception("Reader is not connected");
+            }
+
+            if (!EpcCodec.isValid(oldTag) || !EpcCodec.isValid(newTag)) {
+                throw new Exception("Invalid EPC");
+            }
+
+            List<TagWriter.Request> requests = Collections.singletonList(new TagWriter.Request(oldTag, newTag));
+
+            tagWriter.submit(requests, new TagWriter.Options(), new TagWriter.Listener() {
+                @Override
+                public void onComplete(List<TagWriter.Result> results) {
+                    promise.resolve(results.get(0).isSuccess());
+                }
+            });
+        } catch (Exception err) {
+            promise.reject(err);
+        }
+    }
+
+    @ReactMethod
+    public void programTags(ReadableArray tags, ReadableMap options, final Promise promise) {
+        try {
+            if (!device.isConnected()) {
+                throw new Exception("Reader is not connected");
+            }
+
+            final TagWriter.Result[] results = new TagWriter.Result[tags.size()];
+            final List<Integer> positions = new ArrayList<>(tags.size());
+            List<TagWriter.Request> requests = new ArrayList<>(tags.size());
+
+            for (int i = 0; i < tags.size(); i++) {
+                ReadableMap tag = tags.getMap(i);
+                String oldEpc = tag.hasKey("oldEpc") ? tag.getString("oldEpc") : null;
+                String newEpc = tag.hasKey("newEpc") ? tag.getString("newEpc") : null;
+
+                if (EpcCodec.isValid(oldEpc) && EpcCodec.isValid(newEpc)) {
+                    positions.add(i);
+                    requests.add(new TagWriter.Request(oldEpc, newEpc));
+                } else {
+                    // Rejected here, so a malformed entry neither waits for nor reaches the reader.
+                    results[i] = new TagWriter.Result(oldEpc, newEpc, TagWriter.RESPONSE_INVALID_EPC, 0, 0);
+                }
+            }
+
+            TagWriter.Options writeOptions = new TagWriter.Options();
+
+            if (options.hasKey("retries")) {
+                writeOptions.retries = options.getInt("retries");
+            }
+
+            if (options.hasKey("retryDelayMs")) {
+                writeOptions.retryDelayMs = options.getInt("retryDelayMs");
+            }
+
+            if (options.hasKey("timeoutMs")) {
+                writeOptions.timeoutMs = options.getInt("timeoutMs");
+            }
+
+            TagWriter.Listener listener = new TagWriter.Listener() {
+                @Override
+                public void onComplete(List<TagWriter.Result> written) {
+                    for (int i = 0; i < written.size(); i++) {
+                        results[positions.get(i)] = written.get(i);
+                    }
+
+                    WritableArray array = Arguments.createArray();
+
+                    for (TagWriter.Result result : results) {
                         WritableMap map = Arguments.createMap();
-                        map.putBoolean("status", true);
-                        sendEvent(READER_STATUS, map);
-                    } catch (Exception err) {
-                        WritableMap map = Arguments.createMap();
-                        map.putBoolean("status", false);
-                        map.putString("error", err.getMessage());
-                        sendEvent(READER_STATUS, map);
+                        map.putString("oldEpc", result.oldEpc);
+                        map.putString("newEpc", result.newEpc);
+                        map.putBoolean("status", result.isSuccess());
+                        map.putString("error", result.isSuccess() ? null : writeError(result.response));
+                        map.putInt("response", result.response);
+                        map.putInt("attempts", result.attempts);
+                        map.putDouble("elapsedMs", result.elapsedMs);
+                        array.pushMap(map);
+                    }
+
+                    promise.resolve(array);
+                }
+            };
+
+            if (requests.isEmpty()) {
+                listener.onComplete(Collections.<TagWriter.Result>emptyList());
+            } else {
+                tagWriter.submit(requests, writeOptions, listener);
+            }
+        } catch (Exception err) {
+            promise.reject(err);
+        }
+    }
+
+    private String writeError(int response) {
+        switch (response) {
+            case TagWriter.RESPONSE_INVALID_EPC:
+                return "Invalid EPC";
+            case TagWriter.RESPONSE_CANCELLED:
+                return "Cancelled";
+            case TagWriter.RESPONSE_TIMEOUT:
+                return "Timed out";
+            case TagWriter.RESPONSE_PASSWORD_FAIL:
+                return "Wrong password";
+            case TagWriter.RESPONSE_DEVICE_BUSY:
+                return "Device busy";
+            default:
+                return "Failed to program tag...";
+        }
+    }
+
+    @ReactMethod
+    public void softReadCancel(boolean enable, Promise promise) {
+        try {
+            if (device.isOpen()) {
+                device.softScanTrigger(enable);
+
+                promise.resolve(true);
+            } else {
+                throw new Exception("Reader is not connected");
+            }
+        } catch (Exception err) {
+            promise.reject(err);
+        }
+    }
+
+    /**
+     * Locate (Geiger) mode: reads are narrowed to one EPC, by the reader's EPC filter where it
+     * accepts one, and a LOCATE_TAG event with its proximity is sent every
+     * TagLocator.INTERVAL_MS. Inventory and TAG events are paused until stopLocate.
+     */
+    @ReactMethod
+    public synchronized void startLocate(String epc, Promise promise) {
+        if (!EpcCodec.isValid(epc)) {
+            promise.reject(LOG, "Invalid EPC: " + epc);
+            return;
+        }
+
+        boolean hardwareFilter = false;
+
+        if (device.isConnected()) {
+            try {
+                device.setEpcFilter(epc);
+                hardwareFilter = true;
+            } catch (Exception err) {
+                Log.e(LOG, "setEpcFilter: " + err.getMessage());
+            }
+        }
+
+        ingest.setLocator(new TagLocator(epc));
+
+        if (locateTicker == null) {
+            locateTicker = Executors.newSingleThreadScheduledExecutor();
+            locateTicker.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    // An exception would cancel the ticker.
+                    try {
+                        TagLocator current = ingest.locator();
+
+                        if (current != null) {
+                            sendEvent(LOCATE_TAG, buildLocate(current, System.nanoTime()));
+                        }
+                    } catch (Exception err) {
+                        Log.e(LOG, "Locate: " + err.getMessage());
+                    }
+                }
+            }, TagLocator.INTERVAL_MS, TagLocator.INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putString("epc", epc);
+        map.putBoolean("hardwareFilter", hardwareFilter);
+        map.putInt("intervalMs", TagLocator.INTERVAL_MS);
+
+        promise.resolve(map);
+    }
+
+    @ReactMethod
+    public synchronized void stopLocate(Promise promise) {
+        stopLocateTicker();
+
+        if (device.isConnected()) {
+            applyHardwareFilter();
+        }
+
+        promise.resolve(true);
+    }
+
+    /**
+     * Only reads whose EPC starts with one of prefixes ("hex" or "hex/bits"), or that carry
+     * one of companyPrefixes as GS1 company prefix (96-bit SGTIN, SSCC, SGLN, GRAI, GIAI), are
+     * kept; the rest are dropped as they arrive, before de-dup and emit. With a single
+     * whole-digit prefix the reader's EPC filter is set too. No rules removes the filter.
+     */
+    @ReactMethod
+    public synchronized void setTagFilter(ReadableMap rules, Promise promise) {
+        List<String> prefixes = new ArrayList<>();
+        List<String> companyPrefixes = new ArrayList<>();
+
+        if (rules != null && rules.hasKey("prefixes")) {
+            ReadableArray array = rules.getArray("prefixes");
+
+            for (int i = 0; i < array.size(); i++) {
+                prefixes.add(array.getString(i));
+            }
+        }
+
+        if (rules != null && rules.hasKey("companyPrefixes")) {
+            ReadableArray array = rules.getArray("companyPrefixes");
+
+            for (int i = 0; i < array.size(); i++) {
+                companyPrefixes.add(array.getString(i));
+            }
+        }
+
+        EpcFilterIndex index;
+
+        try {
+            index = new EpcFilterIndex(prefixes, companyPrefixes);
+        } catch (IllegalArgumentException err) {
+            promise.reject(LOG, err.getMessage());
+            return;
+        }
+
+        ingest.setTagFilter(index);
+
+        boolean hardwareFilter = false;
+
+        if (ingest.locator() == null && device.isConnected()) {
+            hardwareFilter = applyHardwareFilter();
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putInt("rules", index.ruleCount());
+        map.putBoolean("hardwareFilter", hardwareFilter);
+
+        promise.resolve(map);
+    }
+
+    /**
+     * Sets the reader's EPC filter to the tag filter's hardware prefix, or removes it.
+     *
+     * @return true if the reader now applies the tag filter.
+     */
+    private boolean applyHardwareFilter() {
+        EpcFilterIndex filter = ingest.tagFilter();
+        String prefix = filter != null ? filter.hardwarePrefix() : null;
+
+        try {
+            device.setEpcFilter(prefix);
+
+            return prefix != null;
+        } catch (Exception err) {
+            Log.e(LOG, "setEpcFilter: " + err.getMessage());
+
+            return false;
+        }
+    }
+
+    private synchronized void stopLocateTicker() {
+        ingest.setLocator(null);
+
+        if (locateTicker != null) {
+            locateTicker.shutdownNow();
+            locateTicker = null;
+        }
+    }
+
+    /**
+     * Presence tracking for fixed or cart-mounted reading: an EPC arrives on its first read and
+     * departs once it has not been read for departureTimeoutMs. Every intervalMs the changes are
+     * sent as TAG_ARRIVED and TAG_DEPARTED arrays of EPCs. Independent of the inventory, so
+     * clear() does not reset it. Re-enabling starts with an empty field.
+     */
+    @ReactMethod
+    public synchronized void setPresenceTracking(ReadableMap options) {
+        Log.d(LOG, "setPresenceTracking");
+
+        stopPresenceTicker();
+
+        if (options.hasKey("enabled") && !options.getBoolean("enabled")) {
+            return;
+        }
+
+        int timeoutMs = options.hasKey("departureTimeoutMs") ? options.getInt("departureTimeoutMs") : PresenceTracker.DEFAULT_TIMEOUT_MS;
+        int intervalMs = options.hasKey("intervalMs") ? options.getInt("intervalMs") : PresenceTracker.DEFAULT_TICK_MS;
+
+        intervalMs = Math.max(1, intervalMs);
+        ingest.setPresence(new PresenceTracker(timeoutMs, intervalMs, System.nanoTime()));
+
+        presenceTicker = Executors.newSingleThreadScheduledExecutor();
+        presenceTicker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel the ticker.
+                try {
+                    PresenceTracker current = ingest.presence();
+
+                    if (current != null) {
+                        List<String> arrived = current.takeArrived();
+                        List<String> departed = current.advance(System.nanoTime());
+
+                        if (!arrived.isEmpty()) {
+                            sendEvent(TAG_ARRIVED, toStringArray(arrived));
+                        }
+
+                        if (!departed.isEmpty()) {
+                            sendEvent(TAG_DEPARTED, toStringArray(departed));
+                        }
+                    }
+                } catch (Exception err) {
+                    Log.e(LOG, "Presence: " + err.getMessage());
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * READER_STATUS, TRIGGER_STATUS and BATTERY_STATUS are sent only when the state changes,
+     * at most once per minIntervalMs each. The battery level is polled every batteryPollMs
+     * while the reader is connected.
+     */
+    @ReactMethod
+    public synchronized void setDeviceStateOptions(ReadableMap options) {
+        if (options.hasKey("minIntervalMs")) {
+            stateChannel.setMinInterval(options.getInt("minIntervalMs"));
+        }
+
+        if (options.hasKey("batteryPollMs")) {
+            batteryPollMs = Math.max(1000, options.getInt("batteryPollMs"));
+            stateChannel.setBatteryPollInterval(batteryPollMs);
+
+            if (batteryPoller != null) {
+                stopBatteryPoller();
+                startBatteryPoller();
+            }
+        }
+    }
+
+    private synchronized void startBatteryPoller() {
+        if (batteryPoller != null) {
+            return;
+        }
+
+        batteryPoller = Executors.newSingleThreadScheduledExecutor();
+        batteryPoller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel the poller.
+                try {
+                    if (device.isConnected()) {
+                        stateChannel.onBatteryLevel(device.getBatteryLevel());
+                    }
+                } catch (Exception err) {
+                    Log.e(LOG, "Battery: " + err.getMessage());
+                }
+            }
+        }, 0, batteryPollMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopBatteryPoller() {
+        if (batteryPoller != null) {
+            batteryPoller.shutdownNow();
+            batteryPoller = null;
+        }
+    }
+
+    /**
+     * Closed-loop tx power and duty cycle control, see {@link PowerController}. Every
+     * intervalMs it feeds the controller the unique tag count, the module temperature and the
+     * battery level, and applies its decision. It owns the tx power while enabled, so
+     * setAntennaLevel and profile powers only hold until its next power step; disabling it
+     * restores the tx power and continuous inventory timing from before.
+     */
+    @ReactMethod
+    public synchronized void setAdaptivePower(ReadableMap options) {
+        Log.d(LOG, "setAdaptivePower");
+
+        stopPowerControl();
+
+        if (options.hasKey("enabled") && !options.getBoolean("enabled")) {
+            return;
+        }
+
+        PowerController.Config config = new PowerController.Config();
+
+        if (options.hasKey("minTxPower")) {
+            config.minTxPower = options.getInt("minTxPower");
+        }
+
+        if (options.hasKey("maxTxPower")) {
+            config.maxTxPower = options.getInt("maxTxPower");
+        }
+
+        if (options.hasKey("minDutyPercent")) {
+            config.minDutyPercent = options.getInt("minDutyPercent");
+        }
+
+        if (options.hasKey("softMarginC")) {
+            config.softMarginC = options.getDouble("softMarginC");
+        }
+
+        if (options.hasKey("hardMarginC")) {
+            config.hardMarginC = options.getDouble("hardMarginC");
+        }
+
+        if (options.hasKey("lowBatteryLevel")) {
+            config.lowBatteryLevel = options.getInt("lowBatteryLevel");
+        }
+
+        int intervalMs = options.hasKey("intervalMs") ? Math.max(100, options.getInt("intervalMs")) : 2000;
+
+        powerRestoreTxPower = device.isConnected() ? device.getTxPower() : -1;
+        powerRestoreDutyCycle = device.isConnected() ? device.getDutyCycle() : null;
+
+        int dutyPercent = 100;
+
+        if (powerRestoreDutyCycle != null && powerRestoreDutyCycle[0] + powerRestoreDutyCycle[1] > 0) {
+            dutyPercent = 100 * powerRestoreDutyCycle[0] / (powerRestoreDutyCycle[0] + powerRestoreDutyCycle[1]);
+        }
+
+        powerController = new PowerController(config, powerRestoreTxPower >= 0 ? powerRestoreTxPower : config.maxTxPower, dutyPercent);
+
+        powerTicker = Executors.newSingleThreadScheduledExecutor();
+        powerTicker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel the ticker.
+                try {
+                    PowerController controller = powerController;
+
+                    if (controller != null && device.isConnected()) {
+                        tickPowerControl(controller);
                     }
-                    break;
+                } catch (Exception err) {
+                    Log.e(LOG, "Power control: " + err.getMessage());
                 }
-                case GeneralString.Intent_GUN_Attached: {
-                    doConnect();
-                    break;
-                }
-                case GeneralString.Intent_GUN_Unattached: {
-                    //doDisconnect();
-                    WritableMap map = Arguments.createMap();
-                    map.putBoolean("status", false);
-                    map.putString("error", null);
-                    sendEvent(READER_STATUS, map);
-                    break;
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void tickPowerControl(PowerController controller) {
+        int txPower = controller.txPower();
+        int duty = controller.dutyPercent();
+
+        String decision = controller.tick(System.nanoTime(), metrics.uniques(),
+                device.getModuleTemperature(), device.getProtectTemperature(), stateChannel.batteryLevel());
+
+        boolean txPowerFailed = false;
+        boolean dutyFailed = false;
+
+        if (controller.txPower() != txPower) {
+            try {
+                device.setTxPower(controller.txPower());
+            } catch (Exception err) {
+                Log.e(LOG, "Power control: tx power " + controller.txPower() + ": " + err.getMessage());
+                txPowerFailed = true;
+            }
+        }
+
+        if (controller.dutyPercent() != duty) {
+            int inventoryMs = DUTY_PERIOD_MS * controller.dutyPercent() / 100;
+
+            try {
+                device.setDutyCycle(inventoryMs, DUTY_PERIOD_MS - inventoryMs);
+            } catch (Exception err) {
+                Log.e(LOG, "Power control: duty cycle " + controller.dutyPercent() + "%: " + err.getMessage());
+                dutyFailed = true;
+            }
+        }
+
+        controller.rejected(txPowerFailed, dutyFailed);
+
+        if (TagLog.isDebug()) {
+            Log.d(LOG, "Power control: " + decision + ", " + controller.txPower() + " dBm, " + controller.dutyPercent() + "%");
+        }
+    }
+
+    private synchronized void stopPowerControl() {
+        if (powerTicker == null) {
+            return;
+        }
+
+        powerTicker.shutdownNow();
+        powerTicker = null;
+        powerController = null;
+
+        if (device.isConnected()) {
+            // Continuous inventory without pause if the timing could not be read at the start.
+            int[] dutyCycle = powerRestoreDutyCycle != null ? powerRestoreDutyCycle : new int[]{DUTY_PERIOD_MS, 0};
+
+            try {
+                device.setDutyCycle(dutyCycle[0], dutyCycle[1]);
+            } catch (Exception err) {
+                Log.e(LOG, "Power control: " + err.getMessage());
+            }
+
+            try {
+                if (powerRestoreTxPower >= 0) {
+                    device.setTxPower(powerRestoreTxPower);
                 }
-                case GeneralString.Intent_GUN_Power: {
-                    boolean AC = intent.getBooleanExtra(GeneralString.Data_GUN_ACPower, false);
-                    boolean Connect = intent.getBooleanExtra(GeneralString.Data_GUN_Connect, false);
-                    break;
+            } catch (Exception err) {
+                Log.e(LOG, "Power control: " + err.getMessage());
+            }
+        }
+    }
+
+    private static WritableMap buildPowerControl(PowerController controller) {
+        WritableMap decisions = Arguments.createMap();
+
+        for (Map.Entry<String, Long> entry : controller.decisions().entrySet()) {
+            decisions.putDouble(entry.getKey(), entry.getValue());
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putInt("txPower", controller.txPower());
+        map.putInt("dutyPercent", controller.dutyPercent());
+        map.putString("decision", controller.decision());
+        map.putBoolean("lowBattery", controller.isLowBattery());
+        putNumber(map, "discoveriesPerMinute", controller.rate());
+        putNumber(map, "headroomC", controller.headroom());
+        map.putMap("decisions", decisions);
+
+        return map;
+    }
+
+    private static void putNumber(WritableMap map, String key, double value) {
+        if (Double.isNaN(value)) {
+            map.putNull(key);
+        } else {
+            map.putDouble(key, value);
+        }
+    }
+
+    @ReactMethod
+    public void getPresentTags(Promise promise) {
+        PresenceTracker current = ingest.presence();
+
+        if (current == null) {
+            promise.reject(LOG, "Presence tracking is not enabled");
+        } else {
+            promise.resolve(toStringArray(current.present()));
+        }
+    }
+
+    private static WritableArray toStringArray(List<String> list) {
+        WritableArray array = Arguments.createArray();
+
+        for (String value : list) {
+            array.pushString(value);
+        }
+
+        return array;
+    }
+
+    private synchronized void stopPresenceTicker() {
+        ingest.setPresence(null);
+
+        if (presenceTicker != null) {
+            presenceTicker.shutdownNow();
+            presenceTicker = null;
+        }
+    }
+
+    private WritableMap buildLocate(TagLocator locator, long now) {
+        WritableMap map = Arguments.createMap();
+        map.putString("epc", locator.epc());
+        map.putInt("proximity", locator.proximity(now));
+        map.putInt("reads", locator.takeReads());
+        map.putDouble("ageMs", locator.age(now));
+
+        double rssi = locator.rssi();
+
+        if (Double.isNaN(rssi)) {
+            map.putNull("rssi");
+        } else {
+            map.putDouble("rssi", rssi);
+        }
+
+        return map;
+    }
+
+    @ReactMethod
+    public void setSimulation(@Nullable ReadableMap options) {
+        Log.d(LOG, "setSimulation: " + (options != null));
+
+        doDisconnect();
+        device.shutdown();
+
+        if (options == null) {
+            device = new CipherlabReaderDevice(this.reactContext);
+            return;
+        }
+
+        SimulatedReaderDevice.Config config = new SimulatedReaderDevice.Config();
+
+        if (options.hasKey("population")) {
+            config.population = options.getInt("population");
+        }
+
+        if (options.hasKey("readsPerSecond")) {
+            config.readsPerSecond = options.getInt("readsPerSecond");
+        }
+
+        if (options.hasKey("rssiMean")) {
+            config.rssiMean = options.getDouble("rssiMean");
+        }
+
+        if (options.hasKey("rssiStdDev")) {
+            config.rssiStdDev = options.getDouble("rssiStdDev");
+        }
+
+        if (options.hasKey("rssiJitter")) {
+            config.rssiJitter = options.getDouble("rssiJitter");
+        }
+
+        if (options.hasKey("duplicateRatio")) {
+            config.duplicateRatio = options.getDouble("duplicateRatio");
+        }
+
+        if (options.hasKey("epcBits")) {
+            config.epcBits = options.getInt("epcBits");
+        }
+
+        if (options.hasKey("mixedEpcLengths")) {
+            config.mixedEpcLengths = options.getBoolean("mixedEpcLengths");
+        }
+
+        if (options.hasKey("includeTid")) {
+            config.includeTid = options.getBoolean("includeTid");
+        }
+
+        if (options.hasKey("barcodesPerSecond")) {
+            config.barcodesPerSecond = options.getInt("barcodesPerSecond");
+        }
+
+        if (options.hasKey("autoStart")) {
+            config.autoStart = options.getBoolean("autoStart");
+        }
+
+        if (options.hasKey("seed")) {
+            config.seed = (long) options.getDouble("seed");
+        }
+
+        if (options.hasKey("arrivalsPerSecond")) {
+            config.arrivalsPerSecond = options.getDouble("arrivalsPerSecond");
+        }
+
+        if (options.hasKey("sensitivityDbm")) {
+            config.sensitivityDbm = options.getDouble("sensitivityDbm");
+        }
+
+        if (options.hasKey("ambientC")) {
+            config.ambientC = options.getDouble("ambientC");
+        }
+
+        if (options.hasKey("protectC")) {
+            config.protectC = options.getDouble("protectC");
+        }
+
+        if (options.hasKey("heatPerSecond")) {
+            config.heatPerSecond = options.getDouble("heatPerSecond");
+        }
+
+        if (options.hasKey("coolingPerSecond")) {
+            config.coolingPerSecond = options.getDouble("coolingPerSecond");
+        }
+
+        if (options.hasKey("batteryMinutes")) {
+            config.batteryMinutes = options.getDouble("batteryMinutes");
+        }
+
+        device = new SimulatedReaderDevice(config);
+    }
+
+    private void doConnect() {
+        Log.d(LOG, "doConnect");
+
+        final ConnectState state = new ConnectState();
+        connectState = state;
+
+        synchronized (connectLock) {
+            if (connectExecutor == null) {
+                connectExecutor = Executors.newFixedThreadPool(2);
+            }
+
+            connectExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized (openLock) {
+                            openDevice(state);
+                        }
+                    } catch (Exception err) {
+                        onConnectFailed(state, err.getMessage());
+                    }
                 }
-                case GeneralString.Intent_RFIDSERVICE_EVENT: {
-                    int event = intent.getIntExtra(GeneralString.EXTRA_EVENT_MASK, -1);
-                    Log.d(LOG, "[Intent_RFIDSERVICE_EVENT] DeviceEvent=" + event);
-                    if (event == DeviceEvent.PowerSavingMode.getValue()) {
-                        Log.i(GeneralString.TAG, "PowerSavingMode ");
-                    } else if (event == DeviceEvent.LowBattery.getValue()) {
-                        Log.i(GeneralString.TAG, "LowBattery ");
-                    } else if (event == DeviceEvent.ScannerFailure.getValue()) {
-                        Log.i(GeneralString.TAG, "ScannerFailure ");
-                    } else if (event == DeviceEvent.BatteryLose.getValue()) {
-                        Log.i(GeneralString.TAG, "BatteryLose ");
-                    } else if (event == DeviceEvent.OverTemperature.getValue()) {
-                        Log.i(GeneralString.TAG, "OverTemperature ");
-                    } else if (event == DeviceEvent.Battery_Re_Plug.getValue()) {
-                        Log.i(GeneralString.TAG, "Battery_Re_Plug ");
+            });
+        }
+    }
+
+    /**
+     * The gun was docked again while the managers are still bound: only the RFID settings are
+     * checked, the barcode service is not touched.
+     */
+    private void doReattach() {
+        Log.d(LOG, "doReattach");
+
+        ConnectState previous = connectState;
+        ConnectState state;
+
+        if (previous != null) {
+            state = previous.reattach();
+        } else {
+            state = new ConnectState();
+            state.mark(ConnectState.OPEN);
+        }
+
+        connectState = state;
+        deviceListener.onRfidConnected();
+    }
+
+    private void runConnectTask(Runnable task) {
+        synchronized (connectLock) {
+            if (connectExecutor != null) {
+                connectExecutor.execute(task);
+            }
+        }
+    }
+
+    private void openDevice(ConnectState state) {
+        tagPipeline.start();
+
+        synchronized (cacheTags) {
+            if (ingest.journal() == null) {
+                String id = InventoryJournal.current(journalDir());
+
+                if (id != null) {
+                    try {
+                        long start = System.nanoTime();
+                        int tags = resumeJournal(id);
+                        Log.i(LOG, "Resumed session " + id + ": " + tags + " tags in " + (System.nanoTime() - start) / 1000000 + " ms");
+                    } catch (IOException err) {
+                        Log.e(LOG, err.getMessage());
                     }
-                    break;
                 }
-                case GeneralString.Intent_RFIDSERVICE_TAG_DATA: {
-                    /*
-                     * type : 0=Normal scan (Press Trigger Key to receive the data) ; 1=Inventory EPC ; 2=Inventory ECP TID ; 3=Reader tag ; 5=Write tag ; 6=Lock tag ; 7=Kill tag ; 8=Authenticate tag ; 9=Untraceable tag
-                     * response : 0=RESPONSE_OPERATION_SUCCESS ; 1=RESPONSE_OPERATION_FINISH ; 2=RESPONSE_OPERATION_TIMEOUT_FAIL ; 6=RESPONSE_PASSWORD_FAIL ; 7=RESPONSE_OPERATION_FAIL ;251=DEVICE_BUSY
-                     * */
+            }
+        }
+
+        device.open(deviceListener);
+        state.mark(ConnectState.OPEN);
+    }
 
-                    int type = intent.getIntExtra(GeneralString.EXTRA_DATA_TYPE, -1);
-                    int response = intent.getIntExtra(GeneralString.EXTRA_RESPONSE, -1);
-                    double data_rssi = intent.getDoubleExtra(GeneralString.EXTRA_DATA_RSSI, 0);
+    private void onConnectReady(ConnectState state) {
+        Map<String, Double> timings = state.timings();
+        List<Promise> promises;
 
-                    Log.d(LOG, "[Intent_RFIDSERVICE_TAG_DATA] type=" + type + ", response=" + response + ", data_rssi=" + data_rssi);
+        Log.i(LOG, "Reader ready: " + timings);
 
-                    if (type == 5) {
-                        WritableMap map = Arguments.createMap();
-                        map.putBoolean("status", response == 0 || response == 1);
-                        map.putString("error", response == 0 || response == 1 ? null : "Failed to program tag...");
-                        sendEvent(WRITE_TAG_STATUS, map);
-                    } else {
-
-
-                        String PC = intent.getStringExtra(GeneralString.EXTRA_PC);
-                        String EPC = intent.getStringExtra(GeneralString.EXTRA_EPC);
-                        String TID = intent.getStringExtra(GeneralString.EXTRA_TID);
-                        String ReadData = intent.getStringExtra(GeneralString.EXTRA_ReadData);
-                        int EPC_length = intent.getIntExtra(GeneralString.EXTRA_EPC_LENGTH, 0);
-                        int TID_length = intent.getIntExtra(GeneralString.EXTRA_TID_LENGTH, 0);
-                        int ReadData_length = intent.getIntExtra(GeneralString.EXTRA_ReadData_LENGTH, 0);
-
-                        Log.d(LOG, "TAG: " + EPC);
-                        Log.d(LOG, "RSSI: " + data_rssi);
-                        if (isSingleRead) {
-                            if (data_rssi > -70) {
-                                mRfidManager.SoftScanTrigger(false);
-
-                                if (addTagToList(EPC) && cacheTags.size() == 1) {
-                                    sendEvent(TAG, EPC);
-                                }
-                            }
-                        } else {
-                            if (addTagToList(EPC)) {
-                                sendEvent(TAG, EPC);
-                            }
+        synchronized (connectPromises) {
+            promises = new ArrayList<>(connectPromises);
+            connectPromises.clear();
+        }
+
+        for (Promise promise : promises) {
+            WritableMap map = Arguments.createMap();
+
+            for (Map.Entry<String, Double> entry : timings.entrySet()) {
+                map.putDouble(entry.getKey(), entry.getValue());
+            }
+
+            promise.resolve(map);
+        }
+    }
+
+    private void onConnectFailed(ConnectState state, String error) {
+        if (!state.onFailed(error) || state != connectState) {
+            return;
+        }
+
+        Log.e(LOG, "connect: " + state.error());
+
+        rejectConnect(state.error());
+    }
+
+    private void rejectConnect(String error) {
+        List<Promise> promises;
+
+        synchronized (connectPromises) {
+            promises = new ArrayList<>(connectPromises);
+            connectPromises.clear();
+        }
+
+        for (Promise promise : promises) {
+            promise.reject(LOG, error);
+        }
+    }
+
+    private void doDisconnect() {
+        Log.d(LOG, "doDisconnect");
+
+        connectState = null;
+        rejectConnect("Disconnected");
+        stopBatteryPoller();
+
+        if (device.isOpen()) {
+            device.close();
+
+            stateChannel.onReaderStatus(false, null);
+        }
+    }
+
+    /**
+     * Entry of the ingest path for raw TAG_DATA reads from the device.
+     */
+    private void ingestTagRead(TagRead read) {
+        if (read.type == 5) {
+            tagWriter.onWriteResponse(read.response);
+
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("status", read.response == 0 || read.response == 1);
+            map.putString("error", read.response == 0 || read.response == 1 ? null : "Failed to program tag...");
+            sendEvent(WRITE_TAG_STATUS, map);
+        } else {
+            if (ingest.accept(read)) {
+                tagPipeline.offer(read);
+            }
+        }
+    }
+
+    private final ReaderDevice.Listener deviceListener = new ReaderDevice.Listener() {
+        @Override
+        public void onRfidConnected() {
+            final ConnectState state = connectState;
+
+            if (state == null) {
+                return;
+            }
+
+            state.mark(ConnectState.RFID_SERVICE);
+
+            runConnectTask(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long start = System.nanoTime();
+
+                        List<String> changed = device.configureRfid(profile);
+
+                        if (ingest.locator() == null) {
+                            applyHardwareFilter();
                         }
-                    }
 
-                    break;
+                        state.record(ConnectState.RFID_CONFIG, start);
+
+                        Log.i(LOG, "RFID configured in " + (System.nanoTime() - start) / 1000000 + " ms, changed " + changed);
+
+                        stateChannel.onReaderStatus(true, null);
+                        startBatteryPoller();
+
+                        if (state.onRfidReady() && state == connectState) {
+                            onConnectReady(state);
+                        }
+                    } catch (Exception err) {
+                        stateChannel.onReaderStatus(false, err.getMessage());
+
+                        onConnectFailed(state, err.getMessage());
+                    }
                 }
-                case com.cipherlab.barcode.GeneralString.Intent_READERSERVICE_CONNECTED: {
-                    // Make sure this app bind to barcode reader service , then user can use APIs to get/set settings from barcode reader service
+            });
+        }
+
+        @Override
+        public void onBarcodeConnected() {
+            final ConnectState state = connectState;
+
+            if (state == null) {
+                return;
+            }
+
+            state.mark(ConnectState.BARCODE_SERVICE);
+
+            runConnectTask(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        BarcodeConfigureReader();
+                        long start = System.nanoTime();
+
+                        device.configureBarcode();
+
+                        state.record(ConnectState.BARCODE_CONFIG, start);
+
+                        // Completes the newest generation if the gun was reattached meanwhile.
+                        ConnectState ready = state.onBarcodeReady();
+
+                        if (ready != null && ready == connectState) {
+                            onConnectReady(ready);
+                        }
                     } catch (Exception err) {
-                        WritableMap map2 = Arguments.createMap();
-                        map2.putBoolean("status", false);
-                        map2.putString("error", err.getMessage());
-                        sendEvent(READER_STATUS, map2);
+                        stateChannel.onReaderStatus(false, err.getMessage());
+
+                        onConnectFailed(state, err.getMessage());
                     }
+                }
+            });
+        }
+
+        @Override
+        public void onAttached() {
+            if (device.isOpen()) {
+                doReattach();
+            } else {
+                doConnect();
+            }
+        }
+
+        @Override
+        public void onDetached() {
+            //doDisconnect();
+            stateChannel.onReaderStatus(false, null);
+        }
+
+        @Override
+        public void onPower(boolean acPower, boolean connected) {
+            stateChannel.onPower(acPower);
+        }
+
+        @Override
+        public void onDeviceEvent(int event) {
+            PowerController controller = powerController;
 
-                    break;
+            if (event == ReaderDevice.EVENT_LOW_BATTERY) {
+                stateChannel.onLowBattery();
+
+                if (controller != null) {
+                    controller.onLowBattery();
+                }
+            } else if (event == ReaderDevice.EVENT_OVER_TEMPERATURE) {
+                stateChannel.onOverTemperature();
+
+                if (controller != null) {
+                    controller.onOverTemperature();
                 }
-                case com.cipherlab.barcode.GeneralString.Intent_PASS_TO_APP:
-                case com.cipherlab.barcode.GeneralString.Intent_SOFTTRIGGER_DATA: {
-                    // extra string from intent
-                    String barcode = intent.getStringExtra(com.cipherlab.barcode.GeneralString.BcReaderData);
+            }
+        }
 
-                    sendEvent(BARCODE, barcode);
-                    break;
+        @Override
+        public void onTagRead(TagRead read) {
+            ReadCapture capture = readCapture;
+
+            if (capture != null) {
+                try {
+                    capture.write(read);
+                } catch (IOException err) {
+                    Log.e(LOG, "Capture: " + err.getMessage());
                 }
             }
+
+            ingestTagRead(read);
+        }
+
+        @Override
+        public void onBarcode(BarcodeRead read) {
+            barcodePaths.onRead(read);
+
+            if (read.source != barcodeSource || !barcodeFilter.accept(read)) {
+                return;
+            }
+
+            barcodeMetrics.onUnique();
+
+            if (isBatchBarcodes) {
+                barcodeBatcher.add(read);
+            } else {
+                sendEvent(BARCODE, read.data);
+                barcodeMetrics.onLatency(read.receivedAt, System.nanoTime());
+            }
         }
     };
 }
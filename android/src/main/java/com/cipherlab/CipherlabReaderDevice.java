@@ -0,0 +1,824 @@
+package com.cipherlab;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.cipherlab.barcode.ReaderManager;
+import com.cipherlab.barcode.decoder.KeyboardEmulationType;
+import com.cipherlab.barcode.decoder.OutputEnterChar;
+import com.cipherlab.barcode.decoder.OutputEnterWay;
+import com.cipherlab.barcode.decoderparams.ReaderOutputConfiguration;
+import com.cipherlab.barcodebase.ReaderCallback;
+import com.cipherlab.rfid.BeepType;
+import com.cipherlab.rfid.ClResult;
+import com.cipherlab.rfid.ContinuousInventoryTime;
+import com.cipherlab.rfid.DeviceEvent;
+import com.cipherlab.rfid.DeviceInfo;
+import com.cipherlab.rfid.DeviceResponse;
+import com.cipherlab.rfid.DeviceVoltageInfo;
+import com.cipherlab.rfid.Enable_State;
+import com.cipherlab.rfid.Gen2Settings;
+import com.cipherlab.rfid.GeneralString;
+import com.cipherlab.rfid.InventoryStatusSettings;
+import com.cipherlab.rfid.ModuleTemperature;
+import com.cipherlab.rfid.NotificationParams;
+import com.cipherlab.rfid.PowerMode;
+import com.cipherlab.rfid.QValue;
+import com.cipherlab.rfid.RFIDMemoryBank;
+import com.cipherlab.rfid.RFIDMode;
+import com.cipherlab.rfid.RFLink;
+import com.cipherlab.rfid.RfidEpcFilter;
+import com.cipherlab.rfid.SLFlagSettings;
+import com.cipherlab.rfid.SessionSettings;
+import com.cipherlab.rfid.WorkMode;
+import com.cipherlab.rfidapi.RfidManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ReaderDevice} backed by the CipherLab RFID and barcode services.
+ *
+ * Service broadcasts are received on a dedicated HandlerThread, so intent parsing and reader
+ * configuration never run on the UI thread.
+ */
+class CipherlabReaderDevice implements ReaderDevice {
+
+    private final String LOG = "[CipherLab]";
+
+    private final Context context;
+    /**
+     * Nulled by close() under the device lock: synchronized methods check them once on entry,
+     * the others read them into a local once per call.
+     */
+    private volatile RfidManager mRfidManager;
+    private volatile ReaderManager mReaderManager;
+    private ReaderCallback mReaderCallback;
+
+    private HandlerThread receiverThread;
+    private Handler receiverHandler;
+
+    private volatile Listener listener;
+    private volatile boolean barcodeCallback;
+
+    /**
+     * Last profile applied in full and its settings hash; null when the reader state is unknown.
+     * Kept across close() and reattach, keyed by the serial of the reader it was applied to.
+     */
+    private InventoryProfile applied;
+    private int appliedHash;
+    private String appliedSerial;
+
+    /**
+     * Set when the gun reports a power loss, so the next configure reads the settings back.
+     */
+    private volatile boolean powerCycled;
+
+    /**
+     * Set while the reader runs plain EPC inventory, so the receiver skips the TID and
+     * ReadData extras.
+     */
+    private volatile boolean epcOnly;
+
+    CipherlabReaderDevice(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void open(Listener listener) {
+        if (isOpen()) {
+            close();
+        }
+
+        Log.d(LOG, "open");
+
+        this.listener = listener;
+
+        mRfidManager = RfidManager.InitInstance(this.context);
+        mReaderManager = ReaderManager.InitInstance(this.context);
+        mReaderCallback = new barcodeCallback();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(GeneralString.Intent_RFIDSERVICE_CONNECTED);
+        filter.addAction(GeneralString.Intent_RFIDSERVICE_TAG_DATA);
+        filter.addAction(GeneralString.Intent_RFIDSERVICE_EVENT);
+        filter.addAction(GeneralString.Intent_FWUpdate_ErrorMessage);
+        filter.addAction(GeneralString.Intent_FWUpdate_Percent);
+        filter.addAction(GeneralString.Intent_FWUpdate_Finish);
+        filter.addAction(GeneralString.Intent_GUN_Attached);
+        filter.addAction(GeneralString.Intent_GUN_Unattached);
+        filter.addAction(GeneralString.Intent_GUN_Power);
+
+        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_SOFTTRIGGER_DATA);
+        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_PASS_TO_APP);
+        filter.addAction(com.cipherlab.barcode.GeneralString.Intent_READERSERVICE_CONNECTED);
+
+        if (receiverThread == null) {
+            receiverThread = new HandlerThread("CipherlabReceiver");
+            receiverThread.start();
+            receiverHandler = new Handler(receiverThread.getLooper());
+        }
+
+        this.context.registerReceiver(myDataReceiver, filter, null, receiverHandler);
+    }
+
+    @Override
+    public void close() {
+        Log.d(LOG, "close");
+
+        RfidManager rfidManager;
+        ReaderManager readerManager;
+
+        synchronized (this) {
+            epcOnly = false;
+
+            rfidManager = mRfidManager;
+            readerManager = mReaderManager;
+            mRfidManager = null;
+            mReaderManager = null;
+        }
+
+        if (rfidManager != null || readerManager != null) {
+            try {
+                this.context.unregisterReceiver(myDataReceiver);
+            } catch (Exception err) {
+                Log.e(LOG, err.getMessage());
+            }
+
+            if (rfidManager != null) {
+                rfidManager.Release();
+            }
+
+            if (readerManager != null) {
+                readerManager.Release();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        close();
+
+        if (receiverThread != null) {
+            receiverThread.quit();
+            receiverThread = null;
+            receiverHandler = null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mRfidManager != null || mReaderManager != null;
+    }
+
+    @Override
+    public boolean isConnected() {
+        RfidManager manager = mRfidManager;
+
+        return manager != null && manager.GetConnectionStatus();
+    }
+
+    @Override
+    public List<String> configureRfid(InventoryProfile profile) throws Exception {
+        return RFIDConfigureReader(profile);
+    }
+
+    @Override
+    public void configureBarcode() throws Exception {
+        BarcodeConfigureReader();
+    }
+
+    @Override
+    public String getSerialNumber() {
+        RfidManager manager = mRfidManager;
+        DeviceInfo info = manager != null ? manager.GetDeviceInfo() : null;
+
+        return info != null ? info.SerialNumber : null;
+    }
+
+    @Override
+    public int getBatteryLevel() {
+        RfidManager manager = mRfidManager;
+        DeviceVoltageInfo volt = new DeviceVoltageInfo();
+
+        if (manager != null && manager.GetBatteryLifePercent(volt) == ClResult.S_OK.ordinal()) {
+            return volt.Percentage;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int getTxPower() {
+        RfidManager manager = mRfidManager;
+
+        return manager != null ? manager.GetTxPower() : -1;
+    }
+
+    @Override
+    public void setTxPower(int level) throws Exception {
+        RfidManager manager = openRfidManager();
+        int re = manager.SetTxPower(level);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            throw new Exception(manager.GetLastError());
+        }
+    }
+
+    @Override
+    public void setDutyCycle(int inventoryMs, int delayMs) throws Exception {
+        ContinuousInventoryTime time = new ContinuousInventoryTime();
+        time.InventoryTime = inventoryMs;
+        time.DelayTime = delayMs;
+
+        RfidManager manager = openRfidManager();
+        int re = manager.SetContinuousInventoryTime(time);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            throw new Exception(manager.GetLastError());
+        }
+    }
+
+    @Override
+    public int[] getDutyCycle() {
+        RfidManager manager = mRfidManager;
+        ContinuousInventoryTime time = new ContinuousInventoryTime();
+
+        if (manager != null && manager.GetContinuousInventoryTime(time) == ClResult.S_OK.ordinal()) {
+            return new int[]{time.InventoryTime, time.DelayTime};
+        }
+
+        return null;
+    }
+
+    @Override
+    public double getModuleTemperature() {
+        ModuleTemperature temperature = readTemperature();
+
+        return temperature != null ? temperature.GunModuleTemperature : Double.NaN;
+    }
+
+    @Override
+    public double getProtectTemperature() {
+        ModuleTemperature temperature = readTemperature();
+
+        return temperature != null ? temperature.GunProtectTemperature : Double.NaN;
+    }
+
+    private ModuleTemperature readTemperature() {
+        RfidManager manager = mRfidManager;
+        ModuleTemperature temperature = new ModuleTemperature();
+
+        if (manager != null && manager.GetModuleTemperature(temperature) == ClResult.S_OK.ordinal()) {
+            return temperature;
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized List<String> applyProfile(InventoryProfile profile) throws Exception {
+        openRfidManager();
+
+        List<String> changed = profile.diff(applied);
+
+        applied = null;
+
+        if (changed.contains(InventoryProfile.GEN2)) {
+            SetGen2(SessionSettings.valueOf(profile.session), InventoryStatusSettings.valueOf(profile.target), SLFlagSettings.valueOf(profile.slFlag));
+        }
+
+        if (changed.contains(InventoryProfile.WORK_MODE)) {
+            SetWorkMode(WorkMode.valueOf(profile.workMode));
+        }
+
+        if (changed.contains(InventoryProfile.RFID_MODE)) {
+            SetRFIDMode(profile.epcOnly ? RFIDMode.Inventory : RFIDMode.Inventory_EPC_TID);
+            epcOnly = profile.epcOnly;
+        }
+
+        if (changed.contains(InventoryProfile.POWER_MODE)) {
+            SetPowerMode(PowerMode.valueOf(profile.powerMode));
+        }
+
+        if (changed.contains(InventoryProfile.RF_LINK)) {
+            SetRFLink(RFLink.valueOf(profile.rfLink));
+        }
+
+        if (changed.contains(InventoryProfile.Q_VALUE)) {
+            SetQValue(profile.qDynamic, profile.qStart, profile.qMin, profile.qMax);
+        }
+
+        if (profile.txPower >= 0 && getTxPower() != profile.txPower) {
+            setTxPower(profile.txPower);
+            changed.add(InventoryProfile.TX_POWER);
+        }
+
+        applied = profile;
+        appliedHash = profile.settingsHash();
+        epcOnly = profile.epcOnly;
+
+        return changed;
+    }
+
+    @Override
+    public void setTriggerEnabled(boolean enable) throws Exception {
+        RfidManager manager = openRfidManager();
+        int re = manager.EnableDeviceTrigger(enable);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            throw new Exception(manager.GetLastError());
+        }
+    }
+
+    @Override
+    public void softScanTrigger(boolean enable) {
+        RfidManager manager = mRfidManager;
+
+        if (manager != null) {
+            manager.SoftScanTrigger(enable);
+        }
+    }
+
+    @Override
+    public void setEpcFilter(String prefix) throws Exception {
+        RfidEpcFilter filter = new RfidEpcFilter();
+
+        if (prefix == null) {
+            filter.SetIneffective();
+        } else {
+            int bits = prefix.length() * 4;
+
+            filter.Enable = 1;
+            filter.Startbit_MSB = 0;
+            filter.Startbit_LSB = 0;
+            filter.PatternLength_MSB = (byte) (bits >> 8);
+            filter.PatternLength_LSB = (byte) bits;
+            filter.Scheme = 0;
+            filter.EPCPattern1 = prefix;
+            filter.EPCPattern2 = "";
+        }
+
+        RfidManager manager = openRfidManager();
+        int re = manager.SetIncludedEPCFilter(filter);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            throw new Exception(manager.GetLastError());
+        }
+    }
+
+    /**
+     * The callback stays registered once set; disabling only stops forwarding, since the SDK
+     * has no documented way to remove it.
+     */
+    @Override
+    public void setBarcodeCallback(boolean enable) {
+        barcodeCallback = enable;
+
+        ReaderManager manager = mReaderManager;
+
+        if (enable && manager != null) {
+            manager.SetReaderCallback(mReaderCallback);
+        }
+    }
+
+    @Override
+    public int writeTagByEpc(byte[] oldEpc, byte[] newEpc) {
+        RfidManager manager = mRfidManager;
+
+        if (manager == null || !manager.GetConnectionStatus()) {
+            return TagWriter.RESPONSE_FAIL;
+        }
+
+        DeviceResponse re = manager.RFIDDirectWriteTagByEPC(null, oldEpc, RFIDMemoryBank.EPC, 4, 3, newEpc);
+
+        if (re == DeviceResponse.OperationSuccess) {
+            return TagWriter.RESPONSE_SUCCESS;
+        } else if (re == DeviceResponse.DeviceBusy) {
+            return TagWriter.RESPONSE_DEVICE_BUSY;
+        } else if (re == DeviceResponse.DeviceTimeOut) {
+            return TagWriter.RESPONSE_TIMEOUT;
+        }
+
+        return TagWriter.RESPONSE_FAIL;
+    }
+
+    /**
+     * @throws Exception if the device has been closed.
+     */
+    private RfidManager openRfidManager() throws Exception {
+        RfidManager manager = mRfidManager;
+
+        if (manager == null) {
+            throw new Exception("Reader is not open");
+        }
+
+        return manager;
+    }
+
+    private synchronized List<String> RFIDConfigureReader(InventoryProfile profile) throws Exception {
+        List<String> changed = new ArrayList<>();
+
+        if (mRfidManager == null || !mRfidManager.GetConnectionStatus()) {
+            return changed;
+        }
+
+        String serial = getSerialNumber();
+        boolean known = applied != null && !powerCycled && serial != null && serial.equals(appliedSerial);
+
+        powerCycled = false;
+
+        if (known && appliedHash == profile.settingsHash()) {
+            // Same reader, same settings: only the tx power, which the hash leaves out, is checked.
+            changed.addAll(applyProfile(profile));
+
+            if (TagLog.isDebug()) {
+                Log.d(LOG, "RFIDConfigureReader " + profile.name + " (" + Integer.toHexString(appliedHash) + "): still applied on " + serial + ", changed " + changed);
+            }
+
+            return changed;
+        }
+
+        InventoryProfile current = ReadBackProfile();
+
+        if (current == null) {
+            SetDefault();
+            SetNotification();
+            changed.add(InventoryProfile.RESET);
+            changed.add(InventoryProfile.NOTIFICATION);
+        } else if (!IsNotificationSet()) {
+            SetNotification();
+            changed.add(InventoryProfile.NOTIFICATION);
+        }
+
+        applied = current;
+        appliedHash = current != null ? current.settingsHash() : 0;
+        changed.addAll(applyProfile(profile));
+        appliedSerial = serial;
+
+        if (TagLog.isDebug()) {
+            Log.d(LOG, "RFIDConfigureReader " + profile.name + " (" + Integer.toHexString(profile.settingsHash()) + "): "
+                    + (current != null ? "read back " + Integer.toHexString(current.settingsHash()) : "reset") + ", changed " + changed);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the reader's current inventory settings, or null if any of them cannot be read.
+     */
+    private InventoryProfile ReadBackProfile() {
+        try {
+            Gen2Settings gen2 = new Gen2Settings();
+
+            if (mRfidManager.GetGen2(gen2) != ClResult.S_OK.ordinal()
+                    || gen2.Session == null || gen2.InventoryStatus_Action == null || gen2.SL_Flag == null) {
+                return null;
+            }
+
+            WorkMode workMode = mRfidManager.GetWorkMode();
+            RFIDMode rfidMode = mRfidManager.GetRFIDMode();
+            PowerMode powerMode = mRfidManager.GetPowerMode();
+            RFLink rfLink = mRfidManager.GetRFLink();
+            QValue q = mRfidManager.GetQValue();
+
+            if (workMode == null || powerMode == null || rfLink == null || q == null
+                    || (rfidMode != RFIDMode.Inventory && rfidMode != RFIDMode.Inventory_EPC_TID)) {
+                return null;
+            }
+
+            return new InventoryProfile("reader", gen2.Session.name(), gen2.InventoryStatus_Action.name(), gen2.SL_Flag.name(),
+                    workMode.name(), rfidMode == RFIDMode.Inventory, powerMode.name(), rfLink.name(), -1,
+                    q.Dynamic, q.value, q.Min, q.Max);
+        } catch (Exception err) {
+            Log.e(LOG, "ReadBackProfile: " + err.getMessage());
+
+            return null;
+        }
+    }
+
+    private boolean IsNotificationSet() {
+        NotificationParams settings = new NotificationParams();
+
+        return mRfidManager.GetNotification(settings) == ClResult.S_OK.ordinal()
+                && settings.ReaderBeep == BeepType.Mute
+                && settings.BatteryLED == Enable_State.TRUE
+                && settings.BatteryBeep == Enable_State.TRUE
+                && settings.ModuleTemperature == Enable_State.TRUE;
+    }
+
+    private synchronized void BarcodeConfigureReader() throws Exception {
+        if (mReaderManager != null) {
+            String error = null;
+            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.ResetReaderToDefault()) {
+                error = mReaderManager.GetLastError();
+            }
+
+            ReaderOutputConfiguration settings = new ReaderOutputConfiguration();
+            mReaderManager.Get_ReaderOutputConfiguration(settings);
+            settings.enableKeyboardEmulation = KeyboardEmulationType.None;
+            settings.autoEnterWay = OutputEnterWay.Disable;
+            settings.autoEnterChar = OutputEnterChar.None;
+            settings.showCodeLen = com.cipherlab.barcode.decoder.Enable_State.FALSE;
+            settings.showCodeType = com.cipherlab.barcode.decoder.Enable_State.FALSE;
+            settings.szPrefixCode = "";
+            settings.szSuffixCode = "";
+            settings.useDelim = ':';
+
+            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.Set_ReaderOutputConfiguration(settings)) {
+                error = mReaderManager.GetLastError();
+            }
+
+            com.cipherlab.barcode.decoderparams.NotificationParams settings2 = new com.cipherlab.barcode.decoderparams.NotificationParams();
+            mReaderManager.Get_NotificationParams(settings2);
+            settings2.ReaderBeep = com.cipherlab.barcode.decoder.BeepType.Mute;
+            if (com.cipherlab.barcode.decoder.ClResult.S_ERR == mReaderManager.Set_NotificationParams(settings2)) {
+                error = mReaderManager.GetLastError();
+            }
+
+            if (error != null) {
+                throw new Exception(error);
+            } else {
+                mReaderManager.SetActive(true);
+            }
+
+            if (barcodeCallback) {
+                mReaderManager.SetReaderCallback(mReaderCallback);
+            }
+        }
+    }
+
+    private void SetRFIDMode(RFIDMode mode) throws Exception {
+        String error = null;
+
+        int re = mRfidManager.SetRFIDMode(mode);
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetPowerMode(PowerMode mode) throws Exception {
+        String error = null;
+
+        int re = mRfidManager.SetPowerMode(mode);
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetDefault() throws Exception {
+        String error = null;
+
+        int re = mRfidManager.ResetToDefault();
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetNotification() throws Exception {
+        String error = null;
+
+        NotificationParams settings = new NotificationParams();
+        mRfidManager.GetNotification(settings);
+
+        settings.ReaderBeep = BeepType.Mute;
+        settings.BatteryLED = Enable_State.TRUE;
+        settings.BatteryBeep = Enable_State.TRUE;
+        settings.ModuleTemperature = Enable_State.TRUE;
+
+        int re = mRfidManager.SetNotification(settings);
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetGen2(SessionSettings session, InventoryStatusSettings target, SLFlagSettings slFlag) throws Exception {
+        String error = null;
+        Gen2Settings settings = new Gen2Settings();
+
+        settings.Session = session;
+        settings.InventoryStatus_Action = target;
+        settings.SL_Flag = slFlag;
+
+        int re = mRfidManager.SetGen2(settings);
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetWorkMode(WorkMode mode) throws Exception {
+        String error = null;
+        int re = mRfidManager.SetWorkMode(mode);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetRFLink(RFLink link) throws Exception {
+        String error = null;
+        int re = mRfidManager.SetRFLink(link);
+
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private void SetQValue(boolean dynamic, int start, int min, int max) throws Exception {
+        String error = null;
+        QValue settings = new QValue();
+
+        settings.Dynamic = dynamic;
+        settings.value = start;
+        settings.Min = min;
+        settings.Max = max;
+
+        int re = mRfidManager.SetQValue(settings);
+        if (re != ClResult.S_OK.ordinal()) {
+            error = mRfidManager.GetLastError();
+        }
+
+        if (error != null) {
+            throw new Exception(error);
+        }
+    }
+
+    private class barcodeCallback implements ReaderCallback {
+        @Override
+        public void onDecodeComplete(final String s) throws RemoteException {
+            final long receivedAt = System.nanoTime();
+            final long decodedAt = System.currentTimeMillis();
+
+            if (!barcodeCallback) {
+                return;
+            }
+
+            // Hand over on the receiver thread like every other device event.
+            receiverHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Listener listener = CipherlabReaderDevice.this.listener;
+
+                    if (listener != null) {
+                        listener.onBarcode(new BarcodeRead(s, null, BarcodeRead.SOURCE_CALLBACK, receivedAt, decodedAt));
+                    }
+                }
+            });
+        }
+
+        @Override
+        public IBinder asBinder() {
+            return null;
+        }
+        //
+    }
+
+    private final BroadcastReceiver myDataReceiver = new BroadcastReceiver() {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (TagLog.isDebug()) {
+                Log.d(LOG, intent.getAction());
+            }
+
+            Listener listener = CipherlabReaderDevice.this.listener;
+
+            if (listener == null) {
+                return;
+            }
+
+            switch (intent.getAction()) {
+                case GeneralString.Intent_RFIDSERVICE_CONNECTED: {
+                    listener.onRfidConnected();
+                    break;
+                }
+                case GeneralString.Intent_GUN_Attached: {
+                    listener.onAttached();
+                    break;
+                }
+                case GeneralString.Intent_GUN_Unattached: {
+                    listener.onDetached();
+                    break;
+                }
+                case GeneralString.Intent_GUN_Power: {
+                    boolean AC = intent.getBooleanExtra(GeneralString.Data_GUN_ACPower, false);
+                    boolean Connect = intent.getBooleanExtra(GeneralString.Data_GUN_Connect, false);
+
+                    if (!Connect) {
+                        powerCycled = true;
+                    }
+
+                    listener.onPower(AC, Connect);
+                    break;
+                }
+                case GeneralString.Intent_RFIDSERVICE_EVENT: {
+                    int event = intent.getIntExtra(GeneralString.EXTRA_EVENT_MASK, -1);
+                    Log.d(LOG, "[Intent_RFIDSERVICE_EVENT] DeviceEvent=" + event);
+                    int deviceEvent = EVENT_OTHER;
+
+                    if (event == DeviceEvent.PowerSavingMode.getValue()) {
+                        Log.i(GeneralString.TAG, "PowerSavingMode ");
+                    } else if (event == DeviceEvent.LowBattery.getValue()) {
+                        Log.i(GeneralString.TAG, "LowBattery ");
+                        deviceEvent = EVENT_LOW_BATTERY;
+                    } else if (event == DeviceEvent.ScannerFailure.getValue()) {
+                        Log.i(GeneralString.TAG, "ScannerFailure ");
+                    } else if (event == DeviceEvent.BatteryLose.getValue()) {
+                        Log.i(GeneralString.TAG, "BatteryLose ");
+                    } else if (event == DeviceEvent.OverTemperature.getValue()) {
+                        Log.i(GeneralString.TAG, "OverTemperature ");
+                        deviceEvent = EVENT_OVER_TEMPERATURE;
+                    } else if (event == DeviceEvent.Battery_Re_Plug.getValue()) {
+                        Log.i(GeneralString.TAG, "Battery_Re_Plug ");
+                    }
+
+                    listener.onDeviceEvent(deviceEvent);
+                    break;
+                }
+                case GeneralString.Intent_RFIDSERVICE_TAG_DATA: {
+                    /*
+                     * type : 0=Normal scan (Press Trigger Key to receive the data) ; 1=Inventory EPC ; 2=Inventory ECP TID ; 3=Reader tag ; 5=Write tag ; 6=Lock tag ; 7=Kill tag ; 8=Authenticate tag ; 9=Untraceable tag
+                     * response : 0=RESPONSE_OPERATION_SUCCESS ; 1=RESPONSE_OPERATION_FINISH ; 2=RESPONSE_OPERATION_TIMEOUT_FAIL ; 6=RESPONSE_PASSWORD_FAIL ; 7=RESPONSE_OPERATION_FAIL ;251=DEVICE_BUSY
+                     * */
+
+                    long receivedAt = System.nanoTime();
+                    int type = intent.getIntExtra(GeneralString.EXTRA_DATA_TYPE, -1);
+                    int response = intent.getIntExtra(GeneralString.EXTRA_RESPONSE, -1);
+                    double data_rssi = intent.getDoubleExtra(GeneralString.EXTRA_DATA_RSSI, 0);
+
+                    if (TagLog.isDebug()) {
+                        Log.d(LOG, "[Intent_RFIDSERVICE_TAG_DATA] type=" + type + ", response=" + response + ", data_rssi=" + data_rssi);
+                    }
+
+                    if (type == 5) {
+                        listener.onTagRead(new TagRead(type, response, data_rssi, null, null, null, null, receivedAt));
+                    } else if (type == 1 && epcOnly) {
+                        String EPC = intent.getStringExtra(GeneralString.EXTRA_EPC);
+
+                        listener.onTagRead(new TagRead(type, response, data_rssi, null, EPC, null, null, receivedAt));
+                    } else {
+                        String PC = intent.getStringExtra(GeneralString.EXTRA_PC);
+                        String EPC = intent.getStringExtra(GeneralString.EXTRA_EPC);
+                        String TID = intent.getStringExtra(GeneralString.EXTRA_TID);
+                        String ReadData = intent.getStringExtra(GeneralString.EXTRA_ReadData);
+
+                        listener.onTagRead(new TagRead(type, response, data_rssi, PC, EPC, TID, ReadData, receivedAt));
+                    }
+
+                    break;
+                }
+                case com.cipherlab.barcode.GeneralString.Intent_READERSERVICE_CONNECTED: {
+                    // Make sure this app bind to barcode reader service , then user can use APIs to get/set settings from barcode reader service
+                    listener.onBarcodeConnected();
+                    break;
+                }
+                case com.cipherlab.barcode.GeneralString.Intent_PASS_TO_APP:
+                case com.cipherlab.barcode.GeneralString.Intent_SOFTTRIGGER_DATA: {
+                    long receivedAt = System.nanoTime();
+
+                    // extra string from intent
+                    String barcode = intent.getStringExtra(com.cipherlab.barcode.GeneralString.BcReaderData);
+                    String codeType = intent.getStringExtra(com.cipherlab.barcode.GeneralString.BcReaderCodeTypeStr);
+
+                    listener.onBarcode(new BarcodeRead(barcode, codeType, BarcodeRead.SOURCE_BROADCAST, receivedAt, System.currentTimeMillis()));
+                    break;
+                }
+            }
+        }
+    };
+}
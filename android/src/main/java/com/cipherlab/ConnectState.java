@@ -0,0 +1,152 @@
+package com.cipherlab;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of one connect attempt.
+ *
+ * The attempt is ready once both the RFID and the barcode service are configured. Phase
+ * timings are kept in ms: OPEN, RFID_SERVICE and BARCODE_SERVICE as the time after the attempt
+ * started at which they completed, RFID_CONFIG and BARCODE_CONFIG as the time the
+ * configuration itself took. Only the first timing of each phase is kept, so a service that
+ * reconnects later does not overwrite it.
+ *
+ * A reattach continues the attempt as a new generation, see {@link #reattach()}.
+ */
+final class ConnectState {
+
+    static final String OPEN = "openMs";
+    static final String RFID_SERVICE = "rfidServiceMs";
+    static final String RFID_CONFIG = "rfidConfigMs";
+    static final String BARCODE_SERVICE = "barcodeServiceMs";
+    static final String BARCODE_CONFIG = "barcodeConfigMs";
+    static final String TOTAL = "totalMs";
+
+    private final long startedAt = System.nanoTime();
+    private final Map<String, Double> timings = new LinkedHashMap<>();
+
+    private boolean rfidReady;
+    private boolean barcodeReady;
+    private String error;
+    private ConnectState next;
+
+    /**
+     * Records that phase completed now.
+     */
+    synchronized void mark(String phase) {
+        record(phase, startedAt);
+    }
+
+    /**
+     * Records that phase ran from since until now.
+     */
+    synchronized void record(String phase, long since) {
+        if (!timings.containsKey(phase)) {
+            timings.put(phase, (System.nanoTime() - since) / 1e6);
+        }
+    }
+
+    /**
+     * @return true if this made the attempt ready.
+     */
+    synchronized boolean onRfidReady() {
+        boolean wasReady = isReady();
+        rfidReady = true;
+
+        return !wasReady && onReady();
+    }
+
+    /**
+     * Also marks every later generation of the attempt barcode-ready, so a barcode configuration
+     * that completes after a reattach is not lost.
+     *
+     * @return the newest generation if this made it ready, otherwise null.
+     */
+    ConnectState onBarcodeReady() {
+        boolean madeReady;
+        ConnectState successor;
+
+        synchronized (this) {
+            boolean wasReady = isReady();
+            barcodeReady = true;
+            madeReady = !wasReady && onReady();
+            successor = next;
+        }
+
+        if (successor != null) {
+            return successor.onBarcodeReady();
+        }
+
+        return madeReady ? this : null;
+    }
+
+    /**
+     * Starts the next generation of the attempt after the gun was docked again: RFID has to be
+     * configured again, the barcode readiness carries over, now or once a barcode configuration
+     * still in flight on this generation completes.
+     */
+    synchronized ConnectState reattach() {
+        ConnectState state = new ConnectState();
+
+        state.mark(OPEN);
+        state.barcodeReady = barcodeReady;
+        next = state;
+
+        return state;
+    }
+
+    /**
+     * @return true if this is the first failure of the attempt.
+     */
+    synchronized boolean onFailed(String message) {
+        if (error != null) {
+            return false;
+        }
+
+        error = message != null ? message : "Failed to configure the reader";
+
+        return true;
+    }
+
+    synchronized boolean isRfidReady() {
+        return rfidReady;
+    }
+
+    synchronized boolean isBarcodeReady() {
+        return barcodeReady;
+    }
+
+    synchronized boolean isReady() {
+        return rfidReady && barcodeReady;
+    }
+
+    synchronized String error() {
+        return error;
+    }
+
+    /**
+     * @return the services still being set up, for timeout messages.
+     */
+    synchronized String pending() {
+        if (!rfidReady && !barcodeReady) {
+            return "RFID and barcode";
+        }
+
+        return rfidReady ? "barcode" : "RFID";
+    }
+
+    synchronized Map<String, Double> timings() {
+        return new LinkedHashMap<>(timings);
+    }
+
+    private boolean onReady() {
+        if (isReady()) {
+            mark(TOTAL);
+
+            return true;
+        }
+
+        return false;
+    }
+}
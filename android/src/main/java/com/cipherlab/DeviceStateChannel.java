@@ -0,0 +1,269 @@
+package com.cipherlab;
+
+/**
+ * Coalesces reader, trigger and battery state into READER_STATUS, TRIGGER_STATUS and
+ * BATTERY_STATUS events.
+ *
+ * Each channel remembers the state it last sent. An update equal to it is dropped, so the
+ * same state reported from several places (a disconnect followed by a detach, say) is sent
+ * once. A change is sent at once unless the channel sent less than minIntervalMs ago; it is
+ * then held, and when the interval ends the latest held state is sent if it still differs.
+ * JS therefore sees every state that lasts minIntervalMs, but not every edge of a faster
+ * burst.
+ *
+ * The battery level comes from a poller outside this class, so reading it here never calls
+ * into the reader. Low battery and over-temperature are reported by the reader as one-off
+ * events; each sets its flag until the first battery poll at least one poll interval later.
+ */
+final class DeviceStateChannel {
+
+    static final int DEFAULT_MIN_INTERVAL_MS = 100;
+    static final int DEFAULT_BATTERY_POLL_MS = 30000;
+
+    static final String CAUSE_POLL = "poll";
+    static final String CAUSE_POWER = "power";
+    static final String CAUSE_LOW_BATTERY = "lowBattery";
+    static final String CAUSE_OVER_TEMPERATURE = "overTemperature";
+
+    private static final int READER = 0;
+    private static final int TRIGGER = 1;
+    private static final int BATTERY = 2;
+    private static final int CHANNELS = 3;
+
+    interface Sink {
+        void onReaderStatus(ReaderState state);
+
+        void onTrigger(boolean pressed);
+
+        void onBattery(BatteryState state);
+    }
+
+    interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    static final class ReaderState {
+        final boolean status;
+        final String error;
+
+        ReaderState(boolean status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ReaderState)) {
+                return false;
+            }
+
+            ReaderState that = (ReaderState) other;
+
+            return status == that.status && (error == null ? that.error == null : error.equals(that.error));
+        }
+
+        @Override
+        public int hashCode() {
+            return (status ? 1 : 0) * 31 + (error != null ? error.hashCode() : 0);
+        }
+    }
+
+    /**
+     * cause is the update that produced the state and is not compared.
+     */
+    static final class BatteryState {
+        final int level;
+        final boolean acPower;
+        final boolean lowBattery;
+        final boolean overTemperature;
+        final String cause;
+
+        BatteryState(int level, boolean acPower, boolean lowBattery, boolean overTemperature, String cause) {
+            this.level = level;
+            this.acPower = acPower;
+            this.lowBattery = lowBattery;
+            this.overTemperature = overTemperature;
+            this.cause = cause;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof BatteryState)) {
+                return false;
+            }
+
+            BatteryState that = (BatteryState) other;
+
+            return level == that.level && acPower == that.acPower && lowBattery == that.lowBattery && overTemperature == that.overTemperature;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((level * 31 + (acPower ? 1 : 0)) * 31 + (lowBattery ? 1 : 0)) * 31 + (overTemperature ? 1 : 0);
+        }
+    }
+
+    private final Sink sink;
+    private final Scheduler scheduler;
+
+    private final Object[] sent = new Object[CHANNELS];
+    private final Object[] held = new Object[CHANNELS];
+    private final long[] sentAt = new long[CHANNELS];
+
+    private long minIntervalNanos = DEFAULT_MIN_INTERVAL_MS * 1000000L;
+    private long batteryPollNanos = DEFAULT_BATTERY_POLL_MS * 1000000L;
+
+    private int level = -1;
+    private boolean acPower;
+    private long lowBatteryAt;
+    private long overTemperatureAt;
+    private boolean lowBattery;
+    private boolean overTemperature;
+
+    private long updates;
+    private long events;
+
+    DeviceStateChannel(Sink sink, Scheduler scheduler) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+    }
+
+    synchronized void setMinInterval(int ms) {
+        minIntervalNanos = Math.max(0, ms) * 1000000L;
+    }
+
+    synchronized void setBatteryPollInterval(int ms) {
+        batteryPollNanos = Math.max(1, ms) * 1000000L;
+    }
+
+    void onReaderStatus(boolean status, String error) {
+        update(READER, new ReaderState(status, error));
+    }
+
+    void onTrigger(boolean pressed) {
+        update(TRIGGER, pressed);
+    }
+
+    /**
+     * @param level in percent; negative if it could not be read, which keeps the last level.
+     */
+    synchronized void onBatteryLevel(int level) {
+        long now = System.nanoTime();
+
+        if (level >= 0) {
+            this.level = level;
+        }
+
+        if (lowBattery && now - lowBatteryAt >= batteryPollNanos) {
+            lowBattery = false;
+        }
+
+        if (overTemperature && now - overTemperatureAt >= batteryPollNanos) {
+            overTemperature = false;
+        }
+
+        update(BATTERY, battery(CAUSE_POLL));
+    }
+
+    synchronized void onPower(boolean acPower) {
+        this.acPower = acPower;
+        update(BATTERY, battery(CAUSE_POWER));
+    }
+
+    synchronized void onLowBattery() {
+        lowBattery = true;
+        lowBatteryAt = System.nanoTime();
+        update(BATTERY, battery(CAUSE_LOW_BATTERY));
+    }
+
+    synchronized void onOverTemperature() {
+        overTemperature = true;
+        overTemperatureAt = System.nanoTime();
+        update(BATTERY, battery(CAUSE_OVER_TEMPERATURE));
+    }
+
+    /**
+     * @return the last polled battery level in percent, or -1 if none was read yet.
+     */
+    synchronized int batteryLevel() {
+        return level;
+    }
+
+    /**
+     * @return state updates received, including those coalesced away.
+     */
+    synchronized long updates() {
+        return updates;
+    }
+
+    /**
+     * @return events sent.
+     */
+    synchronized long events() {
+        return events;
+    }
+
+    private BatteryState battery(String cause) {
+        return new BatteryState(level, acPower, lowBattery, overTemperature, cause);
+    }
+
+    /**
+     * Sends under the lock, so events leave in the order their states were decided.
+     */
+    private synchronized void update(final int channel, Object state) {
+        updates++;
+
+        if (held[channel] != null) {
+            held[channel] = state;
+            return;
+        }
+
+        if (state.equals(sent[channel])) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long delayNanos = sent[channel] == null ? 0 : sentAt[channel] + minIntervalNanos - now;
+
+        if (delayNanos <= 0) {
+            send(channel, state, now);
+            return;
+        }
+
+        held[channel] = state;
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(channel);
+            }
+        }, (delayNanos + 999999) / 1000000);
+    }
+
+    private synchronized void flush(int channel) {
+        Object state = held[channel];
+        held[channel] = null;
+
+        if (state != null && !state.equals(sent[channel])) {
+            send(channel, state, System.nanoTime());
+        }
+    }
+
+    private void send(int channel, Object state, long now) {
+        sent[channel] = state;
+        sentAt[channel] = now;
+        events++;
+
+        switch (channel) {
+            case READER:
+                sink.onReaderStatus((ReaderState) state);
+                break;
+            case TRIGGER:
+                sink.onTrigger((Boolean) state);
+                break;
+            default:
+                sink.onBattery((BatteryState) state);
+                break;
+        }
+    }
+}
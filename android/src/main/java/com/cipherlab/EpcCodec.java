@@ -0,0 +1,118 @@
+package com.cipherlab;
+
+/**
+ * Hex codec for EPCs that works on caller-owned buffers.
+ *
+ * decode/encode never allocate, so they are safe to use on the per-read path. The
+ * allocating helpers (toBytes/toHex) are meant for API calls such as programTag.
+ */
+final class EpcCodec {
+
+    /**
+     * Largest EPC the Gen2 EPC bank can hold (31 words).
+     */
+    static final int MAX_EPC_BYTES = 62;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        for (int i = 0; i < NIBBLES.length; i++) {
+            NIBBLES[i] = -1;
+        }
+
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['A' + i] = (byte) (10 + i);
+            NIBBLES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private EpcCodec() {
+    }
+
+    /**
+     * @return the value of a hex digit, or -1 if c is not one.
+     */
+    static int nibble(char c) {
+        return c < 128 ? NIBBLES[c] : -1;
+    }
+
+    /**
+     * @return true if hex is a non-empty, even-length hex string of at most MAX_EPC_BYTES bytes.
+     */
+    static boolean isValid(CharSequence hex) {
+        int n = hex == null ? 0 : hex.length();
+
+        if (n == 0 || (n & 1) != 0 || n > MAX_EPC_BYTES * 2) {
+            return false;
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (nibble(hex.charAt(i)) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes hex into out.
+     *
+     * @return the number of bytes written, or -1 if hex is not valid or does not fit.
+     */
+    static int decode(CharSequence hex, byte[] out) {
+        int n = hex.length();
+
+        if ((n & 1) != 0 || n / 2 > out.length) {
+            return -1;
+        }
+
+        for (int i = 0, j = 0; i < n; i += 2, j++) {
+            int high = nibble(hex.charAt(i));
+            int low = nibble(hex.charAt(i + 1));
+
+            if ((high | low) < 0) {
+                return -1;
+            }
+
+            out[j] = (byte) ((high << 4) | low);
+        }
+
+        return n / 2;
+    }
+
+    /**
+     * Encodes the first length bytes of in as upper-case hex into out.
+     *
+     * @return the number of chars written.
+     */
+    static int encode(byte[] in, int length, char[] out) {
+        for (int i = 0, j = 0; i < length; i++) {
+            int b = in[i];
+            out[j++] = HEX[(b >>> 4) & 0x0F];
+            out[j++] = HEX[b & 0x0F];
+        }
+
+        return length * 2;
+    }
+
+    static byte[] toBytes(String hex) {
+        if (!isValid(hex)) {
+            throw new IllegalArgumentException("Invalid EPC: " + hex);
+        }
+
+        byte[] out = new byte[hex.length() / 2];
+        decode(hex, out);
+
+        return out;
+    }
+
+    static String toHex(byte[] in, int length, char[] buffer) {
+        return new String(buffer, 0, encode(in, length, buffer));
+    }
+}
@@ -0,0 +1,227 @@
+package com.cipherlab;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accepts EPCs that match any of a set of rules; immutable once built, so it can be matched
+ * from any thread without locking.
+ *
+ * Prefix rules are hex, optionally with a bit length ("3034257/26") for masks that do not end
+ * on a hex digit. They are kept in a 16-way trie walked digit by digit over the EPC string, so a
+ * match costs at most one step per hex digit, whatever the number of rules. A partial last
+ * digit is expanded into every digit that shares its leading bits.
+ *
+ * Company prefix rules are GS1 company prefixes of 6 to 12 digits. They match the 96-bit
+ * SGTIN, SSCC, SGLN, GRAI and GIAI encodings (headers 0x30 to 0x34), which share the filter,
+ * partition and company prefix layout. The partition and company prefix are read from the
+ * first 14 hex digits and looked up in a sorted array, ignoring the filter value.
+ */
+final class EpcFilterIndex {
+
+    private static final int RADIX = 16;
+    private static final int GS1_HEX_DIGITS = 14;
+    private static final int GS1_BITS = GS1_HEX_DIGITS * 4;
+    /**
+     * Company prefix bits for partition values 0 to 6 (12 down to 6 digits).
+     */
+    private static final int[] COMPANY_BITS = {40, 37, 34, 30, 27, 24, 20};
+
+    private int[] children = new int[RADIX * 16];
+    private boolean[] terminal = new boolean[16];
+    private int nodes = 1;
+
+    private final long[] companyKeys;
+    private final int rules;
+    private final String hardwarePrefix;
+
+    /**
+     * @throws IllegalArgumentException for a rule that cannot be parsed.
+     */
+    EpcFilterIndex(List<String> prefixes, List<String> companyPrefixes) {
+        String single = null;
+
+        for (String rule : prefixes) {
+            single = addPrefix(rule);
+        }
+
+        companyKeys = new long[companyPrefixes.size()];
+
+        for (int i = 0; i < companyKeys.length; i++) {
+            companyKeys[i] = companyKey(companyPrefixes.get(i));
+        }
+
+        Arrays.sort(companyKeys);
+
+        rules = prefixes.size() + companyKeys.length;
+        hardwarePrefix = rules == 1 ? single : null;
+    }
+
+    /**
+     * @return the number of rules; an index without rules accepts everything.
+     */
+    int ruleCount() {
+        return rules;
+    }
+
+    /**
+     * @return the hex prefix a reader EPC filter can apply in place of this index, if it has a
+     * single whole-digit prefix rule; otherwise null.
+     */
+    String hardwarePrefix() {
+        return hardwarePrefix;
+    }
+
+    boolean matches(String epc) {
+        return matchesPrefix(epc) || matchesCompany(epc);
+    }
+
+    private boolean matchesPrefix(String epc) {
+        int node = 0;
+        int n = epc.length();
+
+        for (int i = 0; i < n; i++) {
+            if (terminal[node]) {
+                return true;
+            }
+
+            int digit = EpcCodec.nibble(epc.charAt(i));
+
+            if (digit < 0) {
+                return false;
+            }
+
+            node = children[node * RADIX + digit];
+
+            if (node == 0) {
+                return false;
+            }
+        }
+
+        return terminal[node];
+    }
+
+    private boolean matchesCompany(String epc) {
+        if (companyKeys.length == 0 || epc.length() < GS1_HEX_DIGITS) {
+            return false;
+        }
+
+        long bits = 0;
+
+        for (int i = 0; i < GS1_HEX_DIGITS; i++) {
+            int digit = EpcCodec.nibble(epc.charAt(i));
+
+            if (digit < 0) {
+                return false;
+            }
+
+            bits = bits << 4 | digit;
+        }
+
+        long header = bits >>> (GS1_BITS - 8);
+
+        if (header < 0x30 || header > 0x34) {
+            return false;
+        }
+
+        int partition = (int) (bits >>> (GS1_BITS - 14)) & 7;
+
+        if (partition >= COMPANY_BITS.length) {
+            return false;
+        }
+
+        int companyBits = COMPANY_BITS[partition];
+        long company = bits >>> (GS1_BITS - 14 - companyBits) & ((1L << companyBits) - 1);
+
+        return Arrays.binarySearch(companyKeys, (long) partition << 40 | company) >= 0;
+    }
+
+    /**
+     * @return the rule as a hex prefix if it covers whole digits, else null.
+     */
+    private String addPrefix(String rule) {
+        String hex = rule;
+        int bits;
+        int slash = rule.indexOf('/');
+
+        if (slash >= 0) {
+            hex = rule.substring(0, slash);
+
+            try {
+                bits = Integer.parseInt(rule.substring(slash + 1));
+            } catch (NumberFormatException err) {
+                throw new IllegalArgumentException("Invalid prefix length: " + rule);
+            }
+        } else {
+            bits = hex.length() * 4;
+        }
+
+        if (bits < 0 || bits > hex.length() * 4 || hex.length() > EpcCodec.MAX_EPC_BYTES * 2) {
+            throw new IllegalArgumentException("Invalid prefix: " + rule);
+        }
+
+        int digits = bits / 4;
+        int rest = bits % 4;
+        int node = 0;
+
+        for (int i = 0; i < digits; i++) {
+            node = child(node, digit(hex, i, rule));
+        }
+
+        if (rest == 0) {
+            terminal[node] = true;
+
+            return digits > 0 ? hex.substring(0, digits).toUpperCase() : null;
+        }
+
+        int shift = 4 - rest;
+        int high = digit(hex, digits, rule) >> shift;
+
+        for (int low = 0; low < 1 << shift; low++) {
+            terminal[child(node, high << shift | low)] = true;
+        }
+
+        return null;
+    }
+
+    private int child(int node, int digit) {
+        int slot = node * RADIX + digit;
+
+        if (children[slot] == 0) {
+            if (nodes == terminal.length) {
+                terminal = Arrays.copyOf(terminal, nodes << 1);
+                children = Arrays.copyOf(children, (nodes << 1) * RADIX);
+            }
+
+            children[slot] = nodes++;
+        }
+
+        return children[slot];
+    }
+
+    private static int digit(String hex, int i, String rule) {
+        int digit = EpcCodec.nibble(hex.charAt(i));
+
+        if (digit < 0) {
+            throw new IllegalArgumentException("Invalid prefix: " + rule);
+        }
+
+        return digit;
+    }
+
+    private static long companyKey(String digits) {
+        int partition = 12 - digits.length();
+
+        if (partition < 0 || partition >= COMPANY_BITS.length) {
+            throw new IllegalArgumentException("Company prefix must have 6 to 12 digits: " + digits);
+        }
+
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                throw new IllegalArgumentException("Invalid company prefix: " + digits);
+            }
+        }
+
+        return (long) partition << 40 | Long.parseLong(digits);
+    }
+}
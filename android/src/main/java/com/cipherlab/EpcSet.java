@@ -0,0 +1,166 @@
+package com.cipherlab;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Constant-time de-dup set for EPCs.
+ *
+ * EPCs of up to 128 bits (32 hex digits) are packed into two longs and kept in an
+ * open-addressing table, so a lookup neither hashes nor compares Strings. The digit count is
+ * stored with the key so that "0A" and "000A" remain distinct. Anything longer, or anything
+ * that is not plain hex, falls back to a regular HashMap.
+ *
+ * Every EPC gets a dense ordinal in insertion order, which callers can use to index their own
+ * per-tag arrays.
+ *
+ * Not thread-safe.
+ */
+final class EpcSet {
+
+    private static final int MAX_PACKED_DIGITS = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] hi;
+    private long[] lo;
+    private byte[] digits;
+    private int[] ordinals;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private final HashMap<String, Integer> overflow = new HashMap<>();
+
+    EpcSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return true if the EPC was not in the set yet.
+     */
+    boolean add(String epc) {
+        return put(epc) >= 0;
+    }
+
+    /**
+     * @return the new ordinal if the EPC was added, or -(ordinal + 1) if it was already present.
+     */
+    int put(String epc) {
+        int n = epc.length();
+
+        if (n == 0 || n > MAX_PACKED_DIGITS) {
+            return putOverflow(epc);
+        }
+
+        long h = 0;
+        long l = 0;
+
+        for (int i = 0; i < n; i++) {
+            int d = EpcCodec.nibble(epc.charAt(i));
+
+            if (d < 0) {
+                return putOverflow(epc);
+            }
+
+            h = (h << 4) | (l >>> 60);
+            l = (l << 4) | d;
+        }
+
+        return put(h, l, n);
+    }
+
+    /**
+     * Same as {@link #put(String)} for an EPC of n hex digits already packed into h:l.
+     */
+    int put(long h, long l, int n) {
+        int slot = (int) mix(h, l, n) & mask;
+
+        while (digits[slot] != 0) {
+            if (lo[slot] == l && hi[slot] == h && digits[slot] == n) {
+                return -(ordinals[slot] + 1);
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        int ordinal = size++;
+
+        hi[slot] = h;
+        lo[slot] = l;
+        digits[slot] = (byte) n;
+        ordinals[slot] = ordinal;
+
+        if (size - overflow.size() >= resizeAt) {
+            grow();
+        }
+
+        return ordinal;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(digits, (byte) 0);
+        size = 0;
+        overflow.clear();
+    }
+
+    private int putOverflow(String epc) {
+        Integer ordinal = overflow.get(epc);
+
+        if (ordinal != null) {
+            return -(ordinal + 1);
+        }
+
+        overflow.put(epc, size);
+
+        return size++;
+    }
+
+    private void allocate(int capacity) {
+        hi = new long[capacity];
+        lo = new long[capacity];
+        digits = new byte[capacity];
+        ordinals = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity / 2;
+    }
+
+    private void grow() {
+        long[] oldHi = hi;
+        long[] oldLo = lo;
+        byte[] oldDigits = digits;
+        int[] oldOrdinals = ordinals;
+
+        allocate(oldDigits.length << 1);
+
+        for (int i = 0; i < oldDigits.length; i++) {
+            if (oldDigits[i] != 0) {
+                int slot = (int) mix(oldHi[i], oldLo[i], oldDigits[i]) & mask;
+
+                while (digits[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+
+                hi[slot] = oldHi[i];
+                lo[slot] = oldLo[i];
+                digits[slot] = oldDigits[i];
+                ordinals[slot] = oldOrdinals[i];
+            }
+        }
+    }
+
+    private static long mix(long h, long l, int n) {
+        long x = h * 0x9E3779B97F4A7C15L ^ l ^ n;
+
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        x ^= x >>> 33;
+
+        return x;
+    }
+}
@@ -0,0 +1,169 @@
+package com.cipherlab;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters for the tag ingest path: reads, new tags and bridge emits, plus a histogram of
+ * the latency from broadcast receipt to JS emit.
+ *
+ * Latencies go into power-of-two microsecond buckets, so recording is a couple of atomic
+ * increments and percentiles are accurate to a factor of two. Rates are computed over the
+ * interval between two {@link #sample(long)} calls at least one second apart.
+ */
+final class IngestMetrics {
+
+    private static final int BUCKETS = 32;
+    private static final long MIN_SAMPLE_NANOS = 1000000000L;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong uniques = new AtomicLong();
+    private final AtomicLong emits = new AtomicLong();
+    private final AtomicLong latencyCount = new AtomicLong();
+    private final AtomicLong latencyMaxMicros = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKETS);
+
+    private long sampledAt = System.nanoTime();
+    private long sampledReads;
+    private long sampledUniques;
+    private long sampledEmits;
+    private double readsPerSecond;
+    private double uniquesPerSecond;
+    private double emitsPerSecond;
+
+    void onRead() {
+        reads.incrementAndGet();
+    }
+
+    void onUnique() {
+        uniques.incrementAndGet();
+    }
+
+    void onEmit() {
+        emits.incrementAndGet();
+    }
+
+    void onLatency(long receivedAt, long now) {
+        long micros = Math.max(0, (now - receivedAt) / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        latencyBuckets.incrementAndGet(bucket);
+        latencyCount.incrementAndGet();
+
+        long max = latencyMaxMicros.get();
+
+        while (micros > max && !latencyMaxMicros.compareAndSet(max, micros)) {
+            max = latencyMaxMicros.get();
+        }
+    }
+
+    long reads() {
+        return reads.get();
+    }
+
+    long uniques() {
+        return uniques.get();
+    }
+
+    long emits() {
+        return emits.get();
+    }
+
+    long latencyCount() {
+        return latencyCount.get();
+    }
+
+    long latencyMaxMicros() {
+        return latencyMaxMicros.get();
+    }
+
+    /**
+     * @return the upper bound in microseconds of the bucket holding the given percentile (0-100).
+     */
+    long latencyPercentileMicros(double percentile) {
+        long count = latencyCount.get();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latencyBuckets.get(i);
+
+            if (seen >= rank) {
+                return i == 0 ? 0 : 1L << i;
+            }
+        }
+
+        return latencyMaxMicros.get();
+    }
+
+    /**
+     * @return the share of reads that repeated an already known tag.
+     */
+    double duplicateRatio() {
+        long total = reads.get();
+
+        return total == 0 ? 0 : 1 - (double) uniques.get() / total;
+    }
+
+    /**
+     * Refreshes the per-second rates if at least a second passed since the last refresh.
+     */
+    synchronized void sample(long now) {
+        long elapsed = now - sampledAt;
+
+        if (elapsed < MIN_SAMPLE_NANOS) {
+            return;
+        }
+
+        long currentReads = reads.get();
+        long currentUniques = uniques.get();
+        long currentEmits = emits.get();
+        double seconds = elapsed / 1e9;
+
+        readsPerSecond = (currentReads - sampledReads) / seconds;
+        uniquesPerSecond = (currentUniques - sampledUniques) / seconds;
+        emitsPerSecond = (currentEmits - sampledEmits) / seconds;
+
+        sampledAt = now;
+        sampledReads = currentReads;
+        sampledUniques = currentUniques;
+        sampledEmits = currentEmits;
+    }
+
+    synchronized double readsPerSecond() {
+        return readsPerSecond;
+    }
+
+    synchronized double uniquesPerSecond() {
+        return uniquesPerSecond;
+    }
+
+    synchronized double emitsPerSecond() {
+        return emitsPerSecond;
+    }
+
+    synchronized void reset() {
+        reads.set(0);
+        uniques.set(0);
+        emits.set(0);
+        latencyCount.set(0);
+        latencyMaxMicros.set(0);
+
+        for (int i = 0; i < BUCKETS; i++) {
+            latencyBuckets.set(i, 0);
+        }
+
+        sampledAt = System.nanoTime();
+        sampledReads = 0;
+        sampledUniques = 0;
+        sampledEmits = 0;
+        readsPerSecond = 0;
+        uniquesPerSecond = 0;
+        emitsPerSecond = 0;
+    }
+}
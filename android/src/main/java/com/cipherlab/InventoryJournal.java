@@ -0,0 +1,614 @@
+package com.cipherlab;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of a {@link TagInventory}, one file per session.
+ *
+ * A TAG record with the full aggregate is appended for every new EPC. Repeated reads only mark
+ * the tag dirty, and every UPDATE_INTERVAL_MS the aggregates of dirty tags are appended as
+ * UPDATE records. Buffered records are written with one FileChannel write and forced to disk
+ * every FLUSH_INTERVAL_MS. Replaying the records in order rebuilds the inventory with the same
+ * indexes; when UPDATE records outnumber the tags, resume rewrites the file with one TAG
+ * record per tag.
+ *
+ * File: magic "CLJ1", i64 createdAt, then records of
+ *   u8 type, u16 payload length, payload, u32 CRC32 of type, length and payload.
+ * A record that is cut short or fails its CRC ends the replay and is truncated away, so a
+ * crash loses at most the last flush interval of new tags and update interval of counts.
+ * A payload never exceeds the u16 length: a TID that does not fit is left out, and an EPC
+ * that alone does not fit is cut.
+ *
+ * The inventory object is also the journal lock: {@link #onRead} and {@link #reset} must be
+ * called while holding it.
+ */
+final class InventoryJournal {
+
+    interface ErrorListener {
+        void onError(IOException err);
+    }
+
+    static final class Session {
+        final String id;
+        final long createdAt;
+        final long updatedAt;
+        final long bytes;
+
+        Session(String id, long createdAt, long updatedAt, long bytes) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.updatedAt = updatedAt;
+            this.bytes = bytes;
+        }
+    }
+
+    static final int FLUSH_INTERVAL_MS = 500;
+    static final int UPDATE_INTERVAL_MS = 5000;
+
+    private static final int MAGIC = 0x434C4A31;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_OVERHEAD = 7;
+    private static final int AGGREGATE_BYTES = 4 + 4 + 4 + 8 + 8;
+    private static final int TAG = 1;
+    private static final int UPDATE = 2;
+    private static final int NO_VALUE = 0xFFFF;
+    private static final int MAX_PAYLOAD = 0xFFFF;
+    private static final int TAG_FIXED_BYTES = 2 + 2 + 8 + AGGREGATE_BYTES;
+    private static final int UPDATE_FIXED_BYTES = 4 + AGGREGATE_BYTES + 2;
+    private static final String SUFFIX = ".journal";
+    private static final String CURRENT = "current";
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private final File path;
+    private final String id;
+    private final long createdAt;
+    private final TagInventory inventory;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Object io = new Object();
+    private final BitSet dirty = new BitSet();
+    private final CRC32 crc = new CRC32();
+
+    private ScheduledExecutorService flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private boolean truncate;
+    private int flushes;
+
+    private volatile ErrorListener errorListener;
+
+    private InventoryJournal(File path, String id, long createdAt, TagInventory inventory, RandomAccessFile file) {
+        this.path = path;
+        this.id = id;
+        this.createdAt = createdAt;
+        this.inventory = inventory;
+        this.file = file;
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Starts a new session, clears the inventory and makes the session current.
+     */
+    static InventoryJournal create(File dir, TagInventory inventory) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        long createdAt = System.currentTimeMillis();
+        String id = String.valueOf(createdAt);
+
+        while (fileOf(dir, id).exists()) {
+            id = String.valueOf(++createdAt);
+        }
+
+        RandomAccessFile file = open(fileOf(dir, id), createdAt);
+
+        synchronized (inventory) {
+            inventory.clear();
+        }
+
+        setCurrent(dir, id);
+
+        return new InventoryJournal(fileOf(dir, id), id, createdAt, inventory, file).start();
+    }
+
+    /**
+     * Replaces the inventory with the content of a session and keeps appending to it.
+     */
+    static InventoryJournal resume(File dir, String id, TagInventory inventory) throws IOException {
+        File path = fileOf(dir, id);
+
+        if (!path.isFile()) {
+            throw new IOException("No session " + id);
+        }
+
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        InventoryJournal journal;
+
+        try {
+            synchronized (inventory) {
+                inventory.clear();
+                journal = replay(path, id, file, inventory);
+            }
+        } catch (IOException err) {
+            file.close();
+            throw err;
+        }
+
+        setCurrent(dir, id);
+
+        return journal.start();
+    }
+
+    /**
+     * @return the session to resume on connect, or null.
+     */
+    static String current(File dir) {
+        File pointer = new File(dir, CURRENT);
+
+        if (!pointer.isFile()) {
+            return null;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(pointer, "r");
+
+            try {
+                String id = file.readUTF();
+
+                return fileOf(dir, id).isFile() ? id : null;
+            } finally {
+                file.close();
+            }
+        } catch (IOException err) {
+            return null;
+        }
+    }
+
+    /**
+     * @return all sessions, newest first.
+     */
+    static List<Session> list(File dir) {
+        List<Session> sessions = new ArrayList<>();
+        File[] files = dir.listFiles();
+
+        if (files == null) {
+            return sessions;
+        }
+
+        for (File path : files) {
+            String name = path.getName();
+
+            if (!name.endsWith(SUFFIX)) {
+                continue;
+            }
+
+            try {
+                RandomAccessFile file = new RandomAccessFile(path, "r");
+
+                try {
+                    if (file.readInt() == MAGIC) {
+                        String id = name.substring(0, name.length() - SUFFIX.length());
+                        sessions.add(new Session(id, file.readLong(), path.lastModified(), path.length()));
+                    }
+                } finally {
+                    file.close();
+                }
+            } catch (IOException ignored) {
+                // Not a readable journal; leave it out.
+            }
+        }
+
+        Collections.sort(sessions, new Comparator<Session>() {
+            @Override
+            public int compare(Session a, Session b) {
+                return a.createdAt < b.createdAt ? 1 : a.createdAt > b.createdAt ? -1 : 0;
+            }
+        });
+
+        return sessions;
+    }
+
+    /**
+     * Deletes a session. It must not be open.
+     */
+    static boolean discard(File dir, String id) {
+        if (id.equals(current(dir))) {
+            new File(dir, CURRENT).delete();
+        }
+
+        return fileOf(dir, id).delete();
+    }
+
+    String id() {
+        return id;
+    }
+
+    void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener;
+    }
+
+    /**
+     * Journals one read. index is the return value of {@link TagInventory#put}.
+     */
+    void onRead(int index) {
+        if (index >= 0) {
+            appendTag(index);
+        } else {
+            dirty.set(-index - 1);
+        }
+    }
+
+    /**
+     * Empties the session after {@link TagInventory#clear()}.
+     */
+    void reset() {
+        pending.clear();
+        dirty.clear();
+        truncate = true;
+    }
+
+    /**
+     * Writes buffered records and forces them to disk.
+     *
+     * @param updates also append the aggregates of tags read since the last update.
+     */
+    void flush(boolean updates) throws IOException {
+        synchronized (io) {
+            ByteBuffer out;
+            boolean truncate;
+
+            synchronized (inventory) {
+                if (updates) {
+                    for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                        appendUpdate(i);
+                    }
+
+                    dirty.clear();
+                }
+
+                out = pending;
+                pending = spare;
+                truncate = this.truncate;
+                this.truncate = false;
+            }
+
+            try {
+                if (truncate) {
+                    channel.truncate(HEADER_BYTES);
+                }
+
+                if (out.position() > 0 || truncate) {
+                    out.flip();
+                    channel.position(channel.size());
+
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+
+                    channel.force(false);
+                }
+            } finally {
+                out.clear();
+
+                synchronized (inventory) {
+                    spare = out;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the flusher, writes what is left and closes the file.
+     */
+    void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+
+            try {
+                flusher.awaitTermination(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            flush(true);
+        } finally {
+            file.close();
+        }
+    }
+
+    private InventoryJournal start() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush(++flushes % (UPDATE_INTERVAL_MS / FLUSH_INTERVAL_MS) == 0);
+                } catch (IOException err) {
+                    ErrorListener listener = errorListener;
+
+                    if (listener != null) {
+                        listener.onError(err);
+                    }
+                }
+            }
+        }, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        return this;
+    }
+
+    private void appendTag(int i) {
+        String epc = inventory.epc(i);
+        int epcLength = Math.min(epc.length(), MAX_PAYLOAD - TAG_FIXED_BYTES);
+        String tid = fitting(inventory.tid(i), MAX_PAYLOAD - TAG_FIXED_BYTES - epcLength);
+        int start = begin(TAG, TAG_FIXED_BYTES + epcLength + (tid != null ? tid.length() : 0));
+
+        putString(epc, epcLength);
+        putString(tid, NO_VALUE - 1);
+        pending.putLong(inventory.firstSeen(i));
+        putAggregate(i);
+
+        end(start);
+    }
+
+    private void appendUpdate(int i) {
+        String tid = fitting(inventory.tid(i), MAX_PAYLOAD - UPDATE_FIXED_BYTES);
+        int start = begin(UPDATE, UPDATE_FIXED_BYTES + (tid != null ? tid.length() : 0));
+
+        pending.putInt(i);
+        putAggregate(i);
+        putString(tid, NO_VALUE - 1);
+
+        end(start);
+    }
+
+    private static String fitting(String value, int maxLength) {
+        return value != null && value.length() <= maxLength ? value : null;
+    }
+
+    private void putAggregate(int i) {
+        pending.putInt(inventory.count(i));
+        pending.putFloat((float) inventory.rssiMin(i));
+        pending.putFloat((float) inventory.rssiMax(i));
+        pending.putDouble(inventory.rssiSum(i));
+        pending.putLong(inventory.lastSeen(i));
+    }
+
+    /**
+     * Makes room for a record of up to maxPayload bytes and writes its type.
+     *
+     * @return the record start, to be passed to {@link #end}.
+     */
+    private int begin(int type, int maxPayload) {
+        if (pending.remaining() < maxPayload + RECORD_OVERHEAD) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + maxPayload + RECORD_OVERHEAD));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+
+        int start = pending.position();
+        pending.put((byte) type);
+        pending.putShort((short) 0);
+
+        return start;
+    }
+
+    /**
+     * Fills in the payload length and appends the CRC.
+     */
+    private void end(int start) {
+        int length = pending.position() - start - 3;
+
+        if (length > MAX_PAYLOAD) {
+            throw new IllegalStateException("Journal record of " + length + " bytes");
+        }
+
+        pending.putShort(start + 1, (short) length);
+
+        crc.reset();
+        crc.update(pending.array(), start, length + 3);
+        pending.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes value cut to at most maxLength characters, which must be below NO_VALUE.
+     */
+    private void putString(String value, int maxLength) {
+        if (value == null) {
+            pending.putShort((short) NO_VALUE);
+            return;
+        }
+
+        int n = Math.min(value.length(), maxLength);
+        pending.putShort((short) n);
+
+        for (int i = 0; i < n; i++) {
+            pending.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Applies every valid record to the inventory and truncates the file after the last one.
+     */
+    private static InventoryJournal replay(File path, String id, RandomAccessFile file, TagInventory inventory) throws IOException {
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+
+        if (size < HEADER_BYTES) {
+            throw new IOException("Journal header missing");
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a journal");
+        }
+
+        long createdAt = buffer.getLong();
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[1024];
+        int updates = 0;
+
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int type = buffer.get(start) & 0xFF;
+            int length = buffer.getShort(start + 1) & 0xFFFF;
+
+            if (buffer.remaining() < length + RECORD_OVERHEAD) {
+                break;
+            }
+
+            if (record.length < length + 3) {
+                record = new byte[length + 3];
+            }
+
+            buffer.get(record, 0, length + 3);
+            crc.reset();
+            crc.update(record, 0, length + 3);
+
+            if (buffer.getInt() != (int) crc.getValue()) {
+                buffer.position(start);
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.wrap(record, 3, length);
+
+            if (type == TAG) {
+                String epc = getString(payload);
+                String tid = getString(payload);
+                long firstSeen = payload.getLong();
+                int index = epc != null ? inventory.put(epc, tid, 0, firstSeen) : -1;
+
+                if (index >= 0) {
+                    restore(payload, index, inventory, null);
+                }
+            } else if (type == UPDATE) {
+                int index = payload.getInt();
+
+                if (index < inventory.size()) {
+                    // The TID is only decoded if the tag did not have one yet.
+                    restore(payload, index, inventory, inventory.tid(index) == null ? payload : null);
+                }
+
+                updates++;
+            }
+        }
+
+        long valid = buffer.position();
+        channel.truncate(valid);
+        channel.position(valid);
+
+        InventoryJournal journal = new InventoryJournal(path, id, createdAt, inventory, file);
+
+        if (updates > inventory.size()) {
+            journal = journal.compact();
+        }
+
+        return journal;
+    }
+
+    private static void restore(ByteBuffer payload, int index, TagInventory inventory, ByteBuffer tid) {
+        int count = payload.getInt();
+        float rssiMin = payload.getFloat();
+        float rssiMax = payload.getFloat();
+        double rssiSum = payload.getDouble();
+        long lastSeen = payload.getLong();
+
+        inventory.restore(index, tid != null ? getString(tid) : null, count, rssiMin, rssiMax, rssiSum, lastSeen);
+    }
+
+    /**
+     * Rewrites the file as one TAG record per tag. Called with the inventory lock held.
+     *
+     * @return the journal to continue with.
+     */
+    private InventoryJournal compact() throws IOException {
+        File temp = new File(path.getPath() + ".tmp");
+        InventoryJournal compacted = new InventoryJournal(temp, id, createdAt, inventory, open(temp, createdAt));
+
+        for (int i = 0; i < inventory.size(); i++) {
+            compacted.appendTag(i);
+        }
+
+        compacted.flush(false);
+        compacted.file.close();
+        file.close();
+
+        if (!temp.renameTo(path)) {
+            throw new IOException("Cannot replace " + path);
+        }
+
+        RandomAccessFile reopened = new RandomAccessFile(path, "rw");
+        reopened.seek(reopened.length());
+
+        return new InventoryJournal(path, id, createdAt, inventory, reopened);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int n = buffer.getShort() & 0xFFFF;
+
+        if (n == NO_VALUE) {
+            return null;
+        }
+
+        String value = new String(buffer.array(), buffer.position(), n, LATIN1);
+        buffer.position(buffer.position() + n);
+
+        return value;
+    }
+
+    private static RandomAccessFile open(File path, long createdAt) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+
+        try {
+            file.setLength(0);
+            file.writeInt(MAGIC);
+            file.writeLong(createdAt);
+            file.getFD().sync();
+        } catch (IOException err) {
+            file.close();
+            throw err;
+        }
+
+        return file;
+    }
+
+    private static File fileOf(File dir, String id) {
+        return new File(dir, id + SUFFIX);
+    }
+
+    private static void setCurrent(File dir, String id) throws IOException {
+        File temp = new File(dir, CURRENT + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temp, "rw");
+
+        try {
+            file.setLength(0);
+            file.writeUTF(id);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+
+        if (!temp.renameTo(new File(dir, CURRENT))) {
+            throw new IOException("Cannot update " + CURRENT);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.cipherlab;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A named bundle of inventory settings, switched with {@link ReaderDevice#applyProfile}.
+ *
+ * Values are the names of the vendor enums (SessionSettings, InventoryStatusSettings,
+ * SLFlagSettings, WorkMode, PowerMode, RFLink). txPower -1 leaves the power as it is.
+ *
+ * Q sets the Gen2 slot count, 2^Q slots per round. With qDynamic the reader starts at qStart
+ * and adapts within qMin..qMax as collisions and empty slots go; otherwise every round uses
+ * qStart. Too low a Q for the tag count wastes rounds on collisions, too high on empty slots.
+ */
+final class InventoryProfile {
+
+    static final String GEN2 = "gen2";
+    static final String WORK_MODE = "workMode";
+    static final String RFID_MODE = "rfidMode";
+    static final String POWER_MODE = "powerMode";
+    static final String RF_LINK = "rfLink";
+    static final String Q_VALUE = "qValue";
+    static final String TX_POWER = "txPower";
+    static final String NOTIFICATION = "notification";
+    static final String RESET = "reset";
+
+    /**
+     * The settings RFIDConfigureReader has always applied.
+     */
+    static final InventoryProfile DEFAULT = new InventoryProfile("default",
+            "S1", "STATE_A", "All", "ComprehensiveMode", false, "Normal", "PR_ASK_Miller4_300KHz", -1,
+            true, 4, 0, 15);
+
+    /**
+     * Many tags: S2 keeps read tags quiet for longer so the rest get a slot, and the slower
+     * Miller4 250 kHz link copes better with crowded RF. Q starts at 6 and never drops below
+     * 4, so a full field does not spend its first rounds colliding.
+     */
+    static final InventoryProfile DENSE_WAREHOUSE = new InventoryProfile("dense-warehouse",
+            "S2", "STATE_A", "All", "MultiTagMode", false, "Boost", "PR_ASK_Miller4_250KHz", 30,
+            true, 6, 4, 15);
+
+    /**
+     * Few tags, fast refresh: S0 lets tags answer every round on the fastest link, and a low Q
+     * keeps the rounds short.
+     */
+    static final InventoryProfile FAST_SPARSE = new InventoryProfile("fast-sparse",
+            "S0", "STATE_A", "All", "ComprehensiveMode", false, "Normal", "DSB_ASK_FM0_400KHz", 30,
+            true, 2, 0, 6);
+
+    /**
+     * One tag near the antenna: low power so neighbours are not read, and a fixed Q of 0, a
+     * single slot per round.
+     */
+    static final InventoryProfile SINGLE_ITEM = new InventoryProfile("single-item",
+            "S0", "STATE_A", "All", "SingleTagMode", false, "PowerSave", "PR_ASK_Miller4_300KHz", 15,
+            false, 0, 0, 0);
+
+    /**
+     * The default settings without the TID read.
+     */
+    static final InventoryProfile EPC_ONLY = new InventoryProfile("epc-only",
+            "S1", "STATE_A", "All", "ComprehensiveMode", true, "Normal", "PR_ASK_Miller4_300KHz", -1,
+            true, 4, 0, 15);
+
+    static final InventoryProfile[] PROFILES = {DEFAULT, DENSE_WAREHOUSE, FAST_SPARSE, SINGLE_ITEM, EPC_ONLY};
+
+    final String name;
+    final String session;
+    final String target;
+    final String slFlag;
+    final String workMode;
+    final boolean epcOnly;
+    final String powerMode;
+    final String rfLink;
+    final int txPower;
+    final boolean qDynamic;
+    final int qStart;
+    final int qMin;
+    final int qMax;
+
+    InventoryProfile(String name, String session, String target, String slFlag, String workMode,
+                     boolean epcOnly, String powerMode, String rfLink, int txPower,
+                     boolean qDynamic, int qStart, int qMin, int qMax) {
+        this.name = name;
+        this.session = session;
+        this.target = target;
+        this.slFlag = slFlag;
+        this.workMode = workMode;
+        this.epcOnly = epcOnly;
+        this.powerMode = powerMode;
+        this.rfLink = rfLink;
+        this.txPower = txPower;
+        this.qDynamic = qDynamic;
+        this.qStart = qStart;
+        this.qMin = qMin;
+        this.qMax = qMax;
+    }
+
+    static InventoryProfile byName(String name) {
+        for (InventoryProfile profile : PROFILES) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a hash of the settings other than name and txPower, so a profile read back from
+     * the reader hashes the same as the profile that was applied.
+     */
+    int settingsHash() {
+        int hash = session.hashCode();
+        hash = 31 * hash + target.hashCode();
+        hash = 31 * hash + slFlag.hashCode();
+        hash = 31 * hash + workMode.hashCode();
+        hash = 31 * hash + (epcOnly ? 1 : 0);
+        hash = 31 * hash + powerMode.hashCode();
+        hash = 31 * hash + rfLink.hashCode();
+        hash = 31 * hash + (qDynamic ? 1 : 0);
+        hash = 31 * hash + qStart;
+
+        if (qDynamic) {
+            hash = 31 * hash + qMin;
+            hash = 31 * hash + qMax;
+        }
+
+        return hash;
+    }
+
+    /**
+     * qMin and qMax only count for a dynamic Q; a fixed Q is qStart alone.
+     */
+    boolean sameQ(InventoryProfile other) {
+        return qDynamic == other.qDynamic && qStart == other.qStart
+                && (!qDynamic || (qMin == other.qMin && qMax == other.qMax));
+    }
+
+    /**
+     * @return the settings other than txPower that differ from applied; all of them if applied
+     * is null. txPower is compared against the reader's actual power instead, since
+     * setAntennaLevel changes it too.
+     */
+    List<String> diff(InventoryProfile applied) {
+        List<String> changed = new ArrayList<>();
+
+        if (applied == null || !session.equals(applied.session) || !target.equals(applied.target) || !slFlag.equals(applied.slFlag)) {
+            changed.add(GEN2);
+        }
+
+        if (applied == null || !workMode.equals(applied.workMode)) {
+            changed.add(WORK_MODE);
+        }
+
+        if (applied == null || epcOnly != applied.epcOnly) {
+            changed.add(RFID_MODE);
+        }
+
+        if (applied == null || !powerMode.equals(applied.powerMode)) {
+            changed.add(POWER_MODE);
+        }
+
+        if (applied == null || !rfLink.equals(applied.rfLink)) {
+            changed.add(RF_LINK);
+        }
+
+        if (applied == null || !sameQ(applied)) {
+            changed.add(Q_VALUE);
+        }
+
+        return changed;
+    }
+}
@@ -0,0 +1,116 @@
+package com.cipherlab;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named inventories, e.g. one per zone or tote, each with its own de-dup set and aggregates.
+ *
+ * Every read is added to each active inventory. The reader side takes no registry lock: it
+ * walks a copy-on-write array of the active inventories and locks each inventory only while
+ * adding to it, so a JS call snapshotting one inventory does not stall the others. Creating,
+ * removing and (de)activating inventories rebuild the array under the registry lock.
+ */
+final class InventoryRegistry {
+
+    static final class Entry {
+        final String name;
+        /**
+         * Lock on the inventory itself, as for the module's default inventory.
+         */
+        final TagInventory inventory = new TagInventory();
+
+        private volatile boolean active = true;
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+    }
+
+    private static final Entry[] NONE = new Entry[0];
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Entry[] active = NONE;
+
+    /**
+     * @return the new inventory, or null if one with that name exists.
+     */
+    synchronized Entry create(String name) {
+        Entry entry = new Entry(name);
+
+        if (entries.putIfAbsent(name, entry) != null) {
+            return null;
+        }
+
+        publish();
+
+        return entry;
+    }
+
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    synchronized boolean remove(String name) {
+        if (entries.remove(name) == null) {
+            return false;
+        }
+
+        publish();
+
+        return true;
+    }
+
+    synchronized boolean setActive(String name, boolean active) {
+        Entry entry = entries.get(name);
+
+        if (entry == null) {
+            return false;
+        }
+
+        entry.active = active;
+        publish();
+
+        return true;
+    }
+
+    List<Entry> list() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Adds the read to every active inventory.
+     *
+     * @return the number of inventories to which the tag was new.
+     */
+    int onRead(TagRead read, long timestamp) {
+        int added = 0;
+
+        for (Entry entry : active) {
+            synchronized (entry.inventory) {
+                if (entry.inventory.add(read.epc, read.tid, read.rssi, timestamp)) {
+                    added++;
+                }
+            }
+        }
+
+        return added;
+    }
+
+    private void publish() {
+        List<Entry> list = new ArrayList<>();
+
+        for (Entry entry : entries.values()) {
+            if (entry.active) {
+                list.add(entry);
+            }
+        }
+
+        active = list.toArray(new Entry[list.size()]);
+    }
+}
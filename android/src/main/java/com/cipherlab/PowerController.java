@@ -0,0 +1,317 @@
+package com.cipherlab;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Closed-loop tx power and duty cycle control for long inventories: keeps unique tag
+ * discoveries per minute as high as the module temperature and the battery allow.
+ *
+ * Every tick takes the unique tag count, the module and protect temperatures and the battery
+ * level, and decides at most one change, in order of priority:
+ *
+ * - thermal-cut: an over-temperature event, or less than hardMarginC below the protect
+ *   temperature, halves the duty cycle and drops the power by three steps, and blocks any
+ *   increase for cooldownTicks.
+ * - battery-limit: a low battery event or level caps power and duty until the level has
+ *   risen well above lowBatteryLevel again, e.g. on a charger.
+ * - thermal-limit: within softMarginC of the protect temperature the duty cycle is capped in
+ *   proportion to the headroom left, so the module settles below its limit instead of
+ *   tripping it and collapsing the read rate.
+ * - idle: after idleTicks without a new tag the duty cycle drops to its minimum; the first new
+ *   tag brings it back (duty-up).
+ * - power-up / power-down: otherwise power is tuned by perturb and observe on the smoothed
+ *   discovery rate, every probeTicks: a step is kept going while the rate holds and reversed
+ *   when it falls. More power reaches more tags but heats the module, which lowers the duty
+ *   cap, so this finds the power that discovers the most within the thermal limit.
+ *
+ * The caller applies txPower() and dutyPercent() after each tick and reports a setting the
+ * reader rejected with {@link #rejected(boolean, boolean)}, which rolls that change back, so
+ * the controller only builds on settings the reader actually runs with.
+ *
+ * Pure logic on caller-supplied times, so it runs against the simulator or on recorded data.
+ */
+final class PowerController {
+
+    static final class Config {
+        int minTxPower = 10;
+        int maxTxPower = 30;
+        int powerStep = 1;
+        int minDutyPercent = 20;
+        int maxDutyPercent = 100;
+        int dutyStep = 10;
+        double softMarginC = 10;
+        double hardMarginC = 3;
+        int lowBatteryLevel = 20;
+        int lowBatteryTxPower = 24;
+        int lowBatteryDutyPercent = 50;
+        int idleTicks = 5;
+        int cooldownTicks = 5;
+        int probeTicks = 3;
+        /**
+         * A rate this much below the one before a power step reverses the next step.
+         */
+        double tolerance = 0.1;
+        double smoothing = 0.5;
+    }
+
+    static final String HOLD = "hold";
+    static final String THERMAL_CUT = "thermal-cut";
+    static final String BATTERY_LIMIT = "battery-limit";
+    static final String THERMAL_LIMIT = "thermal-limit";
+    static final String IDLE = "idle";
+    static final String DUTY_UP = "duty-up";
+    static final String POWER_UP = "power-up";
+    static final String POWER_DOWN = "power-down";
+
+    private static final int BATTERY_HYSTERESIS = 10;
+
+    private final Config config;
+    private final Map<String, Long> decisions = new LinkedHashMap<>();
+
+    private int txPower;
+    private int dutyPercent;
+    private double rate = Double.NaN;
+    private double headroom = Double.NaN;
+    private String decision = HOLD;
+
+    private long lastAt;
+    private long lastUniques;
+    private boolean started;
+
+    private boolean overTemperatureEvent;
+    private boolean lowBattery;
+    private int idle;
+    private int cooldown;
+    private int sinceProbe;
+    private int direction = 1;
+    private double probeRate = Double.NaN;
+
+    private int lastTxPower;
+    private int lastDutyPercent;
+    private String lastDecision = HOLD;
+    private int lastDirection = 1;
+    private double lastProbeRate = Double.NaN;
+
+    PowerController(Config config, int txPower, int dutyPercent) {
+        this.config = config;
+        this.txPower = clamp(txPower, config.minTxPower, config.maxTxPower);
+        this.dutyPercent = clamp(dutyPercent, config.minDutyPercent, config.maxDutyPercent);
+
+        for (String name : new String[]{HOLD, THERMAL_CUT, BATTERY_LIMIT, THERMAL_LIMIT, IDLE, DUTY_UP, POWER_UP, POWER_DOWN}) {
+            decisions.put(name, 0L);
+        }
+    }
+
+    synchronized void onOverTemperature() {
+        overTemperatureEvent = true;
+    }
+
+    synchronized void onLowBattery() {
+        lowBattery = true;
+    }
+
+    /**
+     * @param uniques     unique tags discovered so far, a running count.
+     * @param temperature module temperature in degrees C, NaN if unknown.
+     * @param protect     protect temperature in degrees C, NaN if unknown.
+     * @param battery     battery level in percent, negative if unknown.
+     * @return the decision; txPower() and dutyPercent() hold the settings to apply.
+     */
+    synchronized String tick(long now, long uniques, double temperature, double protect, int battery) {
+        lastTxPower = txPower;
+        lastDutyPercent = dutyPercent;
+        lastDecision = decision;
+        lastDirection = direction;
+        lastProbeRate = probeRate;
+
+        if (!started || now - lastAt <= 0) {
+            started = true;
+            lastAt = now;
+            lastUniques = uniques;
+
+            return HOLD;
+        }
+
+        long found = Math.max(0, uniques - lastUniques);
+        double sample = found * 60e9 / (now - lastAt);
+
+        rate = Double.isNaN(rate) ? sample : rate + config.smoothing * (sample - rate);
+        lastAt = now;
+        lastUniques = uniques;
+
+        if (battery >= 0) {
+            if (battery <= config.lowBatteryLevel) {
+                lowBattery = true;
+            } else if (battery > config.lowBatteryLevel + BATTERY_HYSTERESIS) {
+                lowBattery = false;
+            }
+        }
+
+        int maxPower = config.maxTxPower;
+        int maxDuty = config.maxDutyPercent;
+
+        if (lowBattery) {
+            maxPower = Math.min(maxPower, config.lowBatteryTxPower);
+            maxDuty = Math.min(maxDuty, config.lowBatteryDutyPercent);
+        }
+
+        headroom = Double.isNaN(temperature) || Double.isNaN(protect) ? Double.NaN : protect - temperature;
+        boolean hot = overTemperatureEvent || headroom <= config.hardMarginC;
+        overTemperatureEvent = false;
+        idle = found > 0 ? 0 : idle + 1;
+
+        if (hot) {
+            dutyPercent = Math.max(config.minDutyPercent, dutyPercent / 2);
+            txPower = Math.max(config.minTxPower, txPower - 3 * config.powerStep);
+            cooldown = config.cooldownTicks;
+            probeRate = Double.NaN;
+
+            return decide(THERMAL_CUT);
+        }
+
+        if (txPower > maxPower || dutyPercent > maxDuty) {
+            txPower = Math.min(txPower, maxPower);
+            dutyPercent = Math.min(dutyPercent, maxDuty);
+
+            return decide(BATTERY_LIMIT);
+        }
+
+        int dutyCap = maxDuty;
+
+        if (headroom < config.softMarginC) {
+            double share = (headroom - config.hardMarginC) / (config.softMarginC - config.hardMarginC);
+            dutyCap = clamp((int) (config.minDutyPercent + share * (maxDuty - config.minDutyPercent)), config.minDutyPercent, maxDuty);
+        }
+
+        if (cooldown > 0) {
+            cooldown--;
+            dutyCap = Math.min(dutyCap, dutyPercent);
+        }
+
+        if (dutyPercent > dutyCap) {
+            dutyPercent = dutyCap;
+
+            return decide(THERMAL_LIMIT);
+        }
+
+        if (idle >= config.idleTicks) {
+            if (dutyPercent > config.minDutyPercent) {
+                dutyPercent = config.minDutyPercent;
+
+                return decide(IDLE);
+            }
+
+            return decide(HOLD);
+        }
+
+        if (idle > 0) {
+            return decide(HOLD);
+        }
+
+        if (dutyPercent < dutyCap) {
+            dutyPercent = Math.min(dutyCap, dutyPercent + config.dutyStep);
+            probeRate = Double.NaN;
+
+            return decide(DUTY_UP);
+        }
+
+        if (cooldown > 0 || ++sinceProbe < config.probeTicks) {
+            return decide(HOLD);
+        }
+
+        sinceProbe = 0;
+
+        if (!Double.isNaN(probeRate) && rate < probeRate * (1 - config.tolerance)) {
+            direction = -direction;
+        }
+
+        int next = clamp(txPower + direction * config.powerStep, config.minTxPower, maxPower);
+
+        if (next == txPower) {
+            direction = -direction;
+            probeRate = Double.NaN;
+
+            return decide(HOLD);
+        }
+
+        txPower = next;
+        probeRate = rate;
+
+        return decide(direction > 0 ? POWER_UP : POWER_DOWN);
+    }
+
+    /**
+     * Rolls back the tx power and/or duty cycle change of the last tick after the reader
+     * rejected it. A rolled back power step is not counted and is tried again at the next tick.
+     */
+    synchronized void rejected(boolean txPower, boolean dutyPercent) {
+        if (!txPower && !dutyPercent) {
+            return;
+        }
+
+        if (txPower) {
+            this.txPower = lastTxPower;
+            direction = lastDirection;
+            probeRate = lastProbeRate;
+            sinceProbe = config.probeTicks;
+        }
+
+        if (dutyPercent) {
+            this.dutyPercent = lastDutyPercent;
+        }
+
+        if (this.txPower == lastTxPower && this.dutyPercent == lastDutyPercent) {
+            decisions.put(decision, decisions.get(decision) - 1);
+            decision = lastDecision;
+        }
+    }
+
+    synchronized int txPower() {
+        return txPower;
+    }
+
+    synchronized int dutyPercent() {
+        return dutyPercent;
+    }
+
+    /**
+     * @return the smoothed unique tag discovery rate per minute, NaN before the second tick.
+     */
+    synchronized double rate() {
+        return rate;
+    }
+
+    /**
+     * @return degrees C below the protect temperature at the last tick, NaN if unknown.
+     */
+    synchronized double headroom() {
+        return headroom;
+    }
+
+    synchronized String decision() {
+        return decision;
+    }
+
+    synchronized boolean isLowBattery() {
+        return lowBattery;
+    }
+
+    /**
+     * @return how often each decision was taken.
+     */
+    synchronized Map<String, Long> decisions() {
+        return new LinkedHashMap<>(decisions);
+    }
+
+    private String decide(String decision) {
+        this.decision = decision;
+        decisions.put(decision, decisions.get(decision) + 1);
+
+        return decision;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,222 @@
+package com.cipherlab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks which EPCs are currently in the field: a tag arrives on its first read and departs
+ * once it has not been read for timeoutMs.
+ *
+ * Expiry uses a hashed timing wheel of tickMs slots spanning the timeout. A present tag sits
+ * in the slot of its deadline, on an intrusive list indexed by its EpcSet ordinal. Reads of a
+ * present tag only update its last-seen time; when its slot comes round the tag either
+ * departs or moves to the slot of its new deadline. Each present tag is therefore touched
+ * about once per timeout, however often it is read, and a tick only visits the tags of one
+ * slot. Departures are detected up to one tick late.
+ *
+ * Departed tags keep their ordinal until departed tags are the majority of at least
+ * COMPACT_MIN_TAGS tracked ones; then the set and the arrays are rebuilt from the present tags
+ * alone. A portal that runs for days thus holds memory for the tags in the field, not for
+ * every tag it has ever seen, at an amortized cost of one re-insert per departure.
+ *
+ * Times are System.nanoTime() values, so recorded read streams replay the same way.
+ */
+final class PresenceTracker {
+
+    static final int DEFAULT_TIMEOUT_MS = 3000;
+    static final int DEFAULT_TICK_MS = 100;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+    private static final int COMPACT_MIN_TAGS = 4096;
+
+    private final long timeoutNanos;
+    private final long tickNanos;
+    private final long origin;
+    private final int[] heads;
+    private EpcSet epcSet = new EpcSet();
+
+    private String[] epcs = new String[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private boolean[] present = new boolean[INITIAL_CAPACITY];
+
+    private long tick;
+    private int presentCount;
+    private List<String> arrived = new ArrayList<>();
+
+    PresenceTracker(int timeoutMs, int tickMs, long nowNanos) {
+        this.timeoutNanos = Math.max(1, timeoutMs) * 1000000L;
+        this.tickNanos = Math.max(1, tickMs) * 1000000L;
+        this.origin = nowNanos;
+        this.heads = new int[(int) (timeoutNanos / tickNanos) + 2];
+
+        Arrays.fill(heads, NONE);
+    }
+
+    int timeoutMs() {
+        return (int) (timeoutNanos / 1000000L);
+    }
+
+    int tickMs() {
+        return (int) (tickNanos / 1000000L);
+    }
+
+    synchronized void onRead(String epc, long at) {
+        int ordinal = epcSet.put(epc);
+
+        if (ordinal < 0) {
+            ordinal = -ordinal - 1;
+        } else {
+            if (ordinal == epcs.length) {
+                grow();
+            }
+
+            epcs[ordinal] = epc;
+        }
+
+        lastSeen[ordinal] = at;
+
+        if (!present[ordinal]) {
+            present[ordinal] = true;
+            presentCount++;
+            arrived.add(epcs[ordinal]);
+            schedule(ordinal, at + timeoutNanos);
+        }
+    }
+
+    /**
+     * @return the EPCs that arrived since the previous call.
+     */
+    synchronized List<String> takeArrived() {
+        List<String> list = arrived;
+        arrived = new ArrayList<>();
+
+        return list;
+    }
+
+    /**
+     * Processes the wheel up to now.
+     *
+     * @return the EPCs that departed.
+     */
+    synchronized List<String> advance(long now) {
+        List<String> departed = new ArrayList<>();
+        long nowTick = (now - origin) / tickNanos;
+
+        // After a long stall one lap visits every slot.
+        tick = Math.max(tick, nowTick - heads.length);
+
+        while (tick < nowTick) {
+            tick++;
+
+            int slot = (int) (tick % heads.length);
+            int ordinal = heads[slot];
+            heads[slot] = NONE;
+
+            while (ordinal != NONE) {
+                int following = next[ordinal];
+                long deadline = lastSeen[ordinal] + timeoutNanos;
+
+                if (deadline - now <= 0) {
+                    present[ordinal] = false;
+                    presentCount--;
+                    departed.add(epcs[ordinal]);
+                } else {
+                    schedule(ordinal, deadline);
+                }
+
+                ordinal = following;
+            }
+        }
+
+        if (epcSet.size() >= COMPACT_MIN_TAGS && presentCount < epcSet.size() / 2) {
+            compact();
+        }
+
+        return departed;
+    }
+
+    synchronized int presentCount() {
+        return presentCount;
+    }
+
+    /**
+     * @return the tags held, present or departed since the last compaction.
+     */
+    synchronized int trackedCount() {
+        return epcSet.size();
+    }
+
+    /**
+     * @return the EPCs currently present.
+     */
+    synchronized List<String> present() {
+        List<String> list = new ArrayList<>(presentCount);
+
+        for (int i = 0; i < epcSet.size(); i++) {
+            if (present[i]) {
+                list.add(epcs[i]);
+            }
+        }
+
+        return list;
+    }
+
+    private void schedule(int ordinal, long deadline) {
+        long deadlineTick = (deadline - origin + tickNanos - 1) / tickNanos;
+
+        if (deadlineTick <= tick) {
+            deadlineTick = tick + 1;
+        }
+
+        int slot = (int) (deadlineTick % heads.length);
+        next[ordinal] = heads[slot];
+        heads[slot] = ordinal;
+    }
+
+    /**
+     * Renumbers the present tags densely and puts them back on the wheel at their deadlines.
+     */
+    private void compact() {
+        int size = epcSet.size();
+        int capacity = INITIAL_CAPACITY;
+
+        while (capacity < presentCount * 2) {
+            capacity <<= 1;
+        }
+
+        String[] oldEpcs = epcs;
+        long[] oldLastSeen = lastSeen;
+        boolean[] oldPresent = present;
+
+        epcSet = new EpcSet();
+        epcs = new String[capacity];
+        lastSeen = new long[capacity];
+        next = new int[capacity];
+        present = new boolean[capacity];
+
+        Arrays.fill(heads, NONE);
+
+        for (int i = 0; i < size; i++) {
+            if (oldPresent[i]) {
+                int ordinal = epcSet.put(oldEpcs[i]);
+
+                epcs[ordinal] = oldEpcs[i];
+                lastSeen[ordinal] = oldLastSeen[i];
+                present[ordinal] = true;
+                schedule(ordinal, oldLastSeen[i] + timeoutNanos);
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = epcs.length << 1;
+
+        epcs = Arrays.copyOf(epcs, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        next = Arrays.copyOf(next, capacity);
+        present = Arrays.copyOf(present, capacity);
+    }
+}
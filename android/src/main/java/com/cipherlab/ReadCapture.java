@@ -0,0 +1,224 @@
+package com.cipherlab;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary log of raw TAG_DATA reads, as the device delivered them, for replaying field
+ * conditions with {@link ReadReplay}.
+ *
+ * File: magic "CLR1", i64 wall-clock start in ms, then one record per read:
+ *   varint nanos since the previous read (the first since the start), u8 type and u8
+ *   response (0xFF for none), i16 RSSI in 0.1 dBm, then the PC, EPC and TID fields.
+ * A field starts with a varint header: 0 for null, otherwise (length << 1 | latin1) + 1. Hex
+ * strings of even length are stored as length packed bytes, anything else as length Latin-1
+ * chars, so hex comes back upper case. A 96-bit EPC read with TID takes about 35 bytes.
+ *
+ * Writes are buffered; a record cut short by a crash ends the log when it is read back.
+ */
+final class ReadCapture implements Closeable {
+
+    static final String SUFFIX = ".clr";
+
+    private static final int MAGIC = 0x434C5231;
+    private static final int NO_VALUE = 0xFF;
+
+    /**
+     * Reads a capture back. receivedAt of the reads is the time since the start of the capture.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startedAt;
+        private final char[] hex = new char[EpcCodec.MAX_EPC_BYTES * 2];
+        private long at;
+
+        Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a read capture: " + file);
+                }
+
+                startedAt = in.readLong();
+            } catch (IOException err) {
+                in.close();
+                throw err;
+            }
+        }
+
+        /**
+         * @return the wall-clock time the capture started, in ms.
+         */
+        long startedAt() {
+            return startedAt;
+        }
+
+        /**
+         * @return the next read, or null at the end of the log.
+         */
+        TagRead next() throws IOException {
+            try {
+                long delta = readVarint();
+                int type = in.readUnsignedByte();
+                int response = in.readUnsignedByte();
+                double rssi = in.readShort() / 10.0;
+                String pc = readField();
+                String epc = readField();
+                String tid = readField();
+
+                at += delta;
+
+                return new TagRead(type == NO_VALUE ? -1 : type, response == NO_VALUE ? -1 : response, rssi, pc, epc, tid, null, at);
+            } catch (EOFException err) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private String readField() throws IOException {
+            long header = readVarint();
+
+            if (header == 0) {
+                return null;
+            }
+
+            int length = (int) ((header - 1) >>> 1);
+            boolean latin1 = ((header - 1) & 1) != 0;
+            byte[] bytes = new byte[length];
+
+            in.readFully(bytes);
+
+            if (latin1) {
+                char[] chars = new char[length];
+
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) (bytes[i] & 0xFF);
+                }
+
+                return new String(chars);
+            }
+
+            char[] buffer = length * 2 <= hex.length ? hex : new char[length * 2];
+
+            return EpcCodec.toHex(bytes, length, buffer);
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed varint");
+        }
+    }
+
+    private final File file;
+    private final DataOutputStream out;
+    private final byte[] buffer = new byte[EpcCodec.MAX_EPC_BYTES];
+    private long lastAt;
+    private long reads;
+    private boolean closed;
+
+    ReadCapture(File file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.lastAt = System.nanoTime();
+
+        out.writeInt(MAGIC);
+        out.writeLong(System.currentTimeMillis());
+    }
+
+    File file() {
+        return file;
+    }
+
+    synchronized long reads() {
+        return reads;
+    }
+
+    synchronized long bytes() {
+        return out.size();
+    }
+
+    /**
+     * Ignored once the capture is closed, so a read racing stop is not an error.
+     */
+    synchronized void write(TagRead read) throws IOException {
+        if (closed) {
+            return;
+        }
+
+        long at = read.receivedAt;
+
+        writeVarint(Math.max(0, at - lastAt));
+        lastAt = Math.max(lastAt, at);
+
+        out.writeByte(byteOrNone(read.type));
+        out.writeByte(byteOrNone(read.response));
+        out.writeShort((int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(read.rssi * 10))));
+        writeField(read.pc);
+        writeField(read.epc);
+        writeField(read.tid);
+
+        reads++;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        out.close();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+
+        int length = value.length() <= buffer.length * 2 ? EpcCodec.decode(value, buffer) : -1;
+
+        if (length >= 0) {
+            writeVarint(((long) length << 1) + 1);
+            out.write(buffer, 0, length);
+        } else {
+            writeVarint(((long) value.length() << 1 | 1) + 1);
+
+            for (int i = 0; i < value.length(); i++) {
+                out.writeByte(value.charAt(i));
+            }
+        }
+    }
+
+    private static int byteOrNone(int value) {
+        return value >= 0 && value < NO_VALUE ? value : NO_VALUE;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,75 @@
+package com.cipherlab;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes a {@link ReadCapture} through an ingest path: at the captured pace divided by speed,
+ * or with speed 0 as fast as the sink takes the reads.
+ *
+ * Each read is stamped with the time it is pushed, so latency measured downstream runs from
+ * that point, as it would from the broadcast receiver. When the sink cannot keep up with the
+ * pace, reads are pushed late rather than skipped, and the largest lag behind schedule is
+ * reported. Interrupting the calling thread stops the replay.
+ */
+final class ReadReplay {
+
+    interface Sink {
+        void onTagRead(TagRead read);
+    }
+
+    static final class Result {
+        final long reads;
+        final long nanos;
+        final long maxLagNanos;
+
+        Result(long reads, long nanos, long maxLagNanos) {
+            this.reads = reads;
+            this.nanos = nanos;
+            this.maxLagNanos = maxLagNanos;
+        }
+
+        double readsPerSecond() {
+            return nanos == 0 ? 0 : reads * 1e9 / nanos;
+        }
+    }
+
+    private ReadReplay() {
+    }
+
+    static Result run(File file, double speed, Sink sink) throws IOException {
+        ReadCapture.Reader reader = new ReadCapture.Reader(file);
+
+        try {
+            long start = System.nanoTime();
+            long reads = 0;
+            long maxLag = 0;
+            TagRead read;
+
+            while ((read = reader.next()) != null && !Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+
+                if (speed > 0) {
+                    long due = start + (long) (read.receivedAt / speed);
+
+                    if (due > now) {
+                        while (now < due && !Thread.currentThread().isInterrupted()) {
+                            LockSupport.parkNanos(due - now);
+                            now = System.nanoTime();
+                        }
+                    } else {
+                        maxLag = Math.max(maxLag, now - due);
+                    }
+                }
+
+                sink.onTagRead(new TagRead(read.type, read.response, read.rssi, read.pc, read.epc, read.tid, read.readData, now));
+                reads++;
+            }
+
+            return new Result(reads, System.nanoTime() - start, maxLag);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.cipherlab;
+
+import java.util.List;
+
+/**
+ * The reader hardware as seen by {@link CipherlabModule}.
+ *
+ * {@link CipherlabReaderDevice} talks to the vendor RfidManager/ReaderManager services;
+ * {@link SimulatedReaderDevice} produces the same events in-process so the module can be
+ * exercised without a handheld.
+ */
+interface ReaderDevice {
+
+    /**
+     * Device events passed to {@link Listener#onDeviceEvent(int)}.
+     */
+    int EVENT_OTHER = 0;
+    int EVENT_LOW_BATTERY = 1;
+    int EVENT_OVER_TEMPERATURE = 2;
+
+    /**
+     * Device events. Called on the device's own event thread, never on the UI thread.
+     */
+    interface Listener {
+        void onRfidConnected();
+
+        void onBarcodeConnected();
+
+        void onAttached();
+
+        void onDetached();
+
+        void onPower(boolean acPower, boolean connected);
+
+        /**
+         * @param event one of the EVENT_ constants.
+         */
+        void onDeviceEvent(int event);
+
+        void onTagRead(TagRead read);
+
+        void onBarcode(BarcodeRead read);
+    }
+
+    void open(Listener listener);
+
+    void close();
+
+    /**
+     * Closes the device and releases its threads. A later open() starts them again.
+     */
+    void shutdown();
+
+    boolean isOpen();
+
+    boolean isConnected();
+
+    /**
+     * Brings the RFID module to profile. If the same reader, by serial, still holds the last
+     * applied settings and has not lost power since, nothing is read back. Otherwise its current
+     * settings are read back and only those that differ are written; the module is reset to its
+     * defaults first only if they cannot be read.
+     *
+     * @return the settings that were changed, empty if the reader was already configured.
+     */
+    List<String> configureRfid(InventoryProfile profile) throws Exception;
+
+    void configureBarcode() throws Exception;
+
+    /**
+     * @return the serial number, or null if it could not be read.
+     */
+    String getSerialNumber();
+
+    /**
+     * @return battery level in percent, or -1 if it could not be read.
+     */
+    int getBatteryLevel();
+
+    /**
+     * @return the transmit power level, or -1 if the device is not open.
+     */
+    int getTxPower();
+
+    void setTxPower(int level) throws Exception;
+
+    /**
+     * Continuous inventory runs for inventoryMs, then pauses for delayMs, and repeats; delayMs
+     * 0 inventories without pause.
+     */
+    void setDutyCycle(int inventoryMs, int delayMs) throws Exception;
+
+    /**
+     * @return {inventoryMs, delayMs} of continuous inventory, or null if it could not be read.
+     */
+    int[] getDutyCycle();
+
+    /**
+     * @return the RFID module temperature in degrees C, or NaN if it could not be read.
+     */
+    double getModuleTemperature();
+
+    /**
+     * @return the temperature at which the module protects itself, or NaN if unknown.
+     */
+    double getProtectTemperature();
+
+    /**
+     * Applies only the settings of profile that differ from the last applied profile.
+     *
+     * @return the settings that were changed, see the InventoryProfile constants.
+     */
+    List<String> applyProfile(InventoryProfile profile) throws Exception;
+
+    void setTriggerEnabled(boolean enable) throws Exception;
+
+    void softScanTrigger(boolean enable);
+
+    /**
+     * Limits inventory to EPCs starting with the given hex prefix, or removes the limit if
+     * prefix is null.
+     */
+    void setEpcFilter(String prefix) throws Exception;
+
+    /**
+     * Also delivers barcodes through the barcode ReaderCallback, in addition to the broadcast.
+     * Reads carry their {@link BarcodeRead#source}.
+     */
+    void setBarcodeCallback(boolean enable);
+
+    /**
+     * @return one of the TagWriter response codes.
+     */
+    int writeTagByEpc(byte[] oldEpc, byte[] newEpc);
+}
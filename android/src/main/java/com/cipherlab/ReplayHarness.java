@@ -0,0 +1,277 @@
+package com.cipherlab;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a {@link ReadCapture} through the module's ingest code, a {@link TagIngest} of its
+ * own behind its own {@link TagPipeline}: the tag filter, the pipeline, then locate, single
+ * read, presence, de-dup, the journal, named inventories and batching, up to the payload handed
+ * to the sink, counted by its own {@link IngestMetrics}. Use {@link #mirror} to take over the
+ * live settings. No live state is touched, so a replay can run beside a live inventory and its
+ * figures describe the replay alone. Write responses (type 5) are skipped.
+ *
+ * With speed 0 the replay waits for room in the pipeline instead of dropping reads, so it
+ * measures the ingest path rather than the queue capacity. One run per harness; the journal
+ * and spill files it writes under its work directory are deleted when it ends.
+ */
+final class ReplayHarness {
+
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final TagIngest.Sink DISCARD = new TagIngest.Sink() {
+        @Override
+        public void onTag(TagRead read) {
+        }
+
+        @Override
+        public void onTagBatch(List<TagRead> tags) {
+        }
+
+        @Override
+        public void onPackedTagBatch(byte[] packed) {
+        }
+
+        @Override
+        public void onSingleRead() {
+        }
+
+        @Override
+        public void onSpillError(IOException err) {
+        }
+    };
+
+    /**
+     * Runs the selection and batch timers on one thread while a replay runs, as the main
+     * handler does for live reads.
+     */
+    private static final class Timer implements Batcher.Scheduler {
+        private final Map<Runnable, List<ScheduledFuture<?>>> posted = new HashMap<>();
+        private ScheduledExecutorService executor;
+
+        synchronized void start() {
+            executor = Executors.newSingleThreadScheduledExecutor();
+        }
+
+        synchronized void stop() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+
+            posted.clear();
+        }
+
+        @Override
+        public synchronized void postDelayed(Runnable task, long delayMs) {
+            if (executor == null) {
+                return;
+            }
+
+            List<ScheduledFuture<?>> futures = posted.get(task);
+
+            if (futures == null) {
+                futures = new ArrayList<>();
+                posted.put(task, futures);
+            }
+
+            for (Iterator<ScheduledFuture<?>> it = futures.iterator(); it.hasNext(); ) {
+                if (it.next().isDone()) {
+                    it.remove();
+                }
+            }
+
+            futures.add(executor.schedule(task, delayMs, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public synchronized void removeCallbacks(Runnable task) {
+            List<ScheduledFuture<?>> futures = posted.remove(task);
+
+            if (futures != null) {
+                for (ScheduledFuture<?> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    private final File workDir;
+    private final TagInventory inventory = new TagInventory();
+    private final Timer timer = new Timer();
+    private final TagIngest ingest;
+    private final TagPipeline pipeline;
+
+    private long offered;
+
+    /**
+     * @param workDir where the journal and spill files of a mirrored session go.
+     * @param sink    gets what the module would send to JS, or null.
+     */
+    ReplayHarness(IngestMetrics metrics, File workDir, TagIngest.Sink sink) {
+        this.workDir = workDir;
+        this.ingest = new TagIngest(inventory, new InventoryRegistry(), metrics, timer, sink != null ? sink : DISCARD);
+        this.pipeline = new TagPipeline(TagPipeline.DEFAULT_CAPACITY, new TagPipeline.Consumer() {
+            @Override
+            public void onTagRead(TagRead read) {
+                ingest.onRead(read);
+            }
+        });
+    }
+
+    /**
+     * Takes over the settings of a live ingest: filters, locate target, presence tracking,
+     * single read, batching, packed transfer, bounded mode, a journal if a session is open, and
+     * the active named inventories, all empty. The live tag filter is shared; it is immutable.
+     */
+    void mirror(TagIngest live) throws IOException {
+        ingest.setRssiFilter(new RssiFilter(live.rssiFilter().config()));
+        ingest.setTagFilter(live.tagFilter());
+
+        TagLocator locator = live.locator();
+        ingest.setLocator(locator != null ? new TagLocator(locator.epc()) : null);
+
+        PresenceTracker presence = live.presence();
+        ingest.setPresence(presence != null ? new PresenceTracker(presence.timeoutMs(), presence.tickMs(), System.nanoTime()) : null);
+
+        ingest.setSingleRead(live.isSingleRead());
+        ingest.setPackedTransfer(live.isPackedTransfer());
+        ingest.setBatching(live.isBatchTags(), live.batchIntervalMs(), live.batchMaxSize());
+
+        for (InventoryRegistry.Entry entry : live.inventories().list()) {
+            if (entry.isActive()) {
+                ingest.inventories().create(entry.name);
+            }
+        }
+
+        BoundedEpcSet.Config bounded;
+        boolean journaled;
+
+        synchronized (live.inventory()) {
+            bounded = live.boundedTags() != null ? live.boundedTags().config() : null;
+            journaled = live.journal() != null;
+        }
+
+        synchronized (inventory) {
+            if (bounded != null) {
+                ingest.setBoundedTags(new BoundedEpcSet(bounded, new File(workDir, "spill.bin")));
+            }
+
+            if (journaled) {
+                ingest.setJournal(InventoryJournal.create(new File(workDir, "journal"), inventory));
+            }
+        }
+    }
+
+    /**
+     * Replays the capture, waits for the pipeline to drain and hands over a pending batch.
+     * Interrupting the calling thread ends the replay early; what was pushed until then is
+     * still drained.
+     *
+     * @throws InterruptedException if interrupted again while draining.
+     */
+    ReadReplay.Result run(File capture, final double speed) throws IOException, InterruptedException {
+        timer.start();
+        pipeline.start();
+
+        try {
+            ReadReplay.Result result = ReadReplay.run(capture, speed, new ReadReplay.Sink() {
+                @Override
+                public void onTagRead(TagRead read) {
+                    offer(read, speed);
+                }
+            });
+
+            Thread.interrupted();
+            long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+
+            while (ingest.metrics().reads() < offered - pipeline.drops() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            ingest.flush();
+
+            return result;
+        } finally {
+            pipeline.stop();
+            close();
+        }
+    }
+
+    /**
+     * Stops the timers and deletes the journal and spill files. run() calls it when it ends.
+     */
+    void close() {
+        timer.stop();
+
+        InventoryJournal journal;
+
+        synchronized (inventory) {
+            journal = ingest.journal();
+            ingest.setJournal(null);
+
+            if (ingest.boundedTags() != null) {
+                ingest.boundedTags().clear();
+            }
+        }
+
+        // Outside the lock: close() waits for the flusher, which needs it.
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+                // Deleted below either way.
+            }
+
+            InventoryJournal.discard(new File(workDir, "journal"), journal.id());
+        }
+    }
+
+    TagIngest ingest() {
+        return ingest;
+    }
+
+    IngestMetrics metrics() {
+        return ingest.metrics();
+    }
+
+    TagPipeline pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return the tags the replay found; only read once run() has returned.
+     */
+    TagInventory inventory() {
+        return inventory;
+    }
+
+    /**
+     * @return reads dropped by the tag filter.
+     */
+    long filtered() {
+        return ingest.filtered();
+    }
+
+    private void offer(TagRead read, double speed) {
+        if (read.type == 5 || !ingest.accept(read)) {
+            return;
+        }
+
+        while (speed <= 0 && pipeline.depth() >= pipeline.capacity() && !Thread.currentThread().isInterrupted()) {
+            Thread.yield();
+        }
+
+        offered++;
+        pipeline.offer(read);
+    }
+}
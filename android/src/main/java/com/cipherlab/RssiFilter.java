@@ -0,0 +1,219 @@
+package com.cipherlab;
+
+import java.util.Arrays;
+
+/**
+ * RSSI threshold, per-EPC smoothing and single-read selection.
+ *
+ * Smoothing is either an EWMA or the mean of the last windowReads reads of the same EPC.
+ * Selection picks the tag for single-read mode: SELECT_FIRST takes the first read whose
+ * smoothed RSSI is above the threshold; SELECT_STRONGEST opens a window of selectWindowMs at
+ * that read, collects candidates and, once the window has passed, picks the EPC with the
+ * strongest current smoothed RSSI among those read in the window and at least minReads times. Once a tag is selected, further reads are
+ * ignored until {@link #reset()}.
+ *
+ * Time comes from {@link TagRead#receivedAt}, so recorded read streams replay the same way.
+ */
+final class RssiFilter {
+
+    static final int SMOOTHING_NONE = 0;
+    static final int SMOOTHING_EWMA = 1;
+    static final int SMOOTHING_WINDOW = 2;
+
+    static final int SELECT_FIRST = 0;
+    static final int SELECT_STRONGEST = 1;
+
+    static final class Config {
+        double threshold = -70;
+        int smoothing = SMOOTHING_NONE;
+        double alpha = 0.3;
+        int windowReads = 5;
+        int select = SELECT_FIRST;
+        int selectWindowMs = 200;
+        int minReads = 1;
+        boolean filterInventory = false;
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Config config;
+    private final EpcSet epcSet = new EpcSet();
+
+    private int[] reads = new int[INITIAL_CAPACITY];
+    private double[] smoothed = new double[INITIAL_CAPACITY];
+    private double[] window;
+    private TagRead[] latest = new TagRead[INITIAL_CAPACITY];
+    private int lastOrdinal;
+
+    private boolean selected;
+    private boolean windowOpen;
+    private long windowStart;
+    private long windowEnd;
+
+    RssiFilter(Config config) {
+        this.config = config;
+        this.window = config.smoothing == SMOOTHING_WINDOW ? new double[INITIAL_CAPACITY * windowReads()] : null;
+    }
+
+    Config config() {
+        return config;
+    }
+
+    /**
+     * Inventory mode: whether the read passes the threshold. Always true unless
+     * filterInventory is set.
+     */
+    synchronized boolean accept(TagRead read) {
+        return !config.filterInventory || smooth(read) > config.threshold;
+    }
+
+    /**
+     * Single-read mode: feeds one read.
+     *
+     * @return the selected read, or null if no tag is selected yet.
+     */
+    synchronized TagRead offer(TagRead read) {
+        if (selected) {
+            return null;
+        }
+
+        if (windowOpen && read.receivedAt - windowEnd >= 0) {
+            TagRead choice = close();
+
+            if (choice != null) {
+                return choice;
+            }
+        }
+
+        double rssi = smooth(read);
+        latest[lastOrdinal] = read;
+
+        if (rssi <= config.threshold) {
+            return null;
+        }
+
+        if (config.select == SELECT_FIRST) {
+            selected = true;
+
+            return read;
+        }
+
+        if (!windowOpen) {
+            windowOpen = true;
+            windowStart = read.receivedAt;
+            windowEnd = windowStart + config.selectWindowMs * 1000000L;
+        }
+
+        return null;
+    }
+
+    /**
+     * Closes the selection window if it has passed, for when no further reads arrive.
+     *
+     * @return the selected read, or null.
+     */
+    synchronized TagRead poll(long nowNanos) {
+        if (!selected && windowOpen && nowNanos - windowEnd >= 0) {
+            return close();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true while a selection window is collecting candidates.
+     */
+    synchronized boolean isCollecting() {
+        return windowOpen;
+    }
+
+    synchronized void reset() {
+        epcSet.clear();
+        Arrays.fill(latest, null);
+        selected = false;
+        windowOpen = false;
+    }
+
+    /**
+     * @return the smoothed RSSI of the EPC including this read.
+     */
+    private double smooth(TagRead read) {
+        double rssi = read.rssi;
+        int ordinal = epcSet.put(read.epc);
+        boolean first = ordinal >= 0;
+
+        if (!first) {
+            ordinal = -ordinal - 1;
+        } else if (ordinal == reads.length) {
+            grow();
+        }
+
+        int n = first ? 1 : reads[ordinal] + 1;
+        reads[ordinal] = n;
+        lastOrdinal = ordinal;
+
+        switch (config.smoothing) {
+            case SMOOTHING_EWMA:
+                smoothed[ordinal] = first ? rssi : smoothed[ordinal] + config.alpha * (rssi - smoothed[ordinal]);
+                break;
+            case SMOOTHING_WINDOW: {
+                int size = windowReads();
+                int base = ordinal * size;
+                int slot = base + (n - 1) % size;
+                double sum = (first ? 0 : smoothed[ordinal] * Math.min(n - 1, size)) + rssi;
+
+                if (n > size) {
+                    sum -= window[slot];
+                }
+
+                window[slot] = rssi;
+                smoothed[ordinal] = sum / Math.min(n, size);
+                break;
+            }
+            default:
+                smoothed[ordinal] = rssi;
+        }
+
+        return smoothed[ordinal];
+    }
+
+    private TagRead close() {
+        TagRead choice = null;
+        double strongest = 0;
+
+        for (int i = 0; i < epcSet.size(); i++) {
+            TagRead read = latest[i];
+
+            if (read != null && read.receivedAt - windowStart >= 0 && read.receivedAt - windowEnd < 0
+                    && reads[i] >= config.minReads && smoothed[i] > config.threshold
+                    && (choice == null || smoothed[i] > strongest)) {
+                choice = read;
+                strongest = smoothed[i];
+            }
+        }
+
+        windowOpen = false;
+
+        if (choice != null) {
+            selected = true;
+        }
+
+        return choice;
+    }
+
+    private int windowReads() {
+        return Math.max(1, config.windowReads);
+    }
+
+    private void grow() {
+        int capacity = reads.length << 1;
+
+        reads = Arrays.copyOf(reads, capacity);
+        smoothed = Arrays.copyOf(smoothed, capacity);
+        latest = Arrays.copyOf(latest, capacity);
+
+        if (window != null) {
+            window = Arrays.copyOf(window, capacity * windowReads());
+        }
+    }
+}
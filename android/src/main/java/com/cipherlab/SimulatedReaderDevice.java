@@ -0,0 +1,386 @@
+package com.cipherlab;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process {@link ReaderDevice} that replays a synthetic tag population.
+ *
+ * Reads are generated at a fixed rate on the device thread and delivered as TAG_DATA-shaped
+ * {@link TagRead}s. Each tag gets a base RSSI drawn from a normal distribution plus per-read
+ * jitter; duplicateRatio is the share of reads that hit an already-seen tag while unseen tags
+ * remain. Barcodes can be emitted at their own rate. It uses no Android classes, so it also
+ * runs on a plain JVM.
+ *
+ * For power control the module has a simple thermal and battery model. A tag is in reach
+ * when its base RSSI, shifted by the tx power below 30 dBm, is above sensitivityDbm. The read
+ * rate scales with the duty cycle. Heat grows with the duty cycle and the radiated power and
+ * leaks towards ambientC; above protectC the module throttles to a tenth of its read rate and
+ * sends an over-temperature event until it has cooled 5 degrees. With arrivalsPerSecond set,
+ * tags enter the field over time, as on a conveyor, instead of all being there from the start.
+ * By default every tag is in reach and the module does not heat up.
+ */
+class SimulatedReaderDevice implements ReaderDevice {
+
+    static final class Config {
+        int population = 1000;
+        int readsPerSecond = 1000;
+        double rssiMean = -60;
+        double rssiStdDev = 8;
+        double rssiJitter = 3;
+        double duplicateRatio = 0.5;
+        int epcBits = 96;
+        boolean mixedEpcLengths = false;
+        boolean includeTid = true;
+        int barcodesPerSecond = 0;
+        boolean autoStart = true;
+        long seed = 1;
+        double arrivalsPerSecond = 0;
+        double sensitivityDbm = Double.NEGATIVE_INFINITY;
+        double ambientC = 25;
+        double protectC = 70;
+        /**
+         * Heating in degrees C per second at 30 dBm and full duty; leakage is coolingPerSecond
+         * of the difference to ambient, so the module settles at ambient + heat / cooling.
+         */
+        double heatPerSecond = 0;
+        double coolingPerSecond = 0.02;
+        /**
+         * Battery life at 30 dBm and full duty, in minutes.
+         */
+        double batteryMinutes = 480;
+    }
+
+    private static final long TICK_MICROS = 1000;
+    private static final int WRITE_LATENCY_MS = 20;
+    private static final double THROTTLE_FACTOR = 0.1;
+    private static final double THROTTLE_HYSTERESIS_C = 5;
+    /**
+     * Share of the module's heat and drain that does not depend on the tx power.
+     */
+    private static final double BASE_LOAD = 0.3;
+
+    private final Config config;
+    private final Random random;
+    private final String[] epcs;
+    private final String[] tids;
+    private final double[] baseRssi;
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> ticker;
+    private volatile Listener listener;
+    private volatile boolean scanning;
+    private volatile int txPower = 30;
+    private volatile String epcFilter;
+    private volatile boolean barcodeCallback;
+    private volatile InventoryProfile profile;
+    private volatile double duty = 1;
+    private volatile int[] dutyCycle = {1000, 0};
+    private volatile double temperature;
+    private volatile double energySeconds;
+
+    private long startedAt;
+    private long lastTickAt;
+    private double readCredit;
+    private long barcodesEmitted;
+    private int seen;
+    private boolean throttled;
+
+    SimulatedReaderDevice(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.epcs = new String[config.population];
+        this.tids = new String[config.population];
+        this.baseRssi = new double[config.population];
+
+        for (int i = 0; i < config.population; i++) {
+            int bits = config.mixedEpcLengths && (i & 1) == 1 ? 128 : config.epcBits;
+
+            epcs[i] = epc(i, bits);
+            tids[i] = config.includeTid ? String.format("E280%020X", i) : null;
+            baseRssi[i] = config.rssiMean + random.nextGaussian() * config.rssiStdDev;
+        }
+    }
+
+    @Override
+    public synchronized void open(Listener listener) {
+        if (isOpen()) {
+            close();
+        }
+
+        this.listener = listener;
+        this.scanning = config.autoStart;
+        this.startedAt = System.nanoTime();
+        this.lastTickAt = startedAt;
+        this.readCredit = 0;
+        this.barcodesEmitted = 0;
+        this.seen = 0;
+        this.temperature = config.ambientC;
+        this.throttled = false;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = SimulatedReaderDevice.this.listener;
+
+                if (listener != null) {
+                    listener.onRfidConnected();
+                    listener.onBarcodeConnected();
+                }
+            }
+        });
+        ticker = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, TICK_MICROS, TICK_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            ticker.cancel(false);
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        listener = null;
+    }
+
+    @Override
+    public void shutdown() {
+        close();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return scheduler != null;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return isOpen();
+    }
+
+    @Override
+    public List<String> configureRfid(InventoryProfile profile) {
+        return applyProfile(profile);
+    }
+
+    @Override
+    public void configureBarcode() {
+    }
+
+    @Override
+    public String getSerialNumber() {
+        return "SIMULATOR";
+    }
+
+    @Override
+    public int getBatteryLevel() {
+        return (int) Math.max(0, Math.round(100 - 100 * energySeconds / (config.batteryMinutes * 60)));
+    }
+
+    @Override
+    public int getTxPower() {
+        return txPower;
+    }
+
+    @Override
+    public void setTxPower(int level) {
+        txPower = level;
+    }
+
+    @Override
+    public void setDutyCycle(int inventoryMs, int delayMs) {
+        dutyCycle = new int[]{inventoryMs, delayMs};
+        duty = inventoryMs + delayMs > 0 ? (double) inventoryMs / (inventoryMs + delayMs) : 1;
+    }
+
+    @Override
+    public int[] getDutyCycle() {
+        return dutyCycle.clone();
+    }
+
+    @Override
+    public double getModuleTemperature() {
+        return temperature;
+    }
+
+    @Override
+    public double getProtectTemperature() {
+        return config.protectC;
+    }
+
+    @Override
+    public List<String> applyProfile(InventoryProfile profile) {
+        List<String> changed = profile.diff(this.profile);
+
+        if (profile.txPower >= 0 && txPower != profile.txPower) {
+            txPower = profile.txPower;
+            changed.add(InventoryProfile.TX_POWER);
+        }
+
+        this.profile = profile;
+
+        return changed;
+    }
+
+    @Override
+    public void setTriggerEnabled(boolean enable) {
+    }
+
+    @Override
+    public void softScanTrigger(boolean enable) {
+        scanning = enable;
+    }
+
+    @Override
+    public void setEpcFilter(String prefix) {
+        epcFilter = prefix;
+    }
+
+    @Override
+    public void setBarcodeCallback(boolean enable) {
+        barcodeCallback = enable;
+    }
+
+    @Override
+    public synchronized int writeTagByEpc(byte[] oldEpc, byte[] newEpc) {
+        if (scheduler == null) {
+            return TagWriter.RESPONSE_FAIL;
+        }
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = SimulatedReaderDevice.this.listener;
+
+                if (listener != null) {
+                    listener.onTagRead(new TagRead(5, TagWriter.RESPONSE_SUCCESS, 0, null, null, null, null, System.nanoTime()));
+                }
+            }
+        }, WRITE_LATENCY_MS, TimeUnit.MILLISECONDS);
+
+        return TagWriter.RESPONSE_SUCCESS;
+    }
+
+    private void tick() {
+        Listener listener = this.listener;
+
+        if (listener == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long elapsedNanos = now - startedAt;
+        double seconds = (now - lastTickAt) / 1e9;
+        lastTickAt = now;
+
+        double load = scanning ? duty * (BASE_LOAD + (1 - BASE_LOAD) * Math.pow(10, (txPower - 30) / 10.0)) : 0;
+        temperature += (config.heatPerSecond * load - config.coolingPerSecond * (temperature - config.ambientC)) * seconds;
+        energySeconds += load * seconds;
+
+        if (!throttled && temperature >= config.protectC) {
+            throttled = true;
+            listener.onDeviceEvent(EVENT_OVER_TEMPERATURE);
+        } else if (throttled && temperature < config.protectC - THROTTLE_HYSTERESIS_C) {
+            throttled = false;
+        }
+
+        if (scanning && config.population > 0) {
+            readCredit += config.readsPerSecond * seconds * duty * (throttled ? THROTTLE_FACTOR : 1);
+
+            while (readCredit >= 1 && scanning) {
+                readCredit--;
+
+                TagRead read = nextRead(elapsedNanos);
+                String filter = epcFilter;
+
+                if (read != null && (filter == null || read.epc.regionMatches(true, 0, filter, 0, filter.length()))) {
+                    listener.onTagRead(read);
+                }
+            }
+        } else {
+            readCredit = 0;
+        }
+
+        if (config.barcodesPerSecond > 0) {
+            long due = elapsedNanos * config.barcodesPerSecond / 1000000000L;
+
+            while (barcodesEmitted < due) {
+                barcodesEmitted++;
+
+                String barcode = String.format("SIM%010d", barcodesEmitted);
+                listener.onBarcode(new BarcodeRead(barcode, "Code 128", BarcodeRead.SOURCE_BROADCAST, System.nanoTime(), System.currentTimeMillis()));
+
+                if (barcodeCallback) {
+                    listener.onBarcode(new BarcodeRead(barcode, null, BarcodeRead.SOURCE_CALLBACK, System.nanoTime(), System.currentTimeMillis()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates count reads from the population without pacing, e.g. for benchmarks.
+     */
+    synchronized TagRead[] generate(int count) {
+        TagRead[] reads = new TagRead[count];
+
+        for (int i = 0; i < count; i++) {
+            reads[i] = nextRead(-1);
+        }
+
+        return reads;
+    }
+
+    /**
+     * @param elapsedNanos time since open, for arrivals; negative to ignore them.
+     * @return null if the chosen tag is out of reach or none has arrived yet.
+     */
+    private TagRead nextRead(long elapsedNanos) {
+        int index;
+        int arrived = config.population;
+
+        if (config.arrivalsPerSecond > 0 && elapsedNanos >= 0) {
+            arrived = (int) Math.min(config.population, elapsedNanos / 1e9 * config.arrivalsPerSecond);
+        }
+
+        if (seen < arrived && (seen == 0 || random.nextDouble() >= config.duplicateRatio)) {
+            index = seen++;
+        } else if (seen > 0) {
+            index = random.nextInt(seen);
+        } else {
+            return null;
+        }
+
+        if (elapsedNanos >= 0 && baseRssi[index] + txPower - 30 < config.sensitivityDbm) {
+            return null;
+        }
+
+        double rssi = baseRssi[index] + random.nextGaussian() * config.rssiJitter;
+        InventoryProfile profile = this.profile;
+        boolean tid = config.includeTid && (profile == null || !profile.epcOnly);
+
+        return new TagRead(tid ? 2 : 1, TagWriter.RESPONSE_SUCCESS, rssi, "3000", epcs[index], tid ? tids[index] : null, null, System.nanoTime());
+    }
+
+    private String epc(int index, int bits) {
+        StringBuilder sb = new StringBuilder(bits / 4);
+        sb.append("30");
+
+        while (sb.length() < bits / 4 - 8) {
+            sb.append(Character.forDigit((int) (config.seed + sb.length()) & 0x0F, 16));
+        }
+
+        sb.append(String.format("%08X", index));
+
+        return sb.toString().toUpperCase();
+    }
+}
@@ -0,0 +1,385 @@
+package com.cipherlab;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-read handling of tag reads, from the tag filter in front of the {@link TagPipeline} to
+ * the payload handed to a {@link Sink}: locate, single read with RSSI selection, presence,
+ * de-dup into the inventory or a {@link BoundedEpcSet}, the journal, named inventories and
+ * batched or packed transfer. The module feeds it live reads and sends what reaches the sink
+ * to JS; a {@link ReplayHarness} feeds it captured reads, so a replay runs the same code.
+ *
+ * Latency is recorded when the payload has been handed to the sink. The mode settings are
+ * volatile and may be changed from any thread; the journal and bounded set are guarded by the
+ * inventory lock.
+ */
+final class TagIngest {
+
+    interface Sink {
+        /**
+         * A new tag, when batching is off.
+         */
+        void onTag(TagRead read);
+
+        void onTagBatch(List<TagRead> tags);
+
+        /**
+         * A batch in the {@link TagPacker} format, when packed transfer is on.
+         */
+        void onPackedTagBatch(byte[] packed);
+
+        /**
+         * A single read has selected its tag, whether new or not; reading should stop.
+         */
+        void onSingleRead();
+
+        /**
+         * A read was not emitted because spilling the bounded set failed.
+         */
+        void onSpillError(IOException err);
+    }
+
+    private final TagInventory inventory;
+    private final InventoryRegistry inventories;
+    private final IngestMetrics metrics;
+    private final Batcher.Scheduler scheduler;
+    private final Sink sink;
+    private final Batcher<TagRead> batcher;
+    private final AtomicLong filtered = new AtomicLong();
+
+    private volatile RssiFilter rssiFilter = new RssiFilter(new RssiFilter.Config());
+    /**
+     * Null when no tag filter is set.
+     */
+    private volatile EpcFilterIndex tagFilter;
+    private volatile TagLocator locator;
+    private volatile PresenceTracker presence;
+    private volatile boolean singleRead;
+    private volatile boolean batchTags;
+    private volatile boolean packedTransfer;
+    private volatile int batchIntervalMs = Batcher.DEFAULT_INTERVAL_MS;
+    private volatile int batchMaxSize = Batcher.DEFAULT_MAX_SIZE;
+
+    /**
+     * Guarded by inventory.
+     */
+    private InventoryJournal journal;
+    /**
+     * Replaces the inventory for de-dup while bounded inventory mode is on. Guarded by inventory.
+     */
+    private BoundedEpcSet boundedTags;
+
+    private final Runnable selectionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            TagRead read = rssiFilter.poll(System.nanoTime());
+
+            if (read != null) {
+                onSingleRead(read);
+            }
+        }
+    };
+
+    /**
+     * @param scheduler runs the single read selection and batch timers; all on one thread.
+     */
+    TagIngest(TagInventory inventory, InventoryRegistry inventories, IngestMetrics metrics, Batcher.Scheduler scheduler, Sink sink) {
+        this.inventory = inventory;
+        this.inventories = inventories;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.batcher = new Batcher<>(scheduler, new Batcher.Listener<TagRead>() {
+            @Override
+            public void onBatch(List<TagRead> tags) {
+                if (packedTransfer) {
+                    TagIngest.this.sink.onPackedTagBatch(TagPacker.pack(tags, System.currentTimeMillis(), System.nanoTime()));
+                } else {
+                    TagIngest.this.sink.onTagBatch(tags);
+                }
+
+                long now = System.nanoTime();
+
+                for (TagRead tag : tags) {
+                    TagIngest.this.metrics.onLatency(tag.receivedAt, now);
+                }
+            }
+        });
+    }
+
+    TagInventory inventory() {
+        return inventory;
+    }
+
+    InventoryRegistry inventories() {
+        return inventories;
+    }
+
+    IngestMetrics metrics() {
+        return metrics;
+    }
+
+    RssiFilter rssiFilter() {
+        return rssiFilter;
+    }
+
+    /**
+     * Replaces the RSSI filter, dropping a single read selection in progress.
+     */
+    void setRssiFilter(RssiFilter filter) {
+        scheduler.removeCallbacks(selectionRunnable);
+        rssiFilter = filter;
+    }
+
+    EpcFilterIndex tagFilter() {
+        return tagFilter;
+    }
+
+    /**
+     * @param filter null or an index without rules to accept every EPC; resets the filtered count.
+     */
+    void setTagFilter(EpcFilterIndex filter) {
+        tagFilter = filter != null && filter.ruleCount() > 0 ? filter : null;
+        filtered.set(0);
+    }
+
+    /**
+     * @return reads dropped by the tag filter since it was set.
+     */
+    long filtered() {
+        return filtered.get();
+    }
+
+    TagLocator locator() {
+        return locator;
+    }
+
+    /**
+     * @param locator the target to follow instead of building the inventory, or null.
+     */
+    void setLocator(TagLocator locator) {
+        this.locator = locator;
+    }
+
+    PresenceTracker presence() {
+        return presence;
+    }
+
+    void setPresence(PresenceTracker presence) {
+        this.presence = presence;
+    }
+
+    boolean isSingleRead() {
+        return singleRead;
+    }
+
+    void setSingleRead(boolean enable) {
+        singleRead = enable;
+    }
+
+    boolean isPackedTransfer() {
+        return packedTransfer;
+    }
+
+    void setPackedTransfer(boolean enable) {
+        packedTransfer = enable;
+    }
+
+    boolean isBatchTags() {
+        return batchTags;
+    }
+
+    int batchIntervalMs() {
+        return batchIntervalMs;
+    }
+
+    int batchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * Turning batching off hands over what is pending.
+     */
+    void setBatching(boolean enable, int intervalMs, int maxSize) {
+        batcher.configure(intervalMs, maxSize);
+        batchIntervalMs = intervalMs;
+        batchMaxSize = maxSize;
+        batchTags = enable;
+
+        if (!enable) {
+            batcher.flush();
+        }
+    }
+
+    void flush() {
+        batcher.flush();
+    }
+
+    int batchPending() {
+        return batcher.pending();
+    }
+
+    /**
+     * Caller holds the inventory lock.
+     */
+    InventoryJournal journal() {
+        return journal;
+    }
+
+    /**
+     * Caller holds the inventory lock.
+     */
+    void setJournal(InventoryJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Caller holds the inventory lock.
+     */
+    BoundedEpcSet boundedTags() {
+        return boundedTags;
+    }
+
+    /**
+     * Caller holds the inventory lock.
+     */
+    void setBoundedTags(BoundedEpcSet boundedTags) {
+        this.boundedTags = boundedTags;
+    }
+
+    /**
+     * Clears the inventory, journal and bounded set, and any single read selection.
+     */
+    void clear() {
+        synchronized (inventory) {
+            inventory.clear();
+
+            if (journal != null) {
+                journal.reset();
+            }
+
+            if (boundedTags != null) {
+                boundedTags.clear();
+            }
+        }
+
+        rssiFilter.reset();
+    }
+
+    /**
+     * Applied before queueing, so filtered reads cost no pipeline slot; locate mode follows its
+     * own target.
+     *
+     * @return false if the tag filter drops the read.
+     */
+    boolean accept(TagRead read) {
+        EpcFilterIndex filter = tagFilter;
+
+        if (filter != null && read.epc != null && locator == null && !filter.matches(read.epc)) {
+            filtered.incrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Handles one read taken off the pipeline.
+     */
+    void onRead(TagRead read) {
+        metrics.onRead();
+
+        if (read.epc == null) {
+            return;
+        }
+
+        TagLocator locator = this.locator;
+
+        if (locator != null) {
+            locator.onRead(read);
+            return;
+        }
+
+        RssiFilter filter = rssiFilter;
+
+        if (singleRead) {
+            boolean collecting = filter.isCollecting();
+            TagRead selected = filter.offer(read);
+
+            if (selected != null) {
+                onSingleRead(selected);
+            } else if (!collecting && filter.isCollecting()) {
+                scheduler.postDelayed(selectionRunnable, filter.config().selectWindowMs);
+            }
+        } else if (filter.accept(read)) {
+            PresenceTracker presence = this.presence;
+
+            if (presence != null) {
+                presence.onRead(read.epc, read.receivedAt);
+            }
+
+            boolean isNew;
+
+            synchronized (inventory) {
+                isNew = boundedTags != null ? addBoundedTag(read) : addTagToList(read);
+            }
+
+            inventories.onRead(read, System.currentTimeMillis());
+
+            if (isNew) {
+                metrics.onUnique();
+                emit(read);
+            }
+        }
+    }
+
+    private void onSingleRead(TagRead read) {
+        boolean isNew;
+
+        sink.onSingleRead();
+
+        synchronized (inventory) {
+            isNew = boundedTags != null
+                    ? addBoundedTag(read) && boundedTags.size() == 1
+                    : addTagToList(read) && inventory.size() == 1;
+        }
+
+        if (isNew) {
+            metrics.onUnique();
+            emit(read);
+        }
+    }
+
+    private boolean addTagToList(TagRead read) {
+        int index = inventory.put(read.epc, read.tid, read.rssi, System.currentTimeMillis());
+
+        if (journal != null) {
+            journal.onRead(index);
+        }
+
+        return index >= 0;
+    }
+
+    /**
+     * A read whose EPC could not be checked because spilling failed is not emitted.
+     */
+    private boolean addBoundedTag(TagRead read) {
+        try {
+            return boundedTags.add(read.epc);
+        } catch (IOException err) {
+            sink.onSpillError(err);
+            return false;
+        }
+    }
+
+    private void emit(TagRead read) {
+        if (batchTags) {
+            batcher.add(read);
+        } else {
+            sink.onTag(read);
+            metrics.onLatency(read.receivedAt, System.nanoTime());
+        }
+    }
+}
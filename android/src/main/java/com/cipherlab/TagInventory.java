@@ -0,0 +1,189 @@
+package com.cipherlab;
+
+import java.util.Arrays;
+
+/**
+ * De-dup set plus a per-EPC aggregate: read count, min/max/average RSSI, first and last seen
+ * time and TID.
+ *
+ * Aggregates are kept as parallel primitive arrays indexed by the {@link EpcSet} ordinal, so a
+ * repeated read only updates a few array slots and allocates nothing. Arrays grow by doubling
+ * when a new EPC does not fit.
+ *
+ * Not thread-safe.
+ */
+final class TagInventory {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final EpcSet epcSet;
+    private int size;
+
+    private String[] epcs = new String[INITIAL_CAPACITY];
+    private String[] tids = new String[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private float[] rssiMin = new float[INITIAL_CAPACITY];
+    private float[] rssiMax = new float[INITIAL_CAPACITY];
+    private double[] rssiSum = new double[INITIAL_CAPACITY];
+    private long[] firstSeen = new long[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+
+    TagInventory() {
+        epcSet = new EpcSet();
+    }
+
+    /**
+     * Detached copy of the aggregates of source, without a de-dup set.
+     */
+    private TagInventory(TagInventory source) {
+        epcSet = null;
+        size = source.size;
+        epcs = Arrays.copyOf(source.epcs, size);
+        tids = Arrays.copyOf(source.tids, size);
+        counts = Arrays.copyOf(source.counts, size);
+        rssiMin = Arrays.copyOf(source.rssiMin, size);
+        rssiMax = Arrays.copyOf(source.rssiMax, size);
+        rssiSum = Arrays.copyOf(source.rssiSum, size);
+        firstSeen = Arrays.copyOf(source.firstSeen, size);
+        lastSeen = Arrays.copyOf(source.lastSeen, size);
+    }
+
+    /**
+     * Records one read.
+     *
+     * @return true if the EPC had not been seen since the last {@link #clear()}.
+     */
+    boolean add(String epc, String tid, double rssi, long timestamp) {
+        return put(epc, tid, rssi, timestamp) >= 0;
+    }
+
+    /**
+     * Records one read.
+     *
+     * @return the index of a new EPC, or -(index + 1) if it was already known.
+     */
+    int put(String epc, String tid, double rssi, long timestamp) {
+        int ordinal = epcSet.put(epc);
+
+        if (ordinal >= 0) {
+            if (ordinal == epcs.length) {
+                grow();
+            }
+
+            size = ordinal + 1;
+            epcs[ordinal] = epc;
+            tids[ordinal] = tid;
+            counts[ordinal] = 1;
+            rssiMin[ordinal] = (float) rssi;
+            rssiMax[ordinal] = (float) rssi;
+            rssiSum[ordinal] = rssi;
+            firstSeen[ordinal] = timestamp;
+            lastSeen[ordinal] = timestamp;
+
+            return ordinal;
+        }
+
+        ordinal = -ordinal - 1;
+
+        counts[ordinal]++;
+        rssiSum[ordinal] += rssi;
+        lastSeen[ordinal] = timestamp;
+
+        if (rssi < rssiMin[ordinal]) {
+            rssiMin[ordinal] = (float) rssi;
+        }
+
+        if (rssi > rssiMax[ordinal]) {
+            rssiMax[ordinal] = (float) rssi;
+        }
+
+        if (tids[ordinal] == null) {
+            tids[ordinal] = tid;
+        }
+
+        return -ordinal - 1;
+    }
+
+    /**
+     * Overwrites the aggregate of an existing index, e.g. when replaying a journal.
+     */
+    void restore(int i, String tid, int count, float rssiMin, float rssiMax, double rssiSum, long lastSeen) {
+        if (tid != null) {
+            this.tids[i] = tid;
+        }
+
+        this.counts[i] = count;
+        this.rssiMin[i] = rssiMin;
+        this.rssiMax[i] = rssiMax;
+        this.rssiSum[i] = rssiSum;
+        this.lastSeen[i] = lastSeen;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Read-only copy of the aggregates, so snapshots can be built after the inventory lock is
+     * released. Only the accessors may be used on the copy.
+     */
+    TagInventory copy() {
+        return new TagInventory(this);
+    }
+
+    void clear() {
+        epcSet.clear();
+        size = 0;
+        Arrays.fill(epcs, null);
+        Arrays.fill(tids, null);
+    }
+
+    String epc(int i) {
+        return epcs[i];
+    }
+
+    String tid(int i) {
+        return tids[i];
+    }
+
+    int count(int i) {
+        return counts[i];
+    }
+
+    double rssiMin(int i) {
+        return rssiMin[i];
+    }
+
+    double rssiMax(int i) {
+        return rssiMax[i];
+    }
+
+    double rssiSum(int i) {
+        return rssiSum[i];
+    }
+
+    double rssiAvg(int i) {
+        return rssiSum[i] / counts[i];
+    }
+
+    long firstSeen(int i) {
+        return firstSeen[i];
+    }
+
+    long lastSeen(int i) {
+        return lastSeen[i];
+    }
+
+    private void grow() {
+        int capacity = epcs.length << 1;
+
+        epcs = Arrays.copyOf(epcs, capacity);
+        tids = Arrays.copyOf(tids, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        rssiMin = Arrays.copyOf(rssiMin, capacity);
+        rssiMax = Arrays.copyOf(rssiMax, capacity);
+        rssiSum = Arrays.copyOf(rssiSum, capacity);
+        firstSeen = Arrays.copyOf(firstSeen, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+    }
+}
@@ -0,0 +1,94 @@
+package com.cipherlab;
+
+/**
+ * Proximity estimate for one target EPC.
+ *
+ * Reads of the target update an EWMA of the RSSI; {@link #proximity} maps it linearly from
+ * RSSI_FLOOR (0) to RSSI_CEILING (100). When the tag has not been read for HOLD_MS the value
+ * fades out and reaches 0 after LOST_MS, so the finder drops back instead of freezing on the
+ * last read. The module samples it every INTERVAL_MS, independent of the read rate.
+ */
+final class TagLocator {
+
+    static final int INTERVAL_MS = 50;
+
+    static final double RSSI_FLOOR = -80;
+    static final double RSSI_CEILING = -30;
+
+    private static final double ALPHA = 0.5;
+    private static final long HOLD_MS = 300;
+    private static final long LOST_MS = 1500;
+
+    private final String epc;
+
+    private boolean seen;
+    private double rssi;
+    private long lastRead;
+    private int reads;
+
+    TagLocator(String epc) {
+        this.epc = epc;
+    }
+
+    String epc() {
+        return epc;
+    }
+
+    /**
+     * @return true if the read is of the target.
+     */
+    synchronized boolean onRead(TagRead read) {
+        if (!epc.equalsIgnoreCase(read.epc)) {
+            return false;
+        }
+
+        rssi = seen ? rssi + ALPHA * (read.rssi - rssi) : read.rssi;
+        lastRead = read.receivedAt;
+        seen = true;
+        reads++;
+
+        return true;
+    }
+
+    /**
+     * @return 0 (not found) to 100 (next to the antenna).
+     */
+    synchronized int proximity(long nowNanos) {
+        if (!seen) {
+            return 0;
+        }
+
+        double value = (rssi - RSSI_FLOOR) / (RSSI_CEILING - RSSI_FLOOR);
+        long age = (nowNanos - lastRead) / 1000000L;
+
+        if (age > HOLD_MS) {
+            value *= Math.max(0, (double) (LOST_MS - age) / (LOST_MS - HOLD_MS));
+        }
+
+        return (int) Math.round(Math.max(0, Math.min(1, value)) * 100);
+    }
+
+    /**
+     * @return the smoothed RSSI, or NaN if the target has not been read.
+     */
+    synchronized double rssi() {
+        return seen ? rssi : Double.NaN;
+    }
+
+    /**
+     * @return ms since the last read of the target, or -1.
+     */
+    synchronized long age(long nowNanos) {
+        return seen ? (nowNanos - lastRead) / 1000000L : -1;
+    }
+
+    /**
+     * @return reads of the target since the previous call.
+     */
+    synchronized int takeReads() {
+        int n = reads;
+        reads = 0;
+
+        return n;
+    }
+}
@@ -0,0 +1,23 @@
+package com.cipherlab;
+
+/**
+ * Log level switch for the per-read code paths.
+ *
+ * Per-read logging concatenates strings for every broadcast, so it is off unless the level is
+ * raised to DEBUG.
+ */
+final class TagLog {
+
+    static final int NONE = 0;
+    static final int INFO = 1;
+    static final int DEBUG = 2;
+
+    static volatile int level = INFO;
+
+    private TagLog() {
+    }
+
+    static boolean isDebug() {
+        return level >= DEBUG;
+    }
+}
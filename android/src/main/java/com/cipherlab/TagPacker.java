@@ -0,0 +1,204 @@
+package com.cipherlab;
+
+import java.util.List;
+
+/**
+ * Packs tags into a compact buffer of fixed-width records, so thousands of tags can cross the
+ * bridge as one base64 string instead of one map per tag. src/index.js holds the decoder.
+ *
+ * Layout, big-endian:
+ *
+ * header (16 bytes)
+ *   u8  version
+ *   u8  epcWidth   bytes reserved for the EPC in every record
+ *   u8  tidWidth   bytes reserved for the TID in every record
+ *   u8  reserved
+ *   u32 count
+ *   f64 baseTime   epoch ms that the record timestamps are relative to
+ *
+ * record (20 + epcWidth + tidWidth bytes)
+ *   u8  epcLength  bit 7 set: raw ASCII instead of hex-decoded bytes
+ *   u8  tidLength  same, 0 if there is no TID
+ *   epcWidth bytes EPC, zero padded
+ *   tidWidth bytes TID, zero padded
+ *   i16 rssiAvg, rssiMin, rssiMax in tenths of a dBm
+ *   u32 count
+ *   u32 firstSeen, lastSeen in ms after baseTime
+ *
+ * Hex fields decode back to upper-case hex. Values that are not even-length hex (e.g. EPCs
+ * the EpcSet keeps in its overflow map) are stored as ASCII, truncated to 127 bytes.
+ */
+final class TagPacker {
+
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int FIXED_RECORD_BYTES = 20;
+
+    private static final int MAX_FIELD_BYTES = 127;
+    private static final int TEXT_FLAG = 0x80;
+
+    private TagPacker() {
+    }
+
+    /**
+     * Packs every tag in the inventory. The caller must hold the inventory lock, or pass a
+     * {@link TagInventory#copy()}.
+     */
+    static byte[] pack(TagInventory inventory) {
+        byte[] scratch = new byte[MAX_FIELD_BYTES];
+        int count = inventory.size();
+        int epcWidth = 0;
+        int tidWidth = 0;
+        long baseTime = Long.MAX_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            epcWidth = Math.max(epcWidth, fieldLength(inventory.epc(i), scratch));
+            tidWidth = Math.max(tidWidth, fieldLength(inventory.tid(i), scratch));
+            baseTime = Math.min(baseTime, inventory.firstSeen(i));
+        }
+
+        if (count == 0) {
+            baseTime = 0;
+        }
+
+        byte[] out = new byte[HEADER_BYTES + count * (FIXED_RECORD_BYTES + epcWidth + tidWidth)];
+        int pos = writeHeader(out, epcWidth, tidWidth, count, baseTime);
+
+        for (int i = 0; i < count; i++) {
+            pos = writeField(out, pos, inventory.epc(i), epcWidth, inventory.tid(i), tidWidth, scratch);
+            pos = writeShort(out, pos, tenths(inventory.rssiAvg(i)));
+            pos = writeShort(out, pos, tenths(inventory.rssiMin(i)));
+            pos = writeShort(out, pos, tenths(inventory.rssiMax(i)));
+            pos = writeInt(out, pos, inventory.count(i));
+            pos = writeInt(out, pos, (int) (inventory.firstSeen(i) - baseTime));
+            pos = writeInt(out, pos, (int) (inventory.lastSeen(i) - baseTime));
+        }
+
+        return out;
+    }
+
+    /**
+     * Packs single reads as records with a count of 1. Read times are derived from
+     * {@link TagRead#receivedAt}, given the current wall-clock and monotonic time.
+     */
+    static byte[] pack(List<TagRead> reads, long nowMillis, long nowNanos) {
+        byte[] scratch = new byte[MAX_FIELD_BYTES];
+        int count = reads.size();
+        int epcWidth = 0;
+        int tidWidth = 0;
+        long baseTime = nowMillis;
+
+        for (int i = 0; i < count; i++) {
+            TagRead read = reads.get(i);
+            epcWidth = Math.max(epcWidth, fieldLength(read.epc, scratch));
+            tidWidth = Math.max(tidWidth, fieldLength(read.tid, scratch));
+            baseTime = Math.min(baseTime, readTime(read, nowMillis, nowNanos));
+        }
+
+        byte[] out = new byte[HEADER_BYTES + count * (FIXED_RECORD_BYTES + epcWidth + tidWidth)];
+        int pos = writeHeader(out, epcWidth, tidWidth, count, baseTime);
+
+        for (int i = 0; i < count; i++) {
+            TagRead read = reads.get(i);
+            short rssi = tenths(read.rssi);
+            int seen = (int) (readTime(read, nowMillis, nowNanos) - baseTime);
+
+            pos = writeField(out, pos, read.epc, epcWidth, read.tid, tidWidth, scratch);
+            pos = writeShort(out, pos, rssi);
+            pos = writeShort(out, pos, rssi);
+            pos = writeShort(out, pos, rssi);
+            pos = writeInt(out, pos, 1);
+            pos = writeInt(out, pos, seen);
+            pos = writeInt(out, pos, seen);
+        }
+
+        return out;
+    }
+
+    private static long readTime(TagRead read, long nowMillis, long nowNanos) {
+        return nowMillis - (nowNanos - read.receivedAt) / 1000000L;
+    }
+
+    private static int fieldLength(String value, byte[] scratch) {
+        if (value == null) {
+            return 0;
+        }
+
+        int n = EpcCodec.decode(value, scratch);
+
+        return n >= 0 ? n : Math.min(value.length(), MAX_FIELD_BYTES);
+    }
+
+    private static int writeHeader(byte[] out, int epcWidth, int tidWidth, int count, long baseTime) {
+        out[0] = VERSION;
+        out[1] = (byte) epcWidth;
+        out[2] = (byte) tidWidth;
+        out[3] = 0;
+        writeInt(out, 4, count);
+
+        long bits = Double.doubleToLongBits(baseTime);
+        writeInt(out, 8, (int) (bits >>> 32));
+        writeInt(out, 12, (int) bits);
+
+        return HEADER_BYTES;
+    }
+
+    /**
+     * Writes both length bytes followed by the padded EPC and TID.
+     */
+    private static int writeField(byte[] out, int pos, String epc, int epcWidth, String tid, int tidWidth, byte[] scratch) {
+        int data = pos + 2;
+
+        out[pos] = (byte) writeValue(out, data, epc, scratch);
+        out[pos + 1] = (byte) writeValue(out, data + epcWidth, tid, scratch);
+
+        return data + epcWidth + tidWidth;
+    }
+
+    /**
+     * @return the length byte for value.
+     */
+    private static int writeValue(byte[] out, int pos, String value, byte[] scratch) {
+        if (value == null) {
+            return 0;
+        }
+
+        int n = EpcCodec.decode(value, scratch);
+
+        if (n >= 0) {
+            System.arraycopy(scratch, 0, out, pos, n);
+
+            return n;
+        }
+
+        n = Math.min(value.length(), MAX_FIELD_BYTES);
+
+        for (int i = 0; i < n; i++) {
+            out[pos + i] = (byte) value.charAt(i);
+        }
+
+        return n | TEXT_FLAG;
+    }
+
+    private static short tenths(double rssi) {
+        long value = Math.round(rssi * 10);
+
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    private static int writeShort(byte[] out, int pos, short value) {
+        out[pos] = (byte) (value >>> 8);
+        out[pos + 1] = (byte) value;
+
+        return pos + 2;
+    }
+
+    private static int writeInt(byte[] out, int pos, int value) {
+        out[pos] = (byte) (value >>> 24);
+        out[pos + 1] = (byte) (value >>> 16);
+        out[pos + 2] = (byte) (value >>> 8);
+        out[pos + 3] = (byte) value;
+
+        return pos + 4;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cipherlab;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded hand-off between the broadcast receiver thread and a single worker that runs
+ * de-dup and event delivery. When the worker falls behind, new reads are dropped rather than
+ * blocking the receiver; drops, current depth and the high-water mark are tracked.
+ */
+final class TagPipeline {
+
+    interface Consumer {
+        void onTagRead(TagRead read);
+    }
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final ArrayBlockingQueue<TagRead> queue;
+    private final int capacity;
+    private final Consumer consumer;
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    private Thread worker;
+
+    TagPipeline(int capacity, Consumer consumer) {
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consumer = consumer;
+    }
+
+    synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    TagRead read;
+
+                    try {
+                        read = queue.take();
+                    } catch (InterruptedException err) {
+                        break;
+                    }
+
+                    consumer.onTagRead(read);
+                }
+            }
+        }, "CipherlabTagPipeline");
+        worker.start();
+    }
+
+    synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+
+        queue.clear();
+    }
+
+    boolean offer(TagRead read) {
+        if (!queue.offer(read)) {
+            drops.incrementAndGet();
+            return false;
+        }
+
+        int depth = queue.size();
+        int high = highWaterMark.get();
+
+        while (depth > high && !highWaterMark.compareAndSet(high, depth)) {
+            high = highWaterMark.get();
+        }
+
+        return true;
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long drops() {
+        return drops.get();
+    }
+
+    int highWaterMark() {
+        return highWaterMark.get();
+    }
+
+    void resetStats() {
+        drops.set(0);
+        highWaterMark.set(queue.size());
+    }
+}
@@ -0,0 +1,27 @@
+package com.cipherlab;
+
+/**
+ * One decoded Intent_RFIDSERVICE_TAG_DATA broadcast.
+ */
+final class TagRead {
+
+    final int type;
+    final int response;
+    final double rssi;
+    final String pc;
+    final String epc;
+    final String tid;
+    final String readData;
+    final long receivedAt;
+
+    TagRead(int type, int response, double rssi, String pc, String epc, String tid, String readData, long receivedAt) {
+        this.type = type;
+        this.response = response;
+        this.rssi = rssi;
+        this.pc = pc;
+        this.epc = epc;
+        this.tid = tid;
+        this.readData = readData;
+        this.receivedAt = receivedAt;
+    }
+}
@@ -0,0 +1,210 @@
+package com.cipherlab;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serial queue of EPC writes.
+ *
+ * Each write is issued, then the worker waits for the matching type 5 TAG_DATA response
+ * before issuing the next one, so responses can be tied back to their request without a JS
+ * round trip in between. DEVICE_BUSY is retried with a fixed delay.
+ *
+ * Writes are strictly serial, with no pipelining: the write response carries no EPC or
+ * request id, so one outstanding write is the only way to pair it with its request. Batching
+ * saves the bridge round trips, not reader time. A response that arrives after its write
+ * timed out is dropped, and one that arrives after the next write was issued cannot be told
+ * apart from that write's own.
+ */
+final class TagWriter {
+
+    static final int RESPONSE_SUCCESS = 0;
+    static final int RESPONSE_FINISH = 1;
+    static final int RESPONSE_TIMEOUT = 2;
+    static final int RESPONSE_PASSWORD_FAIL = 6;
+    static final int RESPONSE_FAIL = 7;
+    static final int RESPONSE_DEVICE_BUSY = 251;
+    /**
+     * Set by TagWriter, never by the reader: the request was not written.
+     */
+    static final int RESPONSE_INVALID_EPC = -1;
+    static final int RESPONSE_CANCELLED = -2;
+
+    interface Device {
+        /**
+         * Issues one write.
+         *
+         * @return RESPONSE_SUCCESS if the reader accepted the command, any other response code otherwise.
+         */
+        int write(byte[] oldEpc, byte[] newEpc);
+    }
+
+    interface Listener {
+        void onComplete(List<Result> results);
+    }
+
+    static final class Request {
+        final String oldEpc;
+        final String newEpc;
+
+        Request(String oldEpc, String newEpc) {
+            this.oldEpc = oldEpc;
+            this.newEpc = newEpc;
+        }
+    }
+
+    static final class Options {
+        int retries = 3;
+        int retryDelayMs = 50;
+        int timeoutMs = 2000;
+    }
+
+    static final class Result {
+        final String oldEpc;
+        final String newEpc;
+        final int response;
+        final int attempts;
+        final long elapsedMs;
+
+        Result(String oldEpc, String newEpc, int response, int attempts, long elapsedMs) {
+            this.oldEpc = oldEpc;
+            this.newEpc = newEpc;
+            this.response = response;
+            this.attempts = attempts;
+            this.elapsedMs = elapsedMs;
+        }
+
+        boolean isSuccess() {
+            return response == RESPONSE_SUCCESS || response == RESPONSE_FINISH;
+        }
+    }
+
+    private final LinkedBlockingQueue<Integer> responses = new LinkedBlockingQueue<>();
+    private final Device device;
+
+    /**
+     * Set while a write waits for its response; responses outside it are dropped.
+     */
+    private volatile boolean pending;
+    private ExecutorService executor;
+    private volatile boolean shutdown;
+
+    TagWriter(Device device) {
+        this.device = device;
+    }
+
+    /**
+     * Invalid EPCs are answered with RESPONSE_INVALID_EPC without reaching the reader.
+     */
+    synchronized void submit(final List<Request> requests, final Options options, final Listener listener) {
+        if (executor == null) {
+            shutdown = false;
+            executor = Executors.newSingleThreadExecutor();
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Result> results = new ArrayList<>(requests.size());
+
+                for (Request request : requests) {
+                    results.add(write(request, options));
+                }
+
+                listener.onComplete(results);
+            }
+        });
+    }
+
+    /**
+     * Stops the worker thread. A write in progress ends with RESPONSE_TIMEOUT, and queued
+     * batches complete at once with RESPONSE_CANCELLED. A later submit starts a new worker.
+     */
+    synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        shutdown = true;
+
+        for (Runnable pending : executor.shutdownNow()) {
+            pending.run();
+        }
+
+        executor = null;
+    }
+
+    /**
+     * Called with the response code of every type 5 TAG_DATA broadcast.
+     */
+    void onWriteResponse(int response) {
+        if (pending) {
+            responses.offer(response);
+        }
+    }
+
+    private Result write(Request request, Options options) {
+        long start = System.nanoTime();
+
+        if (!EpcCodec.isValid(request.oldEpc) || !EpcCodec.isValid(request.newEpc)) {
+            return new Result(request.oldEpc, request.newEpc, RESPONSE_INVALID_EPC, 0, 0);
+        }
+
+        if (shutdown) {
+            return new Result(request.oldEpc, request.newEpc, RESPONSE_CANCELLED, 0, 0);
+        }
+
+        byte[] oldData = EpcCodec.toBytes(request.oldEpc);
+        byte[] newData = EpcCodec.toBytes(request.newEpc);
+        int response = RESPONSE_FAIL;
+        int attempts = 0;
+
+        while (attempts <= options.retries) {
+            attempts++;
+            responses.clear();
+            pending = true;
+
+            try {
+                response = device.write(oldData, newData);
+
+                if (response == RESPONSE_SUCCESS) {
+                    response = awaitResponse(options.timeoutMs);
+                }
+            } finally {
+                pending = false;
+                responses.clear();
+            }
+
+            if (response != RESPONSE_DEVICE_BUSY) {
+                break;
+            }
+
+            try {
+                Thread.sleep(options.retryDelayMs);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        return new Result(request.oldEpc, request.newEpc, response, attempts, elapsedMs);
+    }
+
+    private int awaitResponse(int timeoutMs) {
+        try {
+            Integer response = responses.poll(timeoutMs, TimeUnit.MILLISECONDS);
+
+            return response != null ? response : RESPONSE_TIMEOUT;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+
+            return RESPONSE_TIMEOUT;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatcherTest {
+
+    /**
+     * Interval flushes on their own thread, as the main Handler runs them.
+     */
+    private static final class Timer implements Batcher.Scheduler {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ScheduledFuture<?> future;
+
+        @Override
+        public synchronized void postDelayed(Runnable task, long delayMs) {
+            future = executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public synchronized void removeCallbacks(Runnable task) {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    @Test
+    public void flushesBySizeAndOnDemand() {
+        final List<List<Integer>> batches = new ArrayList<>();
+
+        Batcher<Integer> batcher = new Batcher<>(new Timer(), new Batcher.Listener<Integer>() {
+            @Override
+            public void onBatch(List<Integer> items) {
+                batches.add(items);
+            }
+        });
+        batcher.configure(60000, 3);
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(i);
+        }
+
+        assertEquals(1, batcher.pending());
+
+        batcher.flush();
+        batcher.flush();
+
+        assertEquals(3, batches.size());
+        assertEquals(Collections.singletonList(6), batches.get(2));
+        assertEquals(0, batcher.pending());
+    }
+
+    @Test
+    public void deliversInOrderWhenTheTimerRacesSizeFlushes() throws Exception {
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        Timer timer = new Timer();
+
+        Batcher<Integer> batcher = new Batcher<>(timer, new Batcher.Listener<Integer>() {
+            @Override
+            public void onBatch(List<Integer> items) {
+                for (Integer item : items) {
+                    delivered.add(item);
+                    Thread.yield();
+                }
+            }
+        });
+        batcher.configure(1, 5);
+
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            batcher.add(i);
+            expected.add(i);
+        }
+
+        batcher.flush();
+        timer.executor.shutdown();
+        timer.executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(expected, delivered);
+    }
+}
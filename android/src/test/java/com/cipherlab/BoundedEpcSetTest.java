@@ -0,0 +1,145 @@
+package com.cipherlab;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedEpcSetTest {
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = File.createTempFile("bounded", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void deleteDir() {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        dir.delete();
+    }
+
+    private BoundedEpcSet create(long maxMemoryBytes, int expectedTags) {
+        BoundedEpcSet.Config config = new BoundedEpcSet.Config();
+        config.maxMemoryBytes = maxMemoryBytes;
+        config.expectedTags = expectedTags;
+
+        return new BoundedEpcSet(config, new File(dir, "spill.bin"));
+    }
+
+    private static void awaitMerges(BoundedEpcSet set) throws InterruptedException {
+        for (int i = 0; i < 500 && set.isMerging(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(set.isMerging());
+    }
+
+    @Test
+    public void matchesHashSetAcrossSpillsAndMerges() throws Exception {
+        BoundedEpcSet set = create(64 << 10, 50000);
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 100000; i++) {
+            String epc = random.nextInt(10) == 0
+                    ? "tag-" + random.nextInt(5000)
+                    : String.format("3034%020X", (long) random.nextInt(40000));
+
+            assertEquals(epc, expected.add(epc), set.add(epc));
+        }
+
+        assertEquals(expected.size(), set.size());
+        assertTrue(set.spills() > BoundedEpcSet.MERGE_FAN_IN);
+
+        awaitMerges(set);
+
+        assertTrue(set.merges() > 0);
+        assertEquals(0, set.mergeFailures());
+        assertTrue(set.runs() < set.spills());
+
+        for (String epc : expected) {
+            assertFalse(epc, set.add(epc));
+        }
+
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    public void millionTagsStayWithinTheMemoryBudget() throws Exception {
+        long budget = 1L << 20;
+        BoundedEpcSet set = create(budget, 1000000);
+        long memory = set.memoryBytes();
+
+        for (int i = 0; i < 1000000; i++) {
+            assertTrue(set.add(String.format("E28011%018X", (long) i * 7919)));
+        }
+
+        assertEquals(1000000, set.size());
+        assertEquals(memory, set.memoryBytes());
+        assertTrue(set.memoryBytes() <= budget);
+        assertTrue(set.inMemory() <= set.memoryTags());
+        assertEquals(set.spilled() * 17, set.spillBytes());
+
+        awaitMerges(set);
+
+        Random random = new Random(3);
+
+        for (int i = 0; i < 10000; i++) {
+            long seen = random.nextInt(1000000);
+
+            assertFalse(set.add(String.format("E28011%018X", seen * 7919)));
+        }
+
+        assertTrue(set.runs() <= 3 * BoundedEpcSet.MERGE_FAN_IN);
+        assertTrue(set.measuredFalsePositiveRate() < 0.05);
+    }
+
+    @Test
+    public void clearDeletesTheRunFiles() throws Exception {
+        BoundedEpcSet set = create(16 << 10, 10000);
+
+        for (int i = 0; i < 20000; i++) {
+            set.add(Integer.toHexString(i));
+        }
+
+        assertTrue(dir.list().length > 0);
+
+        set.clear();
+        awaitMerges(set);
+
+        assertEquals(0, set.size());
+        assertEquals(0, set.runs());
+        assertEquals(0, dir.list().length);
+        assertTrue(set.add("1"));
+    }
+
+    @Test
+    public void leftoverRunFilesAreDeleted() throws Exception {
+        assertTrue(new File(dir, "spill.bin.3").createNewFile());
+        assertTrue(new File(dir, "other.bin").createNewFile());
+
+        create(16 << 10, 10000);
+
+        assertFalse(new File(dir, "spill.bin.3").exists());
+        assertTrue(new File(dir, "other.bin").exists());
+    }
+}
@@ -0,0 +1,57 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectStateTest {
+
+    @Test
+    public void readyOnceBothServicesAreConfigured() {
+        ConnectState state = new ConnectState();
+
+        assertFalse(state.onRfidReady());
+        assertSame(state, state.onBarcodeReady());
+        assertNull(state.onBarcodeReady());
+        assertTrue(state.timings().containsKey(ConnectState.TOTAL));
+    }
+
+    @Test
+    public void reattachCarriesBarcodeReadiness() {
+        ConnectState state = new ConnectState();
+        state.onBarcodeReady();
+
+        ConnectState next = state.reattach();
+
+        assertTrue(next.isBarcodeReady());
+        assertFalse(next.isRfidReady());
+        assertTrue(next.onRfidReady());
+    }
+
+    @Test
+    public void barcodeCompletingAfterReattachReachesTheNewGeneration() {
+        ConnectState state = new ConnectState();
+        ConnectState next = state.reattach();
+        ConnectState last = next.reattach();
+
+        assertFalse(last.onRfidReady());
+        assertSame(last, state.onBarcodeReady());
+        assertTrue(next.isBarcodeReady());
+        assertTrue(last.isReady());
+    }
+
+    @Test
+    public void staleRfidCompletionDoesNotCount() {
+        ConnectState state = new ConnectState();
+        ConnectState next = state.reattach();
+
+        state.onRfidReady();
+
+        assertFalse(next.isRfidReady());
+        assertNull(state.onBarcodeReady());
+        assertTrue(next.onRfidReady());
+    }
+}
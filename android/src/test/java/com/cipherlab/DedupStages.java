@@ -0,0 +1,58 @@
+package com.cipherlab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH sweep of the de-dup stage over unique populations at
+ * {@link IngestBenchmark#DEDUP_DUPLICATE_RATIO}, see {@link IngestBenchmark#dedupScenario}.
+ * Every invocation runs over the whole read stream, so the score is the time per pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DedupStages {
+
+    @Param({"1000", "10000", "100000"})
+    public int population;
+
+    private TagRead[] reads;
+
+    @Setup
+    public void setUp() {
+        reads = IngestBenchmark.generate(IngestBenchmark.dedupScenario(population));
+    }
+
+    /**
+     * {@link TagInventory#add} on a fresh inventory.
+     */
+    @Benchmark
+    public void dedup(Blackhole blackhole) {
+        TagInventory inventory = new TagInventory();
+
+        for (TagRead read : reads) {
+            blackhole.consume(inventory.add(read.epc, read.tid, read.rssi, read.receivedAt));
+        }
+    }
+
+    /**
+     * {@link EpcSet#add} on a fresh set, without the aggregates.
+     */
+    @Benchmark
+    public void epcSet(Blackhole blackhole) {
+        EpcSet set = new EpcSet();
+
+        for (TagRead read : reads) {
+            blackhole.consume(set.add(read.epc));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpcCodecTest {
+
+    private static String repeat(char c, int n) {
+        StringBuilder builder = new StringBuilder(n);
+
+        for (int i = 0; i < n; i++) {
+            builder.append(c);
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void rejectsOddLengths() {
+        byte[] out = new byte[EpcCodec.MAX_EPC_BYTES];
+
+        assertFalse(EpcCodec.isValid("303"));
+        assertEquals(-1, EpcCodec.decode("303", out));
+        assertFalse(EpcCodec.isValid(""));
+        assertFalse(EpcCodec.isValid(null));
+    }
+
+    @Test
+    public void rejectsNonHexCharacters() {
+        byte[] out = new byte[EpcCodec.MAX_EPC_BYTES];
+
+        for (String hex : new String[]{"30G4", "30 4", "3034-A", "30\u00E94", "3034AZ"}) {
+            assertFalse(hex, EpcCodec.isValid(hex));
+            assertEquals(hex, -1, EpcCodec.decode(hex, out));
+        }
+
+        assertEquals(-1, EpcCodec.nibble('g'));
+        assertEquals(-1, EpcCodec.nibble('\u0660'));
+    }
+
+    @Test
+    public void rejectsLengthsOverTheEpcBank() {
+        String largest = repeat('A', EpcCodec.MAX_EPC_BYTES * 2);
+        String over = largest + "AA";
+
+        assertTrue(EpcCodec.isValid(largest));
+        assertFalse(EpcCodec.isValid(over));
+        assertEquals(EpcCodec.MAX_EPC_BYTES, EpcCodec.decode(largest, new byte[EpcCodec.MAX_EPC_BYTES]));
+        assertEquals(-1, EpcCodec.decode(over, new byte[EpcCodec.MAX_EPC_BYTES]));
+
+        try {
+            EpcCodec.toBytes(over);
+            throw new AssertionError("accepted " + over.length() + " digits");
+        } catch (IllegalArgumentException expected) {
+            // An EPC the tag cannot hold.
+        }
+    }
+
+    @Test
+    public void roundTripsThroughReusedBuffers() {
+        Random random = new Random(5);
+        byte[] bytes = new byte[EpcCodec.MAX_EPC_BYTES];
+        byte[] decoded = new byte[EpcCodec.MAX_EPC_BYTES];
+        char[] hex = new char[EpcCodec.MAX_EPC_BYTES * 2];
+
+        // Long EPCs first, so stale bytes and chars from earlier rounds are left in the buffers.
+        for (int length = EpcCodec.MAX_EPC_BYTES; length >= 1; length--) {
+            random.nextBytes(bytes);
+
+            String encoded = EpcCodec.toHex(bytes, length, hex);
+
+            assertEquals(length * 2, encoded.length());
+            assertEquals(encoded.toUpperCase(), encoded);
+            assertEquals(length, EpcCodec.decode(encoded, decoded));
+            assertEquals(length, EpcCodec.decode(encoded.toLowerCase(), decoded));
+
+            for (int i = 0; i < length; i++) {
+                assertEquals(bytes[i], decoded[i]);
+            }
+        }
+    }
+
+    @Test
+    public void matchesTheCharacterDigitDecoder() {
+        String hex = "E28011700000020A1B2C3Dff";
+
+        assertArrayEquals(IngestBenchmark.legacyDecode(hex), EpcCodec.toBytes(hex));
+        assertEquals(hex.toUpperCase(), IngestBenchmark.legacyEncode(EpcCodec.toBytes(hex)));
+    }
+}
@@ -0,0 +1,115 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpcSetTest {
+
+    @Test
+    public void addsEachEpcOnce() {
+        EpcSet set = new EpcSet();
+
+        assertTrue(set.add("E2000017221101441890ABCD"));
+        assertFalse(set.add("E2000017221101441890ABCD"));
+        assertTrue(set.add("E2000017221101441890ABCE"));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void caseOfHexDigitsDoesNotMatter() {
+        EpcSet set = new EpcSet();
+
+        assertTrue(set.add("3034abcdef"));
+        assertFalse(set.add("3034ABCDEF"));
+    }
+
+    @Test
+    public void leadingZerosKeepEpcsDistinct() {
+        EpcSet set = new EpcSet();
+
+        assertTrue(set.add("0A"));
+        assertTrue(set.add("000A"));
+        assertTrue(set.add("A"));
+        assertFalse(set.add("000A"));
+    }
+
+    @Test
+    public void ordinalsAreDenseInInsertionOrder() {
+        EpcSet set = new EpcSet();
+
+        assertEquals(0, set.put("01"));
+        assertEquals(1, set.put("02"));
+        assertEquals(-1, set.put("01"));
+        assertEquals(2, set.put("not hex"));
+        assertEquals(3, set.put("0123456789ABCDEF0123456789ABCDEF0"));
+        assertEquals(-2, set.put("02"));
+        assertEquals(-3, set.put("not hex"));
+        assertEquals(-4, set.put("0123456789ABCDEF0123456789ABCDEF0"));
+    }
+
+    @Test
+    public void fullWidthEpcsUseAllBits() {
+        EpcSet set = new EpcSet();
+
+        assertTrue(set.add("80000000000000000000000000000000"));
+        assertTrue(set.add("00000000000000000000000000000001"));
+        assertTrue(set.add("00000000000000010000000000000000"));
+        assertFalse(set.add("80000000000000000000000000000000"));
+    }
+
+    @Test
+    public void packedAndStringKeysAgree() {
+        EpcSet set = new EpcSet();
+
+        int ordinal = set.put(0x1234L, 0x00000000000000ABL, 20);
+
+        assertEquals(-(ordinal + 1), set.put("000000000000123400000000000000AB".substring(12)));
+    }
+
+    @Test
+    public void matchesHashSetAcrossResizes() {
+        EpcSet set = new EpcSet();
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200000; i++) {
+            String epc = String.format("3034%08X%012X", random.nextInt(), (long) random.nextInt(50000));
+
+            assertEquals(expected.add(epc), set.add(epc));
+        }
+
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    public void emptyStringFallsBackToOverflow() {
+        EpcSet set = new EpcSet();
+
+        assertTrue(set.add(""));
+        assertFalse(set.add(""));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        EpcSet set = new EpcSet();
+
+        for (int i = 0; i < 5000; i++) {
+            set.add(Integer.toHexString(i));
+        }
+
+        set.add("xyz");
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertEquals(0, set.put("1"));
+        assertTrue(set.add("xyz"));
+    }
+}
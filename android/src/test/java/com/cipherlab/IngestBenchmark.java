@@ -0,0 +1,423 @@
+package com.cipherlab;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Micro-benchmark of the per-read ingest path, run with JMH on a JVM from the unit test
+ * classpath:
+ *
+ *   ./gradlew ingestBenchmark [-Pargs="--forks 3 --iterations 10 --replay capture.clr --speed 0"]
+ *
+ * Every scenario replays a read stream generated by {@link SimulatedReaderDevice} from a fixed
+ * seed, so runs are comparable across builds and machines. Each stage is a JMH benchmark in
+ * {@link IngestStages}, run in forked JVMs after warm-up, with its results consumed by a
+ * Blackhole. It is reported per read as the mean with its 99.9 % error and standard deviation
+ * over all forks and iterations.
+ *
+ * Stages:
+ * - parse: hex EPC decoding with {@link EpcCodec} into a reused buffer
+ * - parseLegacy: the same with the Character.digit loop EpcCodec replaced, one array per read
+ * - encode: EPC bytes back to hex with {@link EpcCodec} into a reused buffer, as a String
+ * - encodeLegacy: the same with Character.forDigit and a StringBuilder per read
+ * - dedup: {@link TagInventory#add} on a fresh inventory (addTagToList)
+ * - filter: {@link RssiFilter#accept} with the given config on a fresh filter
+ * - payload: building the event payload for each read
+ * - ingest: filter, de-dup and payload for new tags, as the pipeline worker does it
+ * - fanoutN: {@link InventoryRegistry#onRead} with N active named inventories
+ *
+ * {@link DedupStages} sweeps the de-dup stage over unique populations of 1k, 10k and 100k tags
+ * at a fixed duplicate ratio, for both {@link TagInventory#add} and the bare {@link EpcSet}, so
+ * a table that stops fitting in cache shows up as a rising cost per tag.
+ *
+ * {@link SnapshotStages} compares snapshot transfer formats on one inventory; the heap each
+ * payload retains once built is measured once, outside JMH.
+ *
+ * {@link #runReplay} pushes a field capture through a {@link ReplayHarness} instead, so
+ * captures become regression benchmarks that also cover the hand-off between threads.
+ */
+final class IngestBenchmark {
+
+    static final class Scenario {
+        final String name;
+        final int population;
+        final int reads;
+        final double duplicateRatio;
+        final boolean mixedEpcLengths;
+
+        Scenario(String name, int population, int reads, double duplicateRatio, boolean mixedEpcLengths) {
+            this.name = name;
+            this.population = population;
+            this.reads = reads;
+            this.duplicateRatio = duplicateRatio;
+            this.mixedEpcLengths = mixedEpcLengths;
+        }
+    }
+
+    static final class Result {
+        final String scenario;
+        final String stage;
+        final int operations;
+        final long nanos;
+
+        Result(String scenario, String stage, int operations, long nanos) {
+            this.scenario = scenario;
+            this.stage = stage;
+            this.operations = operations;
+            this.nanos = nanos;
+        }
+
+        double opsPerSecond() {
+            return nanos == 0 ? 0 : operations * 1e9 / nanos;
+        }
+    }
+
+    static final int SNAPSHOT_TAGS = 10000;
+
+    static final Scenario[] SCENARIOS = {
+            new Scenario("high-duplicate", 1000, 200000, 0.95, false),
+            new Scenario("large-unique", 100000, 100000, 0, false),
+            new Scenario("mixed-lengths", 10000, 100000, 0.5, true),
+    };
+
+    /**
+     * Share of duplicate reads in the de-dup population sweep, see {@link DedupStages}.
+     */
+    static final double DEDUP_DUPLICATE_RATIO = 0.8;
+
+    private static final long SEED = 42;
+
+    private static volatile int keep;
+
+    private final RssiFilter.Config filterConfig;
+
+    /**
+     * Sink that keeps the JIT from discarding the replay's payloads.
+     */
+    private volatile long sink;
+
+    IngestBenchmark(RssiFilter.Config filterConfig) {
+        this.filterConfig = filterConfig;
+    }
+
+    static Scenario scenario(String name) {
+        for (Scenario scenario : SCENARIOS) {
+            if (scenario.name.equals(name)) {
+                return scenario;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown scenario: " + name);
+    }
+
+    /**
+     * The de-dup sweep scenario for one unique population. At DEDUP_DUPLICATE_RATIO, five reads
+     * per tag bring in the whole population.
+     */
+    static Scenario dedupScenario(int population) {
+        return new Scenario("dedup-" + population, population, population * 5, DEDUP_DUPLICATE_RATIO, false);
+    }
+
+    static TagRead[] generate(Scenario scenario) {
+        SimulatedReaderDevice.Config config = new SimulatedReaderDevice.Config();
+        config.population = scenario.population;
+        config.duplicateRatio = scenario.duplicateRatio;
+        config.mixedEpcLengths = scenario.mixedEpcLengths;
+        config.seed = SEED;
+
+        return new SimulatedReaderDevice(config).generate(scenario.reads);
+    }
+
+    /**
+     * The event payload of a read, as a map like the one sent to JS.
+     */
+    static Object payload(TagRead read) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("epc", read.epc);
+        map.put("rssi", read.rssi);
+        return map;
+    }
+
+    /**
+     * The hex decoding programTag used before {@link EpcCodec}.
+     */
+    static byte[] legacyDecode(String hex) {
+        int n = hex.length();
+        byte[] out = new byte[n / 2];
+
+        for (int i = 0; i < n; i += 2) {
+            out[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4) + Character.digit(hex.charAt(i + 1), 16));
+        }
+
+        return out;
+    }
+
+    static String legacyEncode(byte[] in) {
+        StringBuilder builder = new StringBuilder(in.length * 2);
+
+        for (byte b : in) {
+            builder.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0x0F, 16)));
+            builder.append(Character.toUpperCase(Character.forDigit(b & 0x0F, 16)));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return an inventory of tags unique tags.
+     */
+    static TagInventory snapshotInventory(int tags) {
+        SimulatedReaderDevice.Config config = new SimulatedReaderDevice.Config();
+        config.population = tags;
+        config.duplicateRatio = 0;
+        config.seed = SEED;
+
+        TagInventory inventory = new TagInventory();
+        long now = System.currentTimeMillis();
+
+        for (TagRead read : new SimulatedReaderDevice(config).generate(tags)) {
+            inventory.add(read.epc, read.tid, read.rssi, now);
+        }
+
+        return inventory;
+    }
+
+    /**
+     * @param format "maps" for an array of maps as getInventory sends, or "packed" for
+     *               {@link TagPacker}.
+     */
+    static Object snapshot(String format, TagInventory inventory) {
+        if ("packed".equals(format)) {
+            return TagPacker.pack(inventory);
+        }
+
+        List<Object> array = new ArrayList<>(inventory.size());
+
+        for (int i = 0; i < inventory.size(); i++) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("epc", inventory.epc(i));
+            map.put("tid", inventory.tid(i));
+            map.put("count", inventory.count(i));
+            map.put("rssiMin", inventory.rssiMin(i));
+            map.put("rssiMax", inventory.rssiMax(i));
+            map.put("rssiAvg", inventory.rssiAvg(i));
+            map.put("firstSeen", (double) inventory.firstSeen(i));
+            map.put("lastSeen", (double) inventory.lastSeen(i));
+            array.add(map);
+        }
+
+        return array;
+    }
+
+    /**
+     * @return bytes the payload of format retains once built.
+     */
+    static long retainedBytes(String format, TagInventory inventory) {
+        long before = usedHeap();
+        Object payload = snapshot(format, inventory);
+        long retained = usedHeap() - before;
+
+        // Keeps the payload reachable until measured.
+        keep = payload.hashCode();
+
+        return retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Replays a {@link ReadCapture} through a {@link ReplayHarness} with the RSSI filter config,
+     * building a payload for each tag handed to its sink and recording reads, new tags and the
+     * latency from push to emit in metrics, which must be fresh. speed is as for
+     * {@link ReadReplay}; at 0 the replay waits for queue space instead of dropping, so it
+     * measures sustained throughput. Paced replays drop like the receiver does.
+     *
+     * @return the time from the first push until the worker has taken every queued read.
+     */
+    Result runReplay(File capture, double speed, IngestMetrics metrics) throws IOException, InterruptedException {
+        ReplayHarness harness = new ReplayHarness(metrics, capture.getAbsoluteFile().getParentFile(), new TagIngest.Sink() {
+            @Override
+            public void onTag(TagRead read) {
+                sink += payload(read).hashCode();
+            }
+
+            @Override
+            public void onTagBatch(List<TagRead> tags) {
+                for (TagRead read : tags) {
+                    sink += payload(read).hashCode();
+                }
+            }
+
+            @Override
+            public void onPackedTagBatch(byte[] packed) {
+                sink += packed.length;
+            }
+
+            @Override
+            public void onSingleRead() {
+            }
+
+            @Override
+            public void onSpillError(IOException err) {
+                throw new IllegalStateException(err);
+            }
+        });
+        harness.ingest().setRssiFilter(new RssiFilter(filterConfig));
+
+        long start = System.nanoTime();
+        ReadReplay.Result replay = harness.run(capture, speed);
+        String stage = speed > 0 ? "replay-" + speed + "x" : "replay-max";
+
+        return new Result(capture.getName(), stage, (int) replay.reads, System.nanoTime() - start);
+    }
+
+    /**
+     * Options: --forks N, --warmup N and --iterations N (JMH iterations of one second),
+     * --include REGEX to select benchmarks, --smoothing none|ewma|window, --threshold dBm, and
+     * --replay FILE with --speed X (repeatable, 0 for max) to replay a capture instead.
+     */
+    public static void main(String[] args) throws Exception {
+        RssiFilter.Config filterConfig = new RssiFilter.Config();
+        filterConfig.filterInventory = true;
+
+        int forks = 2;
+        int warmup = 5;
+        int iterations = 5;
+        String include = "com\\.cipherlab\\.(" + IngestStages.class.getSimpleName() + "|" + DedupStages.class.getSimpleName() + "|"
+                + SnapshotStages.class.getSimpleName() + ")\\.";
+        String smoothing = "none";
+        String replay = null;
+        List<Double> speeds = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+
+            switch (args[i]) {
+                case "--forks":
+                    forks = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--include":
+                    include = value;
+                    break;
+                case "--threshold":
+                    filterConfig.threshold = Double.parseDouble(value);
+                    break;
+                case "--smoothing":
+                    smoothing = value;
+                    filterConfig.smoothing = "ewma".equals(value) ? RssiFilter.SMOOTHING_EWMA
+                            : "window".equals(value) ? RssiFilter.SMOOTHING_WINDOW : RssiFilter.SMOOTHING_NONE;
+                    break;
+                case "--replay":
+                    replay = value;
+                    break;
+                case "--speed":
+                    speeds.add(Double.parseDouble(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+
+            i++;
+        }
+
+        if (replay != null) {
+            if (speeds.isEmpty()) {
+                speeds.add(1.0);
+            }
+
+            IngestBenchmark benchmark = new IngestBenchmark(filterConfig);
+
+            System.out.println(String.format(Locale.US, "%-24s %-14s %10s %12s %10s %10s", "capture", "stage", "reads", "reads/s", "p50 us", "p99 us"));
+
+            for (double speed : speeds) {
+                IngestMetrics metrics = new IngestMetrics();
+                Result result = benchmark.runReplay(new File(replay), speed, metrics);
+
+                System.out.println(String.format(Locale.US, "%-24s %-14s %10d %12.0f %10d %10d", result.scenario, result.stage,
+                        result.operations, result.opsPerSecond(), metrics.latencyPercentileMicros(50), metrics.latencyPercentileMicros(99)));
+            }
+
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .forks(forks)
+                .warmupIterations(warmup)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(iterations)
+                .measurementTime(TimeValue.seconds(1))
+                .param("threshold", String.valueOf(filterConfig.threshold))
+                .param("smoothing", smoothing);
+
+        Collection<RunResult> results = new Runner(options.build()).run();
+
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%-16s %-14s %10s %10s %10s %10s %8s", "scenario", "stage", "ops", "ns/op", "+-99.9%", "stdev", "samples"));
+
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String stage = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            String scenario;
+            int operations;
+
+            if (benchmark.startsWith(SnapshotStages.class.getName())) {
+                scenario = "snapshot-" + SNAPSHOT_TAGS;
+                stage = result.getParams().getParam("format");
+                operations = SNAPSHOT_TAGS;
+            } else if (benchmark.startsWith(DedupStages.class.getName())) {
+                Scenario sweep = dedupScenario(Integer.parseInt(result.getParams().getParam("population")));
+
+                scenario = sweep.name;
+                operations = sweep.reads;
+            } else {
+                scenario = result.getParams().getParam("scenario");
+                operations = scenario(scenario).reads;
+            }
+
+            // Scores are microseconds per pass over all operations.
+            double scale = 1000.0 / operations;
+
+            System.out.println(String.format(Locale.US, "%-16s %-14s %10d %10.1f %10.1f %10.1f %8d", scenario, stage, operations,
+                    result.getPrimaryResult().getScore() * scale, result.getPrimaryResult().getScoreError() * scale,
+                    result.getPrimaryResult().getStatistics().getStandardDeviation() * scale,
+                    result.getPrimaryResult().getStatistics().getN()));
+        }
+
+        if (include.contains(SnapshotStages.class.getSimpleName())) {
+            TagInventory inventory = snapshotInventory(SNAPSHOT_TAGS);
+
+            System.out.println();
+            System.out.println(String.format(Locale.US, "%-16s %-14s %14s", "scenario", "format", "retained"));
+
+            for (String format : new String[]{"maps", "packed"}) {
+                System.out.println(String.format(Locale.US, "%-16s %-14s %14d", "snapshot-" + SNAPSHOT_TAGS, format, retainedBytes(format, inventory)));
+            }
+        }
+    }
+}
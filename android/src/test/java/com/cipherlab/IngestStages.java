@@ -0,0 +1,174 @@
+package com.cipherlab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH stages of the per-read ingest path, see {@link IngestBenchmark}. Every invocation runs
+ * the stage over the whole read stream of the scenario, so the score is the time per pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestStages {
+
+    @Param({"high-duplicate", "large-unique", "mixed-lengths"})
+    public String scenario;
+
+    @Param("-70")
+    public double threshold;
+
+    @Param({"none"})
+    public String smoothing;
+
+    private TagRead[] reads;
+    private byte[][] epcs;
+    private RssiFilter.Config filterConfig;
+
+    @Setup
+    public void setUp() {
+        reads = IngestBenchmark.generate(IngestBenchmark.scenario(scenario));
+        epcs = new byte[reads.length][];
+
+        for (int i = 0; i < reads.length; i++) {
+            epcs[i] = EpcCodec.toBytes(reads[i].epc);
+        }
+
+        filterConfig = new RssiFilter.Config();
+        filterConfig.filterInventory = true;
+        filterConfig.threshold = threshold;
+        filterConfig.smoothing = "ewma".equals(smoothing) ? RssiFilter.SMOOTHING_EWMA
+                : "window".equals(smoothing) ? RssiFilter.SMOOTHING_WINDOW : RssiFilter.SMOOTHING_NONE;
+    }
+
+    /**
+     * Hex EPC decoding with {@link EpcCodec} into a reused buffer.
+     */
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        byte[] buffer = new byte[EpcCodec.MAX_EPC_BYTES];
+
+        for (TagRead read : reads) {
+            blackhole.consume(EpcCodec.decode(read.epc, buffer));
+        }
+
+        blackhole.consume(buffer);
+    }
+
+    /**
+     * The Character.digit loop EpcCodec replaced, one array per read.
+     */
+    @Benchmark
+    public void parseLegacy(Blackhole blackhole) {
+        for (TagRead read : reads) {
+            blackhole.consume(IngestBenchmark.legacyDecode(read.epc));
+        }
+    }
+
+    /**
+     * EPC bytes back to hex with {@link EpcCodec} into a reused buffer, as a String.
+     */
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        char[] buffer = new char[EpcCodec.MAX_EPC_BYTES * 2];
+
+        for (byte[] epc : epcs) {
+            blackhole.consume(EpcCodec.toHex(epc, epc.length, buffer));
+        }
+    }
+
+    /**
+     * Character.forDigit and a StringBuilder per read.
+     */
+    @Benchmark
+    public void encodeLegacy(Blackhole blackhole) {
+        for (byte[] epc : epcs) {
+            blackhole.consume(IngestBenchmark.legacyEncode(epc));
+        }
+    }
+
+    /**
+     * {@link TagInventory#add} on a fresh inventory.
+     */
+    @Benchmark
+    public void dedup(Blackhole blackhole) {
+        TagInventory inventory = new TagInventory();
+
+        for (TagRead read : reads) {
+            blackhole.consume(inventory.add(read.epc, read.tid, read.rssi, read.receivedAt));
+        }
+    }
+
+    /**
+     * {@link RssiFilter#accept} on a fresh filter.
+     */
+    @Benchmark
+    public void filter(Blackhole blackhole) {
+        RssiFilter filter = new RssiFilter(filterConfig);
+
+        for (TagRead read : reads) {
+            blackhole.consume(filter.accept(read));
+        }
+    }
+
+    @Benchmark
+    public void payload(Blackhole blackhole) {
+        for (TagRead read : reads) {
+            blackhole.consume(IngestBenchmark.payload(read));
+        }
+    }
+
+    /**
+     * Filter, de-dup and a payload for each new tag, as the pipeline worker does it.
+     */
+    @Benchmark
+    public void ingest(Blackhole blackhole) {
+        RssiFilter filter = new RssiFilter(filterConfig);
+        TagInventory inventory = new TagInventory();
+
+        for (TagRead read : reads) {
+            if (filter.accept(read) && inventory.add(read.epc, read.tid, read.rssi, read.receivedAt)) {
+                blackhole.consume(IngestBenchmark.payload(read));
+            }
+        }
+    }
+
+    @Benchmark
+    public void fanout1(Blackhole blackhole) {
+        fanout(1, blackhole);
+    }
+
+    @Benchmark
+    public void fanout4(Blackhole blackhole) {
+        fanout(4, blackhole);
+    }
+
+    @Benchmark
+    public void fanout8(Blackhole blackhole) {
+        fanout(8, blackhole);
+    }
+
+    /**
+     * {@link InventoryRegistry#onRead} with the given number of active named inventories.
+     */
+    private void fanout(int inventories, Blackhole blackhole) {
+        InventoryRegistry registry = new InventoryRegistry();
+
+        for (int i = 0; i < inventories; i++) {
+            registry.create("inventory-" + i);
+        }
+
+        for (TagRead read : reads) {
+            blackhole.consume(registry.onRead(read, read.receivedAt));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cipherlab;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InventoryJournalTest {
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = File.createTempFile("journal", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void deleteDir() {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        dir.delete();
+    }
+
+    private static void read(InventoryJournal journal, TagInventory inventory, String epc, String tid, double rssi, long at) {
+        synchronized (inventory) {
+            journal.onRead(inventory.put(epc, tid, rssi, at));
+        }
+    }
+
+    private File fileOf(InventoryJournal journal) {
+        return new File(dir, journal.id() + ".journal");
+    }
+
+    private static void assertSameInventory(TagInventory expected, TagInventory actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.epc(i), actual.epc(i));
+            assertEquals(expected.tid(i), actual.tid(i));
+            assertEquals(expected.count(i), actual.count(i));
+            assertEquals(expected.rssiMin(i), actual.rssiMin(i), 0);
+            assertEquals(expected.rssiMax(i), actual.rssiMax(i), 0);
+            assertEquals(expected.rssiSum(i), actual.rssiSum(i), 0);
+            assertEquals(expected.firstSeen(i), actual.firstSeen(i));
+            assertEquals(expected.lastSeen(i), actual.lastSeen(i));
+        }
+    }
+
+    @Test
+    public void tornTailRecordIsTruncatedOnResume() throws Exception {
+        TagInventory inventory = new TagInventory();
+        InventoryJournal journal = InventoryJournal.create(dir, inventory);
+        File file = fileOf(journal);
+
+        read(journal, inventory, "3034AA", "E200", -50.5, 100);
+        read(journal, inventory, "3034AB", null, -60, 200);
+        journal.flush(false);
+        long intact = file.length();
+
+        read(journal, inventory, "3034AC", "E201", -40, 300);
+        journal.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(intact + (raf.length() - intact) / 2);
+        raf.close();
+
+        TagInventory resumed = new TagInventory();
+        InventoryJournal.resume(dir, journal.id(), resumed).close();
+
+        assertEquals(2, resumed.size());
+        assertEquals("3034AB", resumed.epc(1));
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    public void resumeStopsAtACrcMismatch() throws Exception {
+        TagInventory inventory = new TagInventory();
+        InventoryJournal journal = InventoryJournal.create(dir, inventory);
+        File file = fileOf(journal);
+
+        read(journal, inventory, "3034AA", null, -50, 100);
+        journal.flush(false);
+        long first = file.length();
+
+        read(journal, inventory, "3034AB", null, -50, 200);
+        read(journal, inventory, "3034AC", null, -50, 300);
+        journal.close();
+
+        // A byte of the second record's EPC.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(first + 6);
+        int value = raf.read();
+        raf.seek(first + 6);
+        raf.write(value ^ 0x01);
+        raf.close();
+
+        TagInventory resumed = new TagInventory();
+        InventoryJournal.resume(dir, journal.id(), resumed).close();
+
+        assertEquals(1, resumed.size());
+        assertEquals("3034AA", resumed.epc(0));
+        assertEquals(first, file.length());
+    }
+
+    @Test
+    public void compactionKeepsEveryAggregate() throws Exception {
+        TagInventory inventory = new TagInventory();
+        InventoryJournal journal = InventoryJournal.create(dir, inventory);
+        File file = fileOf(journal);
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                String tid = round >= 2 ? "E2" + i : null;
+                read(journal, inventory, Integer.toHexString(0x3000 + i), tid, -80 + round * 10 + i % 7, round * 1000 + i);
+            }
+
+            journal.flush(true);
+        }
+
+        journal.close();
+        long uncompacted = file.length();
+
+        TagInventory resumed = new TagInventory();
+        InventoryJournal.resume(dir, journal.id(), resumed).close();
+
+        assertTrue(file.length() < uncompacted);
+        assertSameInventory(inventory, resumed);
+
+        TagInventory again = new TagInventory();
+        InventoryJournal.resume(dir, journal.id(), again).close();
+
+        assertSameInventory(inventory, again);
+    }
+
+    @Test
+    public void oversizedRecordsStillFit() throws Exception {
+        StringBuilder epc = new StringBuilder();
+        StringBuilder tid = new StringBuilder();
+
+        for (int i = 0; i < 0xFFFE; i++) {
+            epc.append('A');
+            tid.append('B');
+        }
+
+        TagInventory inventory = new TagInventory();
+        InventoryJournal journal = InventoryJournal.create(dir, inventory);
+
+        read(journal, inventory, "3034AA", null, -50, 100);
+        read(journal, inventory, epc.toString(), tid.toString(), -50, 200);
+        read(journal, inventory, epc.toString(), tid.toString(), -40, 300);
+        read(journal, inventory, "3034AB", null, -50, 400);
+        journal.close();
+
+        TagInventory resumed = new TagInventory();
+        InventoryJournal.resume(dir, journal.id(), resumed).close();
+
+        assertEquals(3, resumed.size());
+        assertTrue(epc.toString().startsWith(resumed.epc(1)));
+        assertNull(resumed.tid(1));
+        assertEquals(2, resumed.count(1));
+        assertEquals("3034AB", resumed.epc(2));
+        assertNull(resumed.tid(2));
+    }
+
+    @Test
+    public void hundredThousandTagsResumeWellUnderASecond() throws Exception {
+        TagInventory inventory = new TagInventory();
+        InventoryJournal journal = InventoryJournal.create(dir, inventory);
+
+        for (int i = 0; i < 100000; i++) {
+            read(journal, inventory, String.format("E28011%018X", i), "E280" + i, -50, i);
+        }
+
+        journal.close();
+
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < 3; i++) {
+            TagInventory resumed = new TagInventory();
+            long start = System.nanoTime();
+            InventoryJournal resumedJournal = InventoryJournal.resume(dir, journal.id(), resumed);
+            best = Math.min(best, System.nanoTime() - start);
+            resumedJournal.close();
+
+            assertEquals(100000, resumed.size());
+        }
+
+        assertTrue("resume took " + best / 1000000 + " ms", best < 1000000000L);
+    }
+}
@@ -0,0 +1,54 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InventoryProfileTest {
+
+    private static InventoryProfile withQ(InventoryProfile base, boolean dynamic, int start, int min, int max) {
+        return new InventoryProfile("reader", base.session, base.target, base.slFlag, base.workMode, base.epcOnly,
+                base.powerMode, base.rfLink, -1, dynamic, start, min, max);
+    }
+
+    @Test
+    public void everySettingDiffersFromNothing() {
+        assertEquals(Arrays.asList(InventoryProfile.GEN2, InventoryProfile.WORK_MODE, InventoryProfile.RFID_MODE,
+                InventoryProfile.POWER_MODE, InventoryProfile.RF_LINK, InventoryProfile.Q_VALUE),
+                InventoryProfile.DEFAULT.diff(null));
+    }
+
+    @Test
+    public void qIsPartOfTheDiffAndHash() {
+        InventoryProfile base = InventoryProfile.DEFAULT;
+        InventoryProfile otherQ = withQ(base, true, 5, 0, 15);
+
+        assertEquals(Collections.singletonList(InventoryProfile.Q_VALUE), base.diff(otherQ));
+        assertNotEquals(base.settingsHash(), otherQ.settingsHash());
+        assertTrue(base.diff(withQ(base, true, 4, 0, 15)).isEmpty());
+        assertEquals(base.settingsHash(), withQ(base, true, 4, 0, 15).settingsHash());
+    }
+
+    @Test
+    public void fixedQIgnoresMinAndMax() {
+        InventoryProfile single = InventoryProfile.SINGLE_ITEM;
+        InventoryProfile readBack = withQ(single, false, 0, 0, 15);
+
+        assertTrue(single.diff(readBack).isEmpty());
+        assertEquals(single.settingsHash(), readBack.settingsHash());
+        assertEquals(Collections.singletonList(InventoryProfile.Q_VALUE), single.diff(withQ(single, true, 0, 0, 15)));
+    }
+
+    @Test
+    public void profilesTuneQ() {
+        assertTrue(InventoryProfile.DENSE_WAREHOUSE.qStart > InventoryProfile.DEFAULT.qStart);
+        assertTrue(InventoryProfile.FAST_SPARSE.qMax < InventoryProfile.DEFAULT.qMax);
+        assertTrue(InventoryProfile.DEFAULT.diff(InventoryProfile.DENSE_WAREHOUSE).contains(InventoryProfile.Q_VALUE));
+        assertTrue(InventoryProfile.DEFAULT.diff(InventoryProfile.EPC_ONLY).equals(Collections.singletonList(InventoryProfile.RFID_MODE)));
+    }
+}
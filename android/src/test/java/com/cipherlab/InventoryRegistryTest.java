@@ -0,0 +1,159 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InventoryRegistryTest {
+
+    private static TagRead read(String epc) {
+        return new TagRead(1, 0, -50, "3000", epc, null, null, 0);
+    }
+
+    @Test
+    public void readsGoToActiveInventoriesOnly() {
+        InventoryRegistry registry = new InventoryRegistry();
+
+        assertNotNull(registry.create("a"));
+        assertNotNull(registry.create("b"));
+        assertNull(registry.create("a"));
+
+        assertEquals(2, registry.onRead(read("01"), 1));
+        assertTrue(registry.setActive("b", false));
+        assertEquals(1, registry.onRead(read("02"), 2));
+        assertEquals(0, registry.onRead(read("01"), 3));
+
+        assertEquals(2, registry.get("a").inventory.size());
+        assertEquals(1, registry.get("b").inventory.size());
+        assertFalse(registry.get("b").isActive());
+
+        assertTrue(registry.remove("a"));
+        assertFalse(registry.remove("a"));
+        assertFalse(registry.setActive("a", true));
+        assertEquals(0, registry.onRead(read("03"), 4));
+        assertEquals(1, registry.list().size());
+    }
+
+    @Test
+    public void concurrentReadersLoseNoReads() throws Exception {
+        final InventoryRegistry registry = new InventoryRegistry();
+        final int threads = 4;
+        final int tagsPerThread = 20000;
+
+        registry.create("a");
+        registry.create("b");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * tagsPerThread;
+
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int i = 0; i < tagsPerThread; i++) {
+                            // Each tag twice, so duplicates race as well as new tags.
+                            registry.onRead(read(Integer.toHexString(0x100000 + offset + i)), i);
+                            registry.onRead(read(Integer.toHexString(0x100000 + offset + i)), i);
+                        }
+                    } catch (Throwable err) {
+                        failure.set(err);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        start.countDown();
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+
+        for (String name : new String[]{"a", "b"}) {
+            TagInventory inventory = registry.get(name).inventory;
+
+            synchronized (inventory) {
+                assertEquals(threads * tagsPerThread, inventory.size());
+
+                for (int i = 0; i < inventory.size(); i++) {
+                    assertEquals(2, inventory.count(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readersKeepRunningWhileInventoriesChange() throws Exception {
+        final InventoryRegistry registry = new InventoryRegistry();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch reading = new CountDownLatch(1);
+
+        registry.create("stable");
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int i = 0;
+
+                    while (running.get() || i < 0x10000) {
+                        registry.onRead(read(Integer.toHexString(i++ & 0xFFFF)), i);
+                        reading.countDown();
+                    }
+                } catch (Throwable err) {
+                    failure.set(err);
+                }
+            }
+        });
+        reader.start();
+
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 2000; i++) {
+            String name = "zone-" + (i % 8);
+
+            if (registry.get(name) == null) {
+                registry.create(name);
+            } else if (i % 3 == 0) {
+                registry.setActive(name, !registry.get(name).isActive());
+            } else {
+                registry.remove(name);
+            }
+
+            // A snapshot under the inventory lock, as getInventory does it.
+            TagInventory stable = registry.get("stable").inventory;
+
+            synchronized (stable) {
+                stable.copy();
+            }
+        }
+
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertTrue(registry.get("stable").isActive());
+        assertEquals(0x10000, registry.get("stable").inventory.size());
+    }
+}
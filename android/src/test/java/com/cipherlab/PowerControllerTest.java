@@ -0,0 +1,171 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PowerControllerTest {
+
+    private static final long MS = 1000000L;
+    private static final int DUTY_PERIOD_MS = 1000;
+
+    private static final class Uniques implements ReaderDevice.Listener {
+        final Set<String> epcs = new HashSet<>();
+        volatile boolean overTemperature;
+
+        synchronized long count() {
+            return epcs.size();
+        }
+
+        @Override
+        public void onRfidConnected() {
+        }
+
+        @Override
+        public void onBarcodeConnected() {
+        }
+
+        @Override
+        public void onAttached() {
+        }
+
+        @Override
+        public void onDetached() {
+        }
+
+        @Override
+        public void onPower(boolean acPower, boolean connected) {
+        }
+
+        @Override
+        public void onDeviceEvent(int event) {
+            if (event == ReaderDevice.EVENT_OVER_TEMPERATURE) {
+                overTemperature = true;
+            }
+        }
+
+        @Override
+        public synchronized void onTagRead(TagRead read) {
+            epcs.add(read.epc);
+        }
+
+        @Override
+        public void onBarcode(BarcodeRead read) {
+        }
+    }
+
+    @Test
+    public void keepsTheSimulatedModuleBelowItsProtectTemperature() throws Exception {
+        SimulatedReaderDevice.Config simulation = new SimulatedReaderDevice.Config();
+        simulation.population = 100000;
+        simulation.readsPerSecond = 20000;
+        simulation.duplicateRatio = 0;
+        simulation.heatPerSecond = 200;
+        simulation.coolingPerSecond = 1;
+        SimulatedReaderDevice device = new SimulatedReaderDevice(simulation);
+        Uniques uniques = new Uniques();
+
+        device.open(uniques);
+
+        PowerController.Config config = new PowerController.Config();
+        config.idleTicks = 1000;
+        PowerController controller = new PowerController(config, device.getTxPower(), 100);
+        double hottest = 0;
+
+        try {
+            for (int i = 0; i < 150; i++) {
+                Thread.sleep(20);
+
+                int txPower = controller.txPower();
+                int duty = controller.dutyPercent();
+
+                if (uniques.overTemperature) {
+                    uniques.overTemperature = false;
+                    controller.onOverTemperature();
+                }
+
+                controller.tick(System.nanoTime(), uniques.count(), device.getModuleTemperature(),
+                        device.getProtectTemperature(), device.getBatteryLevel());
+
+                if (controller.txPower() != txPower) {
+                    device.setTxPower(controller.txPower());
+                }
+
+                if (controller.dutyPercent() != duty) {
+                    int inventoryMs = DUTY_PERIOD_MS * controller.dutyPercent() / 100;
+                    device.setDutyCycle(inventoryMs, DUTY_PERIOD_MS - inventoryMs);
+                }
+
+                hottest = Math.max(hottest, device.getModuleTemperature());
+            }
+        } finally {
+            device.close();
+        }
+
+        assertTrue("hottest " + hottest, hottest < simulation.protectC);
+        assertTrue(controller.dutyPercent() < config.maxDutyPercent);
+        assertTrue(controller.decisions().get(PowerController.THERMAL_LIMIT) > 0);
+        assertEquals(controller.txPower(), device.getTxPower());
+        assertEquals(DUTY_PERIOD_MS * controller.dutyPercent() / 100, device.getDutyCycle()[0]);
+        assertTrue(uniques.count() > 0);
+    }
+
+    @Test
+    public void rejectedSettingsAreRolledBack() {
+        PowerController controller = new PowerController(new PowerController.Config(), 30, 100);
+
+        controller.tick(0, 0, 40, 70, 100);
+        assertEquals(PowerController.THERMAL_CUT, controller.tick(1000 * MS, 10, 69, 70, 100));
+        assertEquals(27, controller.txPower());
+        assertEquals(50, controller.dutyPercent());
+
+        controller.rejected(true, false);
+
+        assertEquals(30, controller.txPower());
+        assertEquals(50, controller.dutyPercent());
+        assertEquals(PowerController.THERMAL_CUT, controller.decision());
+        assertEquals(1L, (long) controller.decisions().get(PowerController.THERMAL_CUT));
+
+        assertEquals(PowerController.THERMAL_CUT, controller.tick(2000 * MS, 20, 69, 70, 100));
+        controller.rejected(true, true);
+
+        assertEquals(30, controller.txPower());
+        assertEquals(50, controller.dutyPercent());
+        assertEquals(1L, (long) controller.decisions().get(PowerController.THERMAL_CUT));
+    }
+
+    @Test
+    public void rejectedPowerStepIsRetried() {
+        PowerController.Config config = new PowerController.Config();
+        config.probeTicks = 1;
+        PowerController controller = new PowerController(config, 20, 100);
+
+        controller.tick(0, 0, Double.NaN, Double.NaN, -1);
+        assertEquals(PowerController.POWER_UP, controller.tick(1000 * MS, 10, Double.NaN, Double.NaN, -1));
+
+        controller.rejected(true, false);
+
+        assertEquals(20, controller.txPower());
+        assertEquals(PowerController.HOLD, controller.decision());
+        assertEquals(0L, (long) controller.decisions().get(PowerController.POWER_UP));
+
+        assertEquals(PowerController.POWER_UP, controller.tick(2000 * MS, 20, Double.NaN, Double.NaN, -1));
+        assertEquals(21, controller.txPower());
+    }
+
+    @Test
+    public void simulatorReportsTheDutyCycleItRuns() {
+        SimulatedReaderDevice device = new SimulatedReaderDevice(new SimulatedReaderDevice.Config());
+
+        assertArrayEquals(new int[]{1000, 0}, device.getDutyCycle());
+
+        device.setDutyCycle(300, 700);
+
+        assertArrayEquals(new int[]{300, 700}, device.getDutyCycle());
+    }
+}
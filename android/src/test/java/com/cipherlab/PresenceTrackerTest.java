@@ -0,0 +1,97 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PresenceTrackerTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void arrivesOnFirstReadAndDepartsAfterTimeout() {
+        PresenceTracker tracker = new PresenceTracker(1000, 100, 0);
+
+        tracker.onRead("01", 0);
+        tracker.onRead("02", 0);
+        tracker.onRead("01", 50 * MS);
+
+        assertEquals(Arrays.asList("01", "02"), tracker.takeArrived());
+        assertEquals(Collections.<String>emptyList(), tracker.takeArrived());
+
+        // 01 is kept alive by reads, 02 is not.
+        tracker.onRead("01", 900 * MS);
+
+        assertEquals(Collections.<String>emptyList(), tracker.advance(999 * MS));
+        assertEquals(Collections.singletonList("02"), tracker.advance(1100 * MS));
+        assertEquals(Collections.singletonList("01"), tracker.advance(2000 * MS));
+        assertEquals(0, tracker.presentCount());
+
+        tracker.onRead("02", 2100 * MS);
+
+        assertEquals(Collections.singletonList("02"), tracker.takeArrived());
+    }
+
+    @Test
+    public void continuousPortalHoldsOnlyTheTagsInTheField() {
+        PresenceTracker tracker = new PresenceTracker(1000, 100, 0);
+        Set<String> departed = new HashSet<>();
+        int tags = 200000;
+        int maxTracked = 0;
+
+        // Ten new tags per 10 ms, each read for 500 ms, then gone for good.
+        for (long ms = 0; ms < tags; ms += 10) {
+            for (int i = 0; i < 10; i++) {
+                tracker.onRead(Integer.toHexString(0x100000 + (int) ms + i), ms * MS);
+            }
+
+            for (long back = 10; back <= 500 && back <= ms; back += 10) {
+                tracker.onRead(Integer.toHexString(0x100000 + (int) (ms - back)), ms * MS);
+            }
+
+            departed.addAll(tracker.advance(ms * MS));
+            maxTracked = Math.max(maxTracked, tracker.trackedCount());
+        }
+
+        departed.addAll(tracker.advance((tags + 2000) * MS));
+
+        assertEquals(tags, tracker.takeArrived().size());
+        assertEquals(tags, departed.size());
+        assertEquals(0, tracker.presentCount());
+        assertTrue("tracked " + maxTracked, maxTracked < 20000);
+    }
+
+    @Test
+    public void presentTagsSurviveCompaction() {
+        PresenceTracker tracker = new PresenceTracker(1000, 100, 0);
+
+        for (int i = 0; i < 10000; i++) {
+            tracker.onRead(Integer.toHexString(0x10000 + i), 0);
+        }
+
+        tracker.onRead("STAY", 0);
+
+        for (long ms = 100; ms <= 1500; ms += 100) {
+            tracker.onRead("STAY", ms * MS);
+            tracker.advance(ms * MS);
+        }
+
+        assertEquals(1, tracker.trackedCount());
+        assertEquals(Collections.singletonList("STAY"), tracker.present());
+
+        tracker.onRead("01", 1600 * MS);
+
+        assertEquals(2, tracker.presentCount());
+
+        List<String> departed = tracker.advance(3000 * MS);
+
+        assertEquals(new HashSet<>(Arrays.asList("STAY", "01")), new HashSet<>(departed));
+    }
+}
@@ -0,0 +1,161 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ReplayHarnessTest {
+
+    private static final class Recorder implements TagIngest.Sink {
+        final List<String> tags = Collections.synchronizedList(new ArrayList<String>());
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void onTag(TagRead read) {
+            tags.add(read.epc);
+        }
+
+        @Override
+        public void onTagBatch(List<TagRead> batch) {
+            batches.add(batch.size());
+
+            for (TagRead read : batch) {
+                tags.add(read.epc);
+            }
+        }
+
+        @Override
+        public void onPackedTagBatch(byte[] packed) {
+            batches.add(-1);
+        }
+
+        @Override
+        public void onSingleRead() {
+        }
+
+        @Override
+        public void onSpillError(IOException err) {
+            throw new AssertionError(err);
+        }
+    }
+
+    private static File capture(TagRead... reads) throws Exception {
+        File file = File.createTempFile("replay", ReadCapture.SUFFIX);
+        file.deleteOnExit();
+
+        ReadCapture capture = new ReadCapture(file);
+
+        for (TagRead read : reads) {
+            capture.write(read);
+        }
+
+        capture.close();
+
+        return file;
+    }
+
+    private static TagRead read(String epc, double rssi) {
+        return new TagRead(1, 0, rssi, "3000", epc, null, null, System.nanoTime());
+    }
+
+    private static File workDir() throws IOException {
+        File dir = File.createTempFile("replay", "");
+        dir.delete();
+        dir.deleteOnExit();
+
+        return dir;
+    }
+
+    @Test
+    public void dedupsFiltersAndSkipsWriteResponses() throws Exception {
+        File file = capture(
+                read("3034AA", -50),
+                new TagRead(5, TagWriter.RESPONSE_SUCCESS, 0, null, null, null, null, System.nanoTime()),
+                read("3034AA", -50),
+                read("3034AB", -80),
+                read("E28011", -50),
+                read("3034AC", -40));
+
+        RssiFilter.Config filterConfig = new RssiFilter.Config();
+        filterConfig.filterInventory = true;
+        Recorder sink = new Recorder();
+
+        ReplayHarness harness = new ReplayHarness(new IngestMetrics(), workDir(), sink);
+        harness.ingest().setTagFilter(new EpcFilterIndex(Collections.singletonList("3034"), Collections.<String>emptyList()));
+        harness.ingest().setRssiFilter(new RssiFilter(filterConfig));
+
+        ReadReplay.Result result = harness.run(file, 0);
+
+        assertEquals(6, result.reads);
+        assertEquals(1, harness.filtered());
+        assertEquals(4, harness.metrics().reads());
+        assertEquals(2, harness.metrics().uniques());
+        assertEquals(2, harness.metrics().latencyCount());
+        assertEquals(Arrays.asList("3034AA", "3034AC"), sink.tags);
+        assertEquals(2, harness.inventory().size());
+        assertEquals(2, harness.inventory().count(0));
+    }
+
+    @Test
+    public void maxSpeedReplayDropsNothing() throws Exception {
+        TagRead[] reads = new TagRead[3 * TagPipeline.DEFAULT_CAPACITY];
+
+        for (int i = 0; i < reads.length; i++) {
+            reads[i] = read(Integer.toHexString(0x10000 + i % 5000), -50);
+        }
+
+        ReplayHarness harness = new ReplayHarness(new IngestMetrics(), workDir(), null);
+        harness.run(capture(reads), 0);
+
+        assertEquals(0, harness.pipeline().drops());
+        assertEquals(reads.length, harness.metrics().reads());
+        assertEquals(5000, harness.metrics().uniques());
+    }
+
+    @Test
+    public void mirrorsTheLiveModes() throws Exception {
+        TagRead[] reads = new TagRead[500];
+
+        for (int i = 0; i < reads.length; i++) {
+            reads[i] = read(Integer.toHexString(0x10000 + i % 50), -50);
+        }
+
+        TagInventory liveInventory = new TagInventory();
+        TagIngest live = new TagIngest(liveInventory, new InventoryRegistry(), new IngestMetrics(), null, new Recorder());
+        live.setBatching(true, 10000, 20);
+        live.inventories().create("zone");
+        live.inventories().create("idle");
+        live.inventories().setActive("idle", false);
+
+        BoundedEpcSet.Config bounded = new BoundedEpcSet.Config();
+        bounded.maxMemoryBytes = 64 << 10;
+        File dir = workDir();
+
+        synchronized (liveInventory) {
+            live.setBoundedTags(new BoundedEpcSet(bounded, new File(dir, "live.bin")));
+        }
+
+        Recorder sink = new Recorder();
+        ReplayHarness harness = new ReplayHarness(new IngestMetrics(), dir, sink);
+        harness.mirror(live);
+        harness.run(capture(reads), 0);
+
+        // Bounded mode keeps no aggregates; the rest is batched by size, then flushed.
+        assertEquals(0, harness.inventory().size());
+        assertEquals(50, sink.tags.size());
+        assertEquals(Arrays.asList(20, 20, 10), sink.batches);
+        assertEquals(50, harness.metrics().latencyCount());
+        assertEquals(50, harness.ingest().inventories().get("zone").inventory.size());
+        assertNull(harness.ingest().inventories().get("idle"));
+        assertFalse(new File(dir, "spill.bin.0").exists());
+    }
+}
@@ -0,0 +1,137 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RssiFilterTest {
+
+    private static final long MS = 1000000L;
+
+    private static TagRead read(String epc, double rssi, long atMs) {
+        return new TagRead(1, 0, rssi, "3000", epc, null, null, atMs * MS);
+    }
+
+    @Test
+    public void inventoryPassesEverythingUnlessFiltering() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        RssiFilter filter = new RssiFilter(config);
+
+        assertTrue(filter.accept(read("01", -90, 0)));
+
+        config.filterInventory = true;
+
+        assertFalse(filter.accept(read("01", -90, 1)));
+        assertFalse(filter.accept(read("01", -70, 2)));
+        assertTrue(filter.accept(read("01", -69.9, 3)));
+    }
+
+    @Test
+    public void firstSelectsTheFirstReadAboveThresholdOnce() {
+        RssiFilter filter = new RssiFilter(new RssiFilter.Config());
+        TagRead strong = read("02", -50, 1);
+
+        assertNull(filter.offer(read("01", -80, 0)));
+        assertSame(strong, filter.offer(strong));
+        assertNull(filter.offer(read("03", -40, 2)));
+
+        filter.reset();
+
+        TagRead next = read("03", -40, 3);
+        assertSame(next, filter.offer(next));
+    }
+
+    @Test
+    public void ewmaDampsASingleSpike() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        config.smoothing = RssiFilter.SMOOTHING_EWMA;
+        config.alpha = 0.25;
+        RssiFilter filter = new RssiFilter(config);
+
+        assertNull(filter.offer(read("01", -90, 0)));
+        // -90 + 0.25 * (-30 + 90) = -75
+        assertNull(filter.offer(read("01", -30, 1)));
+        // -75 + 0.25 * (-30 + 75) = -63.75
+        TagRead third = read("01", -30, 2);
+        assertSame(third, filter.offer(third));
+    }
+
+    @Test
+    public void windowAveragesTheLastReads() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        config.smoothing = RssiFilter.SMOOTHING_WINDOW;
+        config.windowReads = 3;
+        config.filterInventory = true;
+        config.threshold = -60;
+        RssiFilter filter = new RssiFilter(config);
+
+        assertFalse(filter.accept(read("01", -90, 0)));
+        assertFalse(filter.accept(read("01", -45, 1)));
+        // (-90 - 45 - 45) / 3 = -60
+        assertFalse(filter.accept(read("01", -45, 2)));
+        // -90 drops out: -45
+        assertTrue(filter.accept(read("01", -45, 3)));
+        // other EPCs keep their own window
+        assertFalse(filter.accept(read("02", -61, 4)));
+    }
+
+    @Test
+    public void strongestPicksTheStrongestTagInTheWindow() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        config.select = RssiFilter.SELECT_STRONGEST;
+        config.selectWindowMs = 100;
+        RssiFilter filter = new RssiFilter(config);
+
+        assertNull(filter.offer(read("01", -60, 0)));
+        assertTrue(filter.isCollecting());
+        TagRead strongest = read("02", -40, 50);
+        assertNull(filter.offer(strongest));
+        assertNull(filter.offer(read("03", -50, 99)));
+
+        // a read after the window closes it; the late tag is not a candidate
+        assertSame(strongest, filter.offer(read("04", -20, 100)));
+        assertFalse(filter.isCollecting());
+        assertNull(filter.offer(read("04", -20, 101)));
+    }
+
+    @Test
+    public void strongestRequiresMinReads() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        config.select = RssiFilter.SELECT_STRONGEST;
+        config.selectWindowMs = 100;
+        config.minReads = 2;
+        RssiFilter filter = new RssiFilter(config);
+
+        filter.offer(read("01", -30, 0));
+        filter.offer(read("02", -50, 10));
+        TagRead second = read("02", -50, 20);
+        filter.offer(second);
+
+        assertNull(filter.poll(99 * MS));
+        assertSame(second, filter.poll(100 * MS));
+    }
+
+    @Test
+    public void emptyWindowSelectsNothingAndReopens() {
+        RssiFilter.Config config = new RssiFilter.Config();
+        config.select = RssiFilter.SELECT_STRONGEST;
+        config.selectWindowMs = 100;
+        config.minReads = 3;
+        RssiFilter filter = new RssiFilter(config);
+
+        filter.offer(read("01", -30, 0));
+
+        assertNull(filter.poll(200 * MS));
+        assertFalse(filter.isCollecting());
+
+        filter.offer(read("01", -30, 300));
+        filter.offer(read("01", -30, 310));
+
+        assertTrue(filter.isCollecting());
+        assertEquals("01", filter.poll(400 * MS).epc);
+    }
+}
@@ -0,0 +1,37 @@
+package com.cipherlab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH timing of the snapshot transfer formats on one inventory of
+ * {@link IngestBenchmark#SNAPSHOT_TAGS} unique tags, see {@link IngestBenchmark#snapshot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotStages {
+
+    @Param({"maps", "packed"})
+    public String format;
+
+    private TagInventory inventory;
+
+    @Setup
+    public void setUp() {
+        inventory = IngestBenchmark.snapshotInventory(IngestBenchmark.SNAPSHOT_TAGS);
+    }
+
+    @Benchmark
+    public Object snapshot() {
+        return IngestBenchmark.snapshot(format, inventory);
+    }
+}
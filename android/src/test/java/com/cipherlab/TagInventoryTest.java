@@ -0,0 +1,64 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TagInventoryTest {
+
+    @Test
+    public void aggregatesRepeatedReads() {
+        TagInventory inventory = new TagInventory();
+
+        assertTrue(inventory.add("3034AA", null, -60, 100));
+        assertFalse(inventory.add("3034AA", "E280", -40, 200));
+        assertFalse(inventory.add("3034AA", "E281", -50, 300));
+
+        assertEquals(1, inventory.size());
+        assertEquals(3, inventory.count(0));
+        assertEquals("E280", inventory.tid(0));
+        assertEquals(-60, inventory.rssiMin(0), 0);
+        assertEquals(-40, inventory.rssiMax(0), 0);
+        assertEquals(-50, inventory.rssiAvg(0), 1e-9);
+        assertEquals(100, inventory.firstSeen(0));
+        assertEquals(300, inventory.lastSeen(0));
+    }
+
+    @Test
+    public void copyIsDetachedFromLaterReads() {
+        TagInventory inventory = new TagInventory();
+
+        for (int i = 0; i < 1000; i++) {
+            inventory.add(Integer.toHexString(0x1000 + i), null, -50, i);
+        }
+
+        TagInventory copy = inventory.copy();
+
+        inventory.add("1000", null, -30, 5000);
+        inventory.add("FFFFFF", null, -30, 5000);
+        inventory.clear();
+
+        assertEquals(1000, copy.size());
+        assertEquals("1000", copy.epc(0));
+        assertEquals(1, copy.count(0));
+        assertEquals(-50, copy.rssiMax(0), 0);
+        assertEquals("13E7", copy.epc(999).toUpperCase());
+    }
+
+    @Test
+    public void clearResetsSize() {
+        TagInventory inventory = new TagInventory();
+
+        inventory.add("01", null, -50, 1);
+        inventory.add("not hex", null, -50, 1);
+        inventory.clear();
+
+        assertEquals(0, inventory.size());
+        assertEquals(0, inventory.copy().size());
+        assertTrue(inventory.add("not hex", null, -50, 2));
+        assertNull(inventory.tid(0));
+    }
+}
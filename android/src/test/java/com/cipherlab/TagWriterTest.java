@@ -0,0 +1,129 @@
+package com.cipherlab;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagWriterTest {
+
+    private static final class Collector implements TagWriter.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile List<TagWriter.Result> results;
+
+        @Override
+        public void onComplete(List<TagWriter.Result> results) {
+            this.results = results;
+            done.countDown();
+        }
+
+        List<TagWriter.Result> await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            return results;
+        }
+    }
+
+    @Test
+    public void invalidEpcsNeverReachTheReader() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        final TagWriter[] writer = new TagWriter[1];
+
+        writer[0] = new TagWriter(new TagWriter.Device() {
+            @Override
+            public int write(byte[] oldEpc, byte[] newEpc) {
+                writes.incrementAndGet();
+                writer[0].onWriteResponse(TagWriter.RESPONSE_FINISH);
+
+                return TagWriter.RESPONSE_SUCCESS;
+            }
+        });
+
+        Collector collector = new Collector();
+        writer[0].submit(Arrays.asList(
+                new TagWriter.Request("3034AB", "3034AC"),
+                new TagWriter.Request("3034A", "3034AC"),
+                new TagWriter.Request("3034AB", null)), new TagWriter.Options(), collector);
+
+        List<TagWriter.Result> results = collector.await();
+
+        assertEquals(1, writes.get());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(TagWriter.RESPONSE_INVALID_EPC, results.get(1).response);
+        assertEquals(TagWriter.RESPONSE_INVALID_EPC, results.get(2).response);
+        assertEquals(0, results.get(2).attempts);
+
+        writer[0].shutdown();
+    }
+
+    @Test
+    public void shutdownCompletesQueuedBatchesAndRestarts() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        TagWriter writer = new TagWriter(new TagWriter.Device() {
+            @Override
+            public int write(byte[] oldEpc, byte[] newEpc) {
+                writing.countDown();
+
+                return TagWriter.RESPONSE_SUCCESS;
+            }
+        });
+
+        TagWriter.Options options = new TagWriter.Options();
+        options.timeoutMs = 60000;
+
+        Collector inFlight = new Collector();
+        Collector queued = new Collector();
+        writer.submit(Arrays.asList(new TagWriter.Request("01", "02"), new TagWriter.Request("03", "04")), options, inFlight);
+        writer.submit(Collections.singletonList(new TagWriter.Request("05", "06")), options, queued);
+
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        writer.shutdown();
+
+        assertEquals(TagWriter.RESPONSE_TIMEOUT, inFlight.await().get(0).response);
+        assertEquals(TagWriter.RESPONSE_CANCELLED, inFlight.await().get(1).response);
+        assertEquals(TagWriter.RESPONSE_CANCELLED, queued.await().get(0).response);
+
+        Collector next = new Collector();
+        options.timeoutMs = 10;
+        writer.submit(Collections.singletonList(new TagWriter.Request("07", "08")), options, next);
+
+        assertEquals(TagWriter.RESPONSE_TIMEOUT, next.await().get(0).response);
+
+        writer.shutdown();
+    }
+
+    @Test
+    public void responsesAfterATimeoutAreDropped() throws Exception {
+        TagWriter writer = new TagWriter(new TagWriter.Device() {
+            @Override
+            public int write(byte[] oldEpc, byte[] newEpc) {
+                return TagWriter.RESPONSE_SUCCESS;
+            }
+        });
+
+        TagWriter.Options options = new TagWriter.Options();
+        options.timeoutMs = 10;
+
+        Collector first = new Collector();
+        writer.submit(Collections.singletonList(new TagWriter.Request("01", "02")), options, first);
+
+        assertEquals(TagWriter.RESPONSE_TIMEOUT, first.await().get(0).response);
+
+        // The late answer to the first write must not complete the second one.
+        writer.onWriteResponse(TagWriter.RESPONSE_FINISH);
+
+        Collector second = new Collector();
+        writer.submit(Collections.singletonList(new TagWriter.Request("03", "04")), options, second);
+
+        assertEquals(TagWriter.RESPONSE_TIMEOUT, second.await().get(0).response);
+
+        writer.shutdown();
+    }
+}
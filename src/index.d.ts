@@ -1,17 +1,36 @@
 export enum READER_EVENTS {
 	TAG = 'TAG',
+	TAG_BATCH = 'TAG_BATCH',
 	BARCODE = 'BARCODE',
+	BARCODE_BATCH = 'BARCODE_BATCH',
 	WRITE_TAG = 'WRITE_TAG',
 	TRIGGER_STATUS = 'TRIGGER_STATUS',
 	READER_STATUS = 'READER_STATUS',
-	BATTERY_STATUS = 'BATTERY_STATUS'
+	BATTERY_STATUS = 'BATTERY_STATUS',
+	METRICS = 'METRICS',
+	LOCATE_TAG = 'LOCATE_TAG',
+	TAG_ARRIVED = 'TAG_ARRIVED',
+	TAG_DEPARTED = 'TAG_DEPARTED'
 }
 
 export type BatteryTypes = {
-	cause: string | null;
+	/** The update that produced this state. */
+	cause: 'poll' | 'power' | 'lowBattery' | 'overTemperature';
+	/** Percent; -1 until the first poll. */
 	level: number;
+	acPower: boolean;
+	/** Set by the reader's low battery or over-temperature event until the next battery poll. */
+	lowBattery: boolean;
+	overTemperature: boolean;
 }
 
+export type DeviceStateOptions = {
+	/** Minimum time between two READER_STATUS, TRIGGER_STATUS or BATTERY_STATUS events of the same kind. Default 100. */
+	minIntervalMs?: number;
+	/** Battery poll interval while connected, at least 1000. Default 30000. */
+	batteryPollMs?: number;
+};
+
 export type DevicesTypes = {
 	name: string;
 	mac: string;
@@ -29,17 +48,407 @@ export type ProgramStatus = {
 	error: string;
 };
 
+export type ProgramRequest = {
+	oldEpc: string;
+	newEpc: string;
+};
+
+export type ProgramOptions = {
+	/** Retries on DEVICE_BUSY (251). Default 3. */
+	retries?: number;
+	retryDelayMs?: number;
+	/** How long to wait for the reader's write response. Default 2000. */
+	timeoutMs?: number;
+};
+
+export type ProgramResult = {
+	oldEpc: string;
+	newEpc: string;
+	status: boolean;
+	error: string | null;
+	/** Reader response code; -1 for an invalid EPC, which is not sent to the reader, -2 if cancelled by a module reload. */
+	response: number;
+	attempts: number;
+	elapsedMs: number;
+};
+
+export type Barcode = {
+	data: string;
+	/** Symbology name, null on the callback path. */
+	codeType: string | null;
+	/** Decode time, epoch ms. */
+	timestamp: number;
+};
+
+export type BarcodeOptions = {
+	/** Drop repeats of the same data within this window. 0 (default) keeps every scan. */
+	dedupWindowMs?: number;
+	/** Deliver BARCODE_BATCH events instead of BARCODE. */
+	batch?: boolean;
+	/** Default 50. */
+	batchIntervalMs?: number;
+	/** Default 200. */
+	batchMaxSize?: number;
+	/** Deliver scans from the intent broadcast (default) or the reader callback. */
+	source?: 'broadcast' | 'callback';
+	/** Receive scans on both paths and record which arrives first, see getBarcodeStats. */
+	compareSources?: boolean;
+};
+
+export type BarcodeStats = {
+	scans: number;
+	suppressed: number;
+	emitted: number;
+	/** Arrival to bridge emit. */
+	latency: {
+		count: number;
+		p50Us: number;
+		p99Us: number;
+		maxUs: number;
+	};
+	/** Broadcast vs callback delivery of the same scans, with compareSources. */
+	paths: {
+		pairs: number;
+		callbackFirst: number;
+		/** Mean time the callback arrived before the broadcast; negative if after. */
+		meanCallbackLeadUs: number;
+		maxCallbackLeadUs: number;
+		maxCallbackLagUs: number;
+		unpaired: number;
+	};
+};
+
 export type TriggerStatus = {
 	status: boolean;
 };
 
+export type TagFilterRules = {
+	/** Hex EPC prefixes, or "hex/bits" for masks that end inside a hex digit, e.g. "3034257/26". */
+	prefixes?: Array<string>;
+	/** GS1 company prefixes (6-12 digits), matched in 96-bit SGTIN, SSCC, SGLN, GRAI and GIAI EPCs. */
+	companyPrefixes?: Array<string>;
+};
+
+export type TagFilterResult = {
+	rules: number;
+	/** Whether the reader's EPC filter applies the rule too (a single whole-digit prefix). */
+	hardwareFilter: boolean;
+};
+
+export type PresenceOptions = {
+	/** Default true; false stops tracking. */
+	enabled?: boolean;
+	/** An EPC departs once it has not been read for this long. Default 3000. */
+	departureTimeoutMs?: number;
+	/** How often TAG_ARRIVED/TAG_DEPARTED are sent; departures are detected up to this late. Default 100. */
+	intervalMs?: number;
+};
+
+export type BoundedInventoryOptions = {
+	/** Default true; false returns to the regular inventory. */
+	enabled?: boolean;
+	/** Heap used for de-duplication: a quarter for recent EPCs, the rest for the Bloom filter. Default 8 MiB. */
+	maxMemoryBytes?: number;
+	/** Tag count the Bloom filter is tuned for. Default 1000000. */
+	expectedTags?: number;
+};
+
+export type BoundedInventoryStats = {
+	tags: number;
+	inMemory: number;
+	memoryCapacity: number;
+	spilled: number;
+	spills: number;
+	/** Sorted spill files a lookup may search; a background merge keeps this low. */
+	runs: number;
+	merges: number;
+	/** Merges that failed; their runs are kept and still searched. */
+	mergeFailures: number;
+	memoryBytes: number;
+	spillBytes: number;
+	bloomHashes: number;
+	bloomQueries: number;
+	bloomPositives: number;
+	/** Bloom positives the spill files did not confirm; they cost a file lookup but never a wrong result. */
+	falsePositives: number;
+	/** falsePositives over the queries for EPCs not yet spilled. */
+	falsePositiveRate: number;
+	/** The rate the Bloom filter is expected to reach at the current spilled count. */
+	expectedFalsePositiveRate: number;
+};
+
+export type NamedInventory = {
+	name: string;
+	active: boolean;
+	tags: number;
+};
+
+export type TagAggregate = {
+	epc: string;
+	tid: string | null;
+	count: number;
+	rssiMin: number;
+	rssiMax: number;
+	rssiAvg: number;
+	firstSeen: number;
+	lastSeen: number;
+};
+
+export type SimulationOptions = {
+	/** Number of distinct tags in the field. Default 1000. */
+	population?: number;
+	/** Default 1000. */
+	readsPerSecond?: number;
+	/** Mean and spread of each tag's base RSSI in dBm. Default -60 / 8. */
+	rssiMean?: number;
+	rssiStdDev?: number;
+	/** Per-read RSSI noise in dBm. Default 3. */
+	rssiJitter?: number;
+	/** Share of reads that repeat an already-seen tag while unseen tags remain. Default 0.5. */
+	duplicateRatio?: number;
+	/** 96 or 128. Default 96. */
+	epcBits?: number;
+	mixedEpcLengths?: boolean;
+	includeTid?: boolean;
+	/** Default 0. */
+	barcodesPerSecond?: number;
+	/** Start reading as soon as connected instead of waiting for softReadCancel(true). Default true. */
+	autoStart?: boolean;
+	seed?: number;
+	/** Tags entering the field per second, as on a conveyor. Default 0: all tags are there from the start. */
+	arrivalsPerSecond?: number;
+	/** Tags whose RSSI at 30 dBm, shifted by the tx power, is below this are not read. Default: all are read. */
+	sensitivityDbm?: number;
+	/** Thermal model: the module heats by heatPerSecond at 30 dBm and full duty and cools by coolingPerSecond of its excess over ambientC; above protectC it throttles. heatPerSecond defaults to 0 (off). */
+	ambientC?: number;
+	protectC?: number;
+	heatPerSecond?: number;
+	coolingPerSecond?: number;
+	/** Battery life at 30 dBm and full duty. Default 480. */
+	batteryMinutes?: number;
+};
+
+export type AdaptivePowerOptions = {
+	/** Default true; false stops the controller and restores the tx power and continuous inventory timing from before it started. */
+	enabled?: boolean;
+	/** Control interval. Default 2000. */
+	intervalMs?: number;
+	/** Default 10 / 30. */
+	minTxPower?: number;
+	maxTxPower?: number;
+	/** Lowest duty cycle, also used while no new tags are found. Default 20. */
+	minDutyPercent?: number;
+	/** The duty cycle is capped within softMarginC of the protect temperature and cut within hardMarginC. Default 10 / 3. */
+	softMarginC?: number;
+	hardMarginC?: number;
+	/** At or below this battery level power and duty are capped. Default 20. */
+	lowBatteryLevel?: number;
+};
+
+export type PowerControlDecision = 'hold' | 'thermal-cut' | 'battery-limit' | 'thermal-limit' | 'idle' | 'duty-up' | 'power-up' | 'power-down';
+
+export type CaptureResult = {
+	path: string;
+	reads: number;
+	bytes: number;
+};
+
+export type ReplayOptions = {
+	/** Multiple of the captured pace; 0 replays as fast as possible. Default 1. */
+	speed?: number;
+};
+
+export type ReplayResult = {
+	reads: number;
+	elapsedMs: number;
+	readsPerSecond: number;
+	/** Furthest the replay fell behind the captured pace. */
+	maxLagMs: number;
+	/** Counted by the replay alone; live metrics are not touched. */
+	metrics: ReplayMetrics;
+};
+
+export type ReplayMetrics = {
+	/** Reads taken off the replay's queue; write responses in the capture are skipped. */
+	reads: number;
+	uniqueTags: number;
+	/** Share of reads that hit an already-known tag, 0..1. */
+	duplicateRatio: number;
+	/** Reads dropped by the tag filter. */
+	filtered: number;
+	/** Replayed read to the point its payload would be sent, in microseconds (bucketed upper bounds). */
+	latency: {
+		count: number;
+		p50Us: number;
+		p90Us: number;
+		p99Us: number;
+		maxUs: number;
+	};
+	queue: PipelineStats;
+};
+
+export type Session = {
+	id: string;
+	createdAt: number;
+	updatedAt: number;
+	bytes: number;
+	/** The session reads are currently journaled to. */
+	active: boolean;
+};
+
+export type ResumedSession = {
+	id: string;
+	tags: number;
+	elapsedMs: number;
+};
+
+export type ReadFilterOptions = {
+	/** Reads must be above this smoothed RSSI (dBm). Default -70. */
+	threshold?: number;
+	/** Per-EPC RSSI smoothing. Default 'none'. */
+	smoothing?: 'none' | 'ewma' | 'window';
+	/** EWMA weight of the newest read. Default 0.3. */
+	alpha?: number;
+	/** Reads averaged by 'window' smoothing. Default 5. */
+	windowReads?: number;
+	/**
+	 * Single-read pick: 'first' tag above the threshold (default), or the 'strongest' tag
+	 * read within selectWindowMs of the first one above it.
+	 */
+	select?: 'first' | 'strongest';
+	/** Default 200. */
+	selectWindowMs?: number;
+	/** Reads a tag needs to be picked by 'strongest'. Default 1. */
+	minReads?: number;
+	/** Also drop inventory reads at or below the threshold. Default false. */
+	filterInventory?: boolean;
+};
+
+/**
+ * Sent every 50 ms (20 Hz) while locating, whether or not the tag was read in between.
+ */
+export type LocateResult = {
+	epc: string;
+	/** 0 (not found) to 100 (at the antenna): smoothed RSSI mapped linearly from -80 to -30 dBm. */
+	proximity: number;
+	/** Smoothed RSSI, null until the tag has been read. */
+	rssi: number | null;
+	/** Reads of the tag since the previous event. */
+	reads: number;
+	/** ms since the tag was last read, -1 if never. Proximity fades to 0 between 300 and 1500 ms. */
+	ageMs: number;
+};
+
+export type LocateStatus = {
+	epc: string;
+	/** Whether the reader accepted the EPC as a hardware filter; reads are filtered in software either way. */
+	hardwareFilter: boolean;
+	intervalMs: number;
+};
+
+/**
+ * - default: the settings applied on connect (session S1, target A, EPC+TID, Miller4 300 kHz, dynamic Q 4 in 0-15)
+ * - dense-warehouse: session S2, multi-tag mode, Miller4 250 kHz, boost power mode, 30 dBm, dynamic Q 6 in 4-15
+ * - fast-sparse: session S0, FM0 400 kHz, 30 dBm, dynamic Q 2 in 0-6
+ * - single-item: session S0, single-tag mode, power save, 15 dBm, fixed Q 0
+ * - epc-only: default without reading the TID; the reader runs plain EPC inventory and reads
+ *   carry no TID
+ */
+export type InventoryProfileName = 'default' | 'dense-warehouse' | 'fast-sparse' | 'single-item' | 'epc-only';
+
+export type ProfileResult = {
+	profile: InventoryProfileName;
+	/** Settings that differed from the previous profile and were written to the reader. */
+	changed: Array<'gen2' | 'workMode' | 'rfidMode' | 'powerMode' | 'rfLink' | 'qValue' | 'txPower'>;
+	elapsedMs: number;
+};
+
+/** Phase timings of connect(), in ms. */
+export type ConnectTimings = {
+	/** Time after connect() until the reader was opened. */
+	openMs: number;
+	/** Time after connect() until the RFID service connected. */
+	rfidServiceMs: number;
+	/** Time taken to configure the RFID service. */
+	rfidConfigMs: number;
+	/** Time after connect() until the barcode service connected. */
+	barcodeServiceMs: number;
+	/** Time taken to configure the barcode service. */
+	barcodeConfigMs: number;
+	/** Time after connect() until both services were ready. */
+	totalMs: number;
+};
+
+export type ReadRateResult = {
+	profile: InventoryProfileName;
+	reads: number;
+	readsPerSecond: number;
+};
+
+export type PipelineStats = {
+	depth: number;
+	capacity: number;
+	highWaterMark: number;
+	drops: number;
+};
+
+export type Metrics = {
+	reads: number;
+	uniqueTags: number;
+	emits: number;
+	readsPerSecond: number;
+	uniqueTagsPerSecond: number;
+	emitsPerSecond: number;
+	/** Share of reads that hit an already-known tag, 0..1. */
+	duplicateRatio: number;
+	/** Reads dropped by the tag filter since it was set; not included in reads. */
+	filtered: number;
+	/** Reader, trigger and battery state updates, and the status events they were coalesced into. */
+	stateUpdates: number;
+	stateEvents: number;
+	/** Present while setAdaptivePower is enabled. */
+	powerControl?: {
+		txPower: number;
+		dutyPercent: number;
+		decision: PowerControlDecision;
+		lowBattery: boolean;
+		/** Smoothed unique tag discoveries per minute. */
+		discoveriesPerMinute: number | null;
+		/** Degrees C below the protect temperature. */
+		headroomC: number | null;
+		/** How often each decision was taken. */
+		decisions: Record<PowerControlDecision, number>;
+	};
+	/** Broadcast received to JS event sent, in microseconds (bucketed upper bounds). */
+	latency: {
+		count: number;
+		p50Us: number;
+		p90Us: number;
+		p99Us: number;
+		maxUs: number;
+	};
+	queue: PipelineStats & {
+		batchPending: number;
+	};
+};
+
 type onReaderStatus = (data: ReaderStatus) => void;
 type onTagResult = (tag: string) => void;
+type onTagBatchResult = (tags: Array<string> | Array<TagAggregate>) => void;
+
+type onMetrics = (metrics: Metrics) => void;
+
+type onPresenceResult = (epcs: Array<string>) => void;
+
+type onBarcodeResult = (barcode: string) => void;
+type onBarcodeBatchResult = (barcodes: Array<Barcode>) => void;
+
+type onLocateResult = (result: LocateResult) => void;
 type onProgramResult = (data: ProgramStatus) => void;
 type onTriggerStatus = (data: TriggerStatus) => void;
 type onBatteryResult = (data: BatteryTypes) => void;
 
-export type Callbacks = onReaderStatus | onTagResult | onProgramResult | onTriggerStatus | onBatteryResult;
+export type Callbacks = onReaderStatus | onTagResult | onTagBatchResult | onProgramResult | onTriggerStatus | onBatteryResult | onMetrics | onLocateResult | onBarcodeResult | onBarcodeBatchResult | onPresenceResult;
 
 export declare function on(event: READER_EVENTS, callback: Callbacks): void;
 
@@ -47,7 +456,22 @@ export declare function off(event: READER_EVENTS): void;
 
 export declare function removeAll(event: READER_EVENTS): void;
 
-export declare function connect(): Promise<boolean>;
+/**
+ * Opens the reader and configures the RFID and barcode services in parallel, off the UI thread.
+ * Resolves once both are ready; rejects if they are not ready within the connect timeout.
+ */
+export declare function connect(): Promise<ConnectTimings>;
+
+/**
+ * How long connect() waits for both services. Default 10000 ms.
+ */
+export declare function setConnectTimeout(timeoutMs: number): void;
+
+/**
+ * Replace the reader with an in-process simulator (or restore the hardware reader with `null`).
+ * Disconnects the current reader; call connect() afterwards.
+ */
+export declare function setSimulation(options: SimulationOptions | null): void;
 
 export declare function reconnect(): void;
 
@@ -57,16 +481,201 @@ export declare function isConnected(): Promise<boolean>;
 
 export declare function clear(): void;
 
+export declare function getInventorySnapshot(): Promise<Array<TagAggregate>>;
+
+/**
+ * De-duplicate within a fixed memory ceiling for very large tag populations; older EPCs spill
+ * to a file. TAG events are sent as usual, but no aggregates are kept, so snapshots and
+ * sessions stay empty. Clears the inventory.
+ */
+export declare function setBoundedInventory(options: BoundedInventoryOptions): void;
+
+/**
+ * Rejects if bounded inventory mode is off.
+ */
+export declare function getBoundedInventoryStats(): Promise<BoundedInventoryStats>;
+
+/**
+ * Same result as getInventorySnapshot, transferred as one packed buffer and decoded in JS.
+ * RSSI values are rounded to 0.1 dBm.
+ */
+export declare function getInventorySnapshotPacked(): Promise<Array<TagAggregate>>;
+
+/**
+ * Create a named inventory, e.g. per zone or tote. While active it collects every inventory read
+ * alongside the default inventory, with its own de-duplication and aggregates. Rejects if the
+ * name is taken.
+ */
+export declare function createInventory(name: string): Promise<string>;
+
+export declare function setInventoryActive(name: string, active: boolean): Promise<boolean>;
+
+export declare function deleteInventory(name: string): Promise<boolean>;
+
+export declare function clearInventory(name: string): Promise<boolean>;
+
+export declare function listInventories(): Promise<Array<NamedInventory>>;
+
+export declare function getInventory(name: string): Promise<Array<TagAggregate>>;
+
+/**
+ * Same result as getInventory, transferred packed like getInventorySnapshotPacked.
+ */
+export declare function getInventoryPacked(name: string): Promise<Array<TagAggregate>>;
+
+/**
+ * Clear the inventory and journal every read to disk until another session is started,
+ * resumed or discarded. The current session is resumed automatically on connect.
+ * Resolves with the session id.
+ */
+export declare function startSession(): Promise<string>;
+
+/**
+ * Journaled sessions, newest first.
+ */
+export declare function listSessions(): Promise<Array<Session>>;
+
+/**
+ * Replace the inventory with a journaled session and continue journaling to it.
+ */
+export declare function resumeSession(id: string): Promise<ResumedSession>;
+
+export declare function discardSession(id: string): Promise<boolean>;
+
+/**
+ * Decodes a packed buffer as sent by getInventorySnapshotPacked or packed TAG_BATCH events.
+ */
+export declare function decodeTags(packed: string): Array<TagAggregate>;
+
+export declare function getPipelineStats(): Promise<PipelineStats>;
+
+export declare function getMetrics(): Promise<Metrics>;
+
+export declare function resetMetrics(): void;
+
+/**
+ * Emit a METRICS event every intervalMs. 0 disables it.
+ */
+export declare function setMetricsInterval(intervalMs: number): void;
+
+/**
+ * 0 = none, 1 = info (default), 2 = debug (logs every read).
+ */
+export declare function setLogLevel(level: 0 | 1 | 2): void;
+
+/**
+ * Status events are sent only on state changes and rate limited per kind; a state that lasts
+ * less than minIntervalMs may be skipped.
+ */
+export declare function setDeviceStateOptions(options: DeviceStateOptions): void;
+
+/**
+ * Adjust tx power and the inventory duty cycle to find as many new tags per minute as the module
+ * temperature and battery allow. Decisions are reported in getMetrics().powerControl.
+ */
+export declare function setAdaptivePower(options: AdaptivePowerOptions): void;
+
+/**
+ * Write every raw tag read to a binary capture file in the app's files directory until stopCapture.
+ * Resolves the path of the file.
+ */
+export declare function startCapture(): Promise<string>;
+
+export declare function stopCapture(): Promise<CaptureResult>;
+
+/**
+ * Push a capture through the module's ingest code with the current settings (filters, locate, single read, presence,
+ * bounded mode, sessions, named inventories, batching), on a private inventory.
+ * Sends no TAG events and leaves the live inventory and metrics alone.
+ */
+export declare function replayCapture(path: string, options?: ReplayOptions): Promise<ReplayResult>;
+
+/**
+ * Ends a running replay early; replayCapture resolves with the reads pushed so far.
+ */
+export declare function stopReplay(): void;
+
 export declare function getDevices(): Promise<Array<DevicesTypes>>;
 
+/**
+ * power is the last polled battery level; the reader is only asked directly before the first poll.
+ */
 export declare function getDeviceDetails(): Promise<DevicesTypes | null>;
 
 export declare function setAntennaLevel(antennaLevel: number): Promise<void>;
 
 export declare function programTag(oldTag : string, newTag: string): Promise<boolean>;
 
+export declare function programTags(tags: Array<ProgramRequest>, options?: ProgramOptions): Promise<Array<ProgramResult>>;
+
+/**
+ * Switch inventory profile. Only settings that differ are written; the profile stays in effect
+ * across reconnects.
+ */
+export declare function applyProfile(profile: InventoryProfileName): Promise<ProfileResult>;
+
+/**
+ * Inventory for durationMs under each profile in turn and report its read rate, e.g.
+ * ['default', 'epc-only'] to compare against the same tags. The current profile is restored.
+ */
+export declare function measureReadRate(profiles: Array<InventoryProfileName>, durationMs: number): Promise<Array<ReadRateResult>>;
+
+/**
+ * Drop reads whose EPC matches none of the rules, natively before de-duplication and events.
+ * Empty rules remove the filter.
+ */
+export declare function setTagFilter(rules: TagFilterRules | null): Promise<TagFilterResult>;
+
+/**
+ * Track which tags are in the field and send TAG_ARRIVED / TAG_DEPARTED arrays of EPCs as it
+ * changes. Independent of the inventory and clear().
+ */
+export declare function setPresenceTracking(options: PresenceOptions): void;
+
+/**
+ * EPCs currently present; rejects if presence tracking is off.
+ */
+export declare function getPresentTags(): Promise<Array<string>>;
+
+export declare function setBarcodeOptions(options: BarcodeOptions): void;
+
+export declare function getBarcodeStats(): Promise<BarcodeStats>;
+
+export declare function resetBarcodeStats(): void;
+
+/**
+ * Rejects until connect() has configured the RFID service.
+ */
 export declare function setEnabled(enable: boolean): Promise<void>;
 
 export declare function setSingleRead(enable: boolean): void;
 
-export declare function softReadCancel(enable: boolean): Promise<void>
\ No newline at end of file
+/**
+ * Configure the RSSI filter used by single-read mode. Omitted options take their defaults.
+ */
+export declare function setReadFilter(options: ReadFilterOptions): void;
+
+/**
+ * Deliver new tags as one TAG_BATCH event instead of one TAG event per tag.
+ * A batch is flushed every `intervalMs` (default 50) or once `maxSize` (default 200) tags are pending.
+ */
+export declare function setTagBatching(enable: boolean, intervalMs?: number, maxSize?: number): void;
+
+/**
+ * Send TAG_BATCH as one packed buffer. Listeners added with `on` then receive
+ * Array<TagAggregate> (count 1 per read) instead of Array<string>.
+ */
+export declare function setPackedTransfer(enable: boolean): void;
+
+export declare function softReadCancel(enable: boolean): Promise<void>
+
+/**
+ * Locate (Geiger) mode for one EPC. While active, reads only update the LOCATE_TAG proximity;
+ * inventory and TAG events are paused. Pull the trigger or use softReadCancel(true) to scan.
+ *
+ * Rate: one LOCATE_TAG event every 50 ms (20 Hz). Latency: a read shows up in the next event,
+ * so read-to-JS stays under one interval plus bridge time (target < 100 ms).
+ */
+export declare function startLocate(epc: string): Promise<LocateStatus>;
+
+export declare function stopLocate(): Promise<void>;
\ No newline at end of file
@@ -4,10 +4,93 @@ const { Cipherlab } = NativeModules;
 
 const events = {};
 
+const { setTagBatching, programTags, replayCapture, getInventorySnapshotPacked, getInventoryPacked } = Cipherlab;
+
+const BASE64 = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+const BASE64_LOOKUP = new Uint8Array(128);
+const HEX = '0123456789ABCDEF';
+
+for (let i = 0; i < BASE64.length; i++) {
+	BASE64_LOOKUP[BASE64.charCodeAt(i)] = i;
+}
+
+const decodeBase64 = (input) => {
+	const padding = input.endsWith('==') ? 2 : input.endsWith('=') ? 1 : 0;
+	const bytes = new Uint8Array((input.length * 3) / 4 - padding);
+
+	for (let i = 0, j = 0; i < input.length; i += 4) {
+		const n =
+			(BASE64_LOOKUP[input.charCodeAt(i)] << 18) |
+			(BASE64_LOOKUP[input.charCodeAt(i + 1)] << 12) |
+			(BASE64_LOOKUP[input.charCodeAt(i + 2)] << 6) |
+			BASE64_LOOKUP[input.charCodeAt(i + 3)];
+
+		bytes[j++] = n >> 16;
+		if (j < bytes.length) bytes[j++] = (n >> 8) & 0xff;
+		if (j < bytes.length) bytes[j++] = n & 0xff;
+	}
+
+	return bytes;
+};
+
+const readField = (bytes, offset, length) => {
+	let value = '';
+
+	if (length & 0x80) {
+		for (let i = 0; i < (length & 0x7f); i++) {
+			value += String.fromCharCode(bytes[offset + i]);
+		}
+	} else {
+		for (let i = 0; i < length; i++) {
+			value += HEX[bytes[offset + i] >> 4] + HEX[bytes[offset + i] & 0x0f];
+		}
+	}
+
+	return value;
+};
+
+/**
+ * Decodes the packed records of getInventorySnapshotPacked and packed TAG_BATCH events.
+ * See TagPacker.java for the layout.
+ */
+const decodeTags = (packed) => {
+	const bytes = decodeBase64(packed);
+	const view = new DataView(bytes.buffer);
+
+	const epcWidth = bytes[1];
+	const tidWidth = bytes[2];
+	const count = view.getUint32(4);
+	const baseTime = view.getFloat64(8);
+	const recordSize = 20 + epcWidth + tidWidth;
+	const tags = new Array(count);
+
+	for (let i = 0, offset = 16; i < count; i++, offset += recordSize) {
+		const data = offset + 2 + epcWidth + tidWidth;
+		const tidLength = bytes[offset + 1];
+
+		tags[i] = {
+			epc: readField(bytes, offset + 2, bytes[offset]),
+			tid: tidLength ? readField(bytes, offset + 2 + epcWidth, tidLength) : null,
+			rssiAvg: view.getInt16(data) / 10,
+			rssiMin: view.getInt16(data + 2) / 10,
+			rssiMax: view.getInt16(data + 4) / 10,
+			count: view.getUint32(data + 6),
+			firstSeen: baseTime + view.getUint32(data + 10),
+			lastSeen: baseTime + view.getUint32(data + 14),
+		};
+	}
+
+	return tags;
+};
+
 const eventEmitter = new NativeEventEmitter(Cipherlab);
 
 Cipherlab.on = (event, handler) => {
-	const eventListener = eventEmitter.addListener(event, handler);
+	const listener =
+		event === 'TAG_BATCH'
+			? (payload) => handler(typeof payload === 'string' ? decodeTags(payload) : payload)
+			: handler;
+	const eventListener = eventEmitter.addListener(event, listener);
 
 	events[event] = events[event] ? [...events[event], eventListener] : [eventListener];
 };
@@ -28,4 +111,18 @@ Cipherlab.removeAll = (event) => {
 	}
 };
 
+Cipherlab.setTagBatching = (enable, intervalMs = 50, maxSize = 200) => {
+	setTagBatching(enable, intervalMs, maxSize);
+};
+
+Cipherlab.programTags = (tags, options = {}) => programTags(tags, options);
+
+Cipherlab.replayCapture = (path, options = {}) => replayCapture(path, options);
+
+Cipherlab.getInventorySnapshotPacked = () => getInventorySnapshotPacked().then(decodeTags);
+
+Cipherlab.getInventoryPacked = (name) => getInventoryPacked(name).then(decodeTags);
+
+Cipherlab.decodeTags = decodeTags;
+
 export default Cipherlab;